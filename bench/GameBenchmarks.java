@@ -0,0 +1,454 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <b>GameBenchmarks class</b>
+ * <p>
+ * Benchmark suite for the game core: GameHandler.playGame, GameAI.playerPref,
+ * GameAI.gestureComp, GameHandler.getGesture, GestureIcons.getIcon and
+ * GameHandler.getStats.
+ * <p>
+ * Benchmarks that depend on how long a session has been going are run for several
+ * session lengths. The suite runs in several fresh JVMs in turn, so that one JIT's
+ * luck does not decide the numbers, and the iterations of all of them are pooled.
+ * Results are printed as a table with time per operation, its 95% error, bytes
+ * allocated per operation and GC count/time during measurement. The committed
+ * baseline in bench/baseline.txt was produced by this class with --write, which
+ * keeps the file's comment lines and only replaces the table and the line saying
+ * where it was measured; running with --compare checks a new run against it.
+ * <p>
+ * Usage: java GameBenchmarks [--forks 3] [--compare baseline.txt] [--threshold 0.25]
+ * [--write baseline.txt]
+ * <p>
+ * With --forks 0 the suite runs in this JVM only.
+ */
+public class GameBenchmarks {
+	private static final int[] SESSION_LENGTHS = {10, 1000, 100000};
+	private static final int[] SINGLE = {0};
+	private static final GameGesture[] GESTURES = {GameGesture.SCISSORS, GameGesture.PAPER,
+		GameGesture.ROCK, GameGesture.LIZARD, GameGesture.SPOCK};
+	private static final String HEADER = String.format("%-28s %10s %14s %10s %12s %8s %8s",
+			"Benchmark", "Param", "ns/op", "Error", "B/op", "GCs", "GC ms");
+	private static final String MEASURED_ON = "# Measured on: ";
+	private static final String CHILD = "--fork-child";//runs the suite and prints records
+
+	/**
+	 * main
+	 * <p>
+	 * Runs the whole suite, optionally comparing against a baseline.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length == 1 && args[0].equals(CHILD)){
+			for (MicroBenchmark.Result result : runSuite(false)){
+				System.out.println(result.toRecord());
+			}
+			return;
+		}
+		String baselineFile = null;
+		String writeFile = null;
+		double threshold = 0.25;
+		int forks = 3;
+		for (int i = 0; i < args.length; i++){
+			if (args[i].equals("--compare")){
+				baselineFile = args[++i];
+			}
+			else if (args[i].equals("--threshold")){
+				threshold = Double.parseDouble(args[++i]);
+			}
+			else if (args[i].equals("--forks")){
+				forks = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--write")){
+				writeFile = args[++i];
+			}
+		}
+
+		List<MicroBenchmark.Result> results;
+		if (forks == 0){
+			System.out.println(HEADER);
+			results = runSuite(true);
+		}
+		else {
+			results = runForks(forks);
+			System.out.println(HEADER);
+			for (MicroBenchmark.Result result : results){
+				System.out.println(result);
+			}
+		}
+
+		if (writeFile != null){
+			writeBaseline(results, writeFile, forks);
+		}
+		if (baselineFile != null && compare(results, baselineFile, threshold)){
+			System.exit(1);
+		}
+	}
+
+	private static List<MicroBenchmark.Result> runSuite(boolean print){
+		List<MicroBenchmark.Result> results = new ArrayList<MicroBenchmark.Result>();
+		run(new PlayGame(), SESSION_LENGTHS, results, print);
+		run(new PlayerPref(), SESSION_LENGTHS, results, print);
+		run(new GestureComp(), SINGLE, results, print);
+		run(new GetGesture(), SINGLE, results, print);
+		run(new GetIcon(), SINGLE, results, print);
+		run(new GetStats(), SINGLE, results, print);
+		return results;
+	}
+
+	private static void run(MicroBenchmark benchmark, int[] params, List<MicroBenchmark.Result> results,
+			boolean print){
+		for (int param : params){
+			MicroBenchmark.Result result = benchmark.measure(param);
+			if (print){
+				System.out.println(result);
+			}
+			results.add(result);
+		}
+	}
+
+	/**
+	 * runForks
+	 * <p>
+	 * Runs the suite in the given number of fresh JVMs, one after the other, with
+	 * this JVM's classpath and working directory, and pools their results.
+	 */
+	private static List<MicroBenchmark.Result> runForks(int forks) throws IOException, InterruptedException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Map<String, List<MicroBenchmark.Result>> byKey = new LinkedHashMap<String, List<MicroBenchmark.Result>>();
+		for (int fork = 1; fork <= forks; fork++){
+			System.err.println("Fork " + fork + " of " + forks);
+			ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+					"GameBenchmarks", CHILD);
+			builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+			Process child = builder.start();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(child.getInputStream(), "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null){
+					MicroBenchmark.Result result = MicroBenchmark.Result.parseRecord(line);
+					List<MicroBenchmark.Result> same = byKey.get(result.getKey());
+					if (same == null){
+						same = new ArrayList<MicroBenchmark.Result>();
+						byKey.put(result.getKey(), same);
+					}
+					same.add(result);
+				}
+			}
+			finally {
+				reader.close();
+			}
+			if (child.waitFor() != 0){
+				throw new IllegalStateException("Benchmark fork " + fork + " failed");
+			}
+		}
+		List<MicroBenchmark.Result> results = new ArrayList<MicroBenchmark.Result>();
+		for (List<MicroBenchmark.Result> same : byKey.values()){
+			results.add(MicroBenchmark.Result.combine(same));
+		}
+		return results;
+	}
+
+	/**
+	 * writeBaseline
+	 * <p>
+	 * Writes results as a baseline table. The comment lines of an existing file are
+	 * kept, except the one saying where it was measured, which is replaced.
+	 */
+	private static void writeBaseline(List<MicroBenchmark.Result> results, String baselineFile, int forks)
+			throws IOException {
+		List<String> comments = new ArrayList<String>();
+		File file = new File(baselineFile);
+		if (file.exists()){
+			BufferedReader reader = new BufferedReader(new FileReader(file));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null){
+					if (line.startsWith("#") && !line.startsWith(MEASURED_ON)){
+						comments.add(line);
+					}
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+		PrintWriter writer = new PrintWriter(new FileWriter(file));
+		try {
+			for (String comment : comments){
+				writer.println(comment);
+			}
+			writer.println(MEASURED_ON + System.getProperty("java.runtime.name") + " "
+					+ System.getProperty("java.runtime.version") + ", "
+					+ Runtime.getRuntime().availableProcessors() + " cores, "
+					+ Math.max(1, forks) + " forks");
+			writer.println(HEADER);
+			for (MicroBenchmark.Result result : results){
+				writer.println(result);
+			}
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * compare
+	 * <p>
+	 * Compares results against a baseline table written by an earlier run.
+	 * @return true if any benchmark got slower than the threshold allows
+	 */
+	private static boolean compare(List<MicroBenchmark.Result> results, String baselineFile,
+			double threshold) throws IOException {
+		Map<String, Double> baseline = new HashMap<String, Double>();
+		BufferedReader reader = new BufferedReader(new FileReader(baselineFile));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null){
+				String[] fields = line.trim().split("\\s+");
+				if (fields.length >= 3 && !fields[0].equals("Benchmark") && !fields[0].startsWith("#")){
+					baseline.put(fields[0] + ":" + fields[1], Double.valueOf(fields[2]));
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+
+		boolean regressed = false;
+		System.out.println();
+		System.out.println("Comparison against " + baselineFile + ":");
+		for (MicroBenchmark.Result result : results){
+			Double before = baseline.get(result.getKey());
+			if (before == null){
+				System.out.println(String.format("%-40s new", result.getKey()));
+				continue;
+			}
+			double ratio = result.getNanosPerOp() / before;
+			String verdict = "ok";
+			if (ratio > 1 + threshold){
+				verdict = "REGRESSION";
+				regressed = true;
+			}
+			else if (ratio < 1 - threshold){
+				verdict = "faster";
+			}
+			System.out.println(String.format("%-40s %8.2fx %s", result.getKey(), ratio, verdict));
+		}
+		return regressed;
+	}
+
+	/**
+	 * Fills a GameAI with a cyclic history of the given length, the worst case for
+	 * the count based preference search.
+	 */
+	private static GameAI cyclicAI(int rounds){
+		GameAI smarts = new GameAI();
+		for (int i = 0; i < rounds; i++){
+			smarts.inputGesture(GESTURES[i % GESTURES.length]);
+		}
+		return smarts;
+	}
+
+	/**
+	 * One op is one round. A fresh GameHandler is started every param rounds.
+	 */
+	private static class PlayGame extends MicroBenchmark {
+		private int sessionLength;
+		private GameHandler handler;
+		private int played;
+		private int next;
+
+		PlayGame(){
+			super("GameHandler.playGame");
+		}
+
+		protected void setup(int param){
+			sessionLength = param;
+			if (handler != null){
+				handler.flushMetrics();
+			}
+			handler = new GameHandler();
+			played = 0;
+			next = 0;
+		}
+
+		protected long run(long ops){
+			for (long i = 0; i < ops; i++){
+				if (played == sessionLength){
+					handler.flushMetrics();
+					handler = new GameHandler();
+					played = 0;
+				}
+				handler.playGame(GESTURES[next]);
+				next = (next * 3 + 1) % GESTURES.length;
+				played++;
+			}
+			return handler.getCompWins();
+		}
+	}
+
+	/**
+	 * One op is one preference lookup after about param rounds of cyclic play. The
+	 * lookups go round AIs that have played one to five rounds more, so that they
+	 * cannot be hoisted out of the loop.
+	 */
+	private static class PlayerPref extends MicroBenchmark {
+		private GameAI[] smarts;
+		private int[] gamesPlayed;
+		private int next;
+
+		PlayerPref(){
+			super("GameAI.playerPref");
+		}
+
+		protected void setup(int param){
+			smarts = new GameAI[GESTURES.length];
+			gamesPlayed = new int[GESTURES.length];
+			for (int i = 0; i < smarts.length; i++){
+				gamesPlayed[i] = param + i + 1;
+				smarts[i] = cyclicAI(gamesPlayed[i]);
+			}
+			next = 0;
+		}
+
+		protected long run(long ops){
+			long total = 0;
+			for (long i = 0; i < ops; i++){
+				total += smarts[next].playerPref(gamesPlayed[next]).ordinal();
+				next = (next + 1) % smarts.length;
+			}
+			return total;
+		}
+	}
+
+	/**
+	 * One op is one computer decision for a known preference.
+	 */
+	private static class GestureComp extends MicroBenchmark {
+		private GameAI smarts;
+
+		GestureComp(){
+			super("GameAI.gestureComp");
+		}
+
+		protected void setup(int param){
+			smarts = new GameAI();
+		}
+
+		protected long run(long ops){
+			long total = 0;
+			for (long i = 0; i < ops; i++){
+				total += smarts.gestureComp(GESTURES[(int) (i % GESTURES.length)]).ordinal();
+			}
+			return total;
+		}
+	}
+
+	/**
+	 * Gives one handler for each gesture, each having played one round with it, so
+	 * that lookups can change from op to op instead of being hoisted out of the loop.
+	 */
+	private static GameHandler[] playedHandlers(){
+		GameHandler[] handlers = new GameHandler[GESTURES.length];
+		for (int i = 0; i < handlers.length; i++){
+			handlers[i] = new GameHandler();
+			handlers[i].playGame(GESTURES[i]);
+			handlers[i].flushMetrics();
+		}
+		return handlers;
+	}
+
+	/**
+	 * One op is one string lookup for each side, from a different handler each op.
+	 */
+	private static class GetGesture extends MicroBenchmark {
+		private GameHandler[] handlers;
+		private int next;
+
+		GetGesture(){
+			super("GameHandler.getGesture");
+		}
+
+		protected void setup(int param){
+			handlers = playedHandlers();
+			next = 0;
+		}
+
+		protected long run(long ops){
+			long total = 0;
+			for (long i = 0; i < ops; i++){
+				GameHandler handler = handlers[next];
+				total += handler.getGesture(true).length() + handler.getGesture(false).length();
+				next = (next + 1) % handlers.length;
+			}
+			return total;
+		}
+	}
+
+	/**
+	 * One op is one icon lookup for each side, as done by GamePanel every round, from
+	 * a different handler each op. The gesture images must be on the classpath.
+	 */
+	private static class GetIcon extends MicroBenchmark {
+		private GameHandler[] handlers;
+		private int next;
+
+		GetIcon(){
+			super("GestureIcons.getIcon");
+		}
+
+		protected void setup(int param){
+			handlers = playedHandlers();
+			next = 0;
+		}
+
+		protected long run(long ops){
+			long total = 0;
+			for (long i = 0; i < ops; i++){
+				GameHandler handler = handlers[next];
+				total += GestureIcons.getIcon(handler.getPlayerGesture()).getIconWidth()
+						+ GestureIcons.getIcon(handler.getCompGesture()).getIconWidth();
+				next = (next + 1) % handlers.length;
+			}
+			return total;
+		}
+	}
+
+	/**
+	 * One op is one statistics report after a short session.
+	 */
+	private static class GetStats extends MicroBenchmark {
+		private GameHandler handler;
+
+		GetStats(){
+			super("GameHandler.getStats");
+		}
+
+		protected void setup(int param){
+			handler = new GameHandler();
+			for (int i = 0; i < 100; i++){
+				handler.playGame(GESTURES[i % GESTURES.length]);
+			}
+			handler.flushMetrics();
+		}
+
+		protected long run(long ops){
+			long total = 0;
+			for (long i = 0; i < ops; i++){
+				total += handler.getStats().length();
+			}
+			return total;
+		}
+	}
+
+}//End of GameBenchmarks class
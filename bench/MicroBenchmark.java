@@ -0,0 +1,272 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * <b>MicroBenchmark class</b>
+ * <p>
+ * A small benchmark harness in the spirit of JMH. Each benchmark is warmed up, then
+ * timed over several fixed-length iterations, and reports the average time per
+ * operation together with its error, the bytes allocated per operation and the
+ * garbage collections that happened while measuring.
+ * <p>
+ * JMH cannot be used here because its generated code has to live in a named package
+ * and so cannot see the game classes, which sit in the default package.
+ * <p>
+ * Subclasses set up their state for a parameter in setup and do the measured work in
+ * run. Whatever run returns is folded into a volatile sink so that the JIT cannot
+ * remove the work as dead code. The work must also depend on the operation index or
+ * on state that changes between operations, or the JIT may hoist it out of the loop.
+ * <p>
+ * Each measurement keeps the time per operation of every iteration, so that results
+ * of the same benchmark from several JVM forks can be pooled with Result.combine.
+ */
+public abstract class MicroBenchmark {
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int MEASURED_ITERATIONS = 20;
+	private static final long ITERATION_NANOS = 200000000L;//200ms per iteration
+	private static final long CALIBRATION_NANOS = 10000000L;//10ms to estimate speed
+
+	/**
+	 * Receives benchmark results so the JIT cannot drop the measured work
+	 */
+	public static volatile long sink;
+
+	private final String name;
+
+	/**
+	 * Constructs a benchmark with the given name.
+	 * @param name - the name used when reporting results
+	 */
+	protected MicroBenchmark(String name){
+		this.name = name;
+	}
+
+	/**
+	 * setup
+	 * <p>
+	 * Prepares the benchmark state for one parameter value. Not measured.
+	 * @param param - the parameter value, for example a session length
+	 */
+	protected abstract void setup(int param);
+
+	/**
+	 * run
+	 * <p>
+	 * Performs the measured work the given number of times.
+	 * @param ops - the number of operations to perform
+	 * <p>
+	 * @return a value derived from the work, fed to the sink
+	 */
+	protected abstract long run(long ops);
+
+	/**
+	 * measure
+	 * <p>
+	 * Runs the full warmup and measurement cycle for one parameter value.
+	 * @param param - the parameter value passed to setup
+	 * <p>
+	 * @return result - the measured result
+	 */
+	public Result measure(int param){
+		setup(param);
+		calibrate();//The first estimate also pays for class loading and interpreted code
+		long ops = calibrate();
+		for (int i = 0; i < WARMUP_ITERATIONS; i++){
+			sink += run(ops);
+		}
+
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long gcCountBefore = gcCount();
+		long gcTimeBefore = gcTime();
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		double[] nanosPerOp = new double[MEASURED_ITERATIONS];
+		for (int i = 0; i < MEASURED_ITERATIONS; i++){
+			long start = System.nanoTime();
+			sink += run(ops);
+			nanosPerOp[i] = (double) (System.nanoTime() - start) / ops;
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+		return new Result(name, param, nanosPerOp, (double) allocated / (ops * MEASURED_ITERATIONS),
+				gcCount() - gcCountBefore, gcTime() - gcTimeBefore);
+	}
+
+	/**
+	 * calibrate
+	 * <p>
+	 * Estimates how many operations fill one iteration.
+	 */
+	private long calibrate(){
+		long ops = 1;
+		long elapsed = 0;
+		while (elapsed < CALIBRATION_NANOS){
+			ops *= 2;
+			long start = System.nanoTime();
+			sink += run(ops);
+			elapsed = System.nanoTime() - start;
+		}
+		return Math.max(1, (long) ((double) ops * ITERATION_NANOS / elapsed));
+	}
+
+	private static long gcCount(){
+		long count = 0;
+		List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+		for (GarbageCollectorMXBean collector : collectors){
+			count += Math.max(0, collector.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long gcTime(){
+		long time = 0;
+		List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+		for (GarbageCollectorMXBean collector : collectors){
+			time += Math.max(0, collector.getCollectionTime());
+		}
+		return time;
+	}
+
+	/**
+	 * t95
+	 * <p>
+	 * Gives the two sided 95% quantile of Student's t distribution, from the
+	 * Cornish-Fisher expansion around the normal quantile. Within 0.01 of the exact
+	 * value from 9 degrees of freedom up.
+	 * @param degrees - the degrees of freedom
+	 */
+	static double t95(int degrees){
+		double z = 1.959964;
+		double z3 = z * z * z;
+		double z5 = z3 * z * z;
+		return z + (z3 + z) / (4.0 * degrees) + (5 * z5 + 16 * z3 + 3 * z) / (96.0 * degrees * degrees);
+	}
+
+	/**
+	 * <b>Result class</b>
+	 * <p>
+	 * The outcome of measuring one benchmark with one parameter value, in one JVM or
+	 * pooled over several.
+	 */
+	public static class Result {
+		final String name;
+		final int param;
+		final double[] samples;//time per operation of each measured iteration
+		final double nanosPerOp;
+		final double error;
+		final double bytesPerOp;
+		final long gcCount;
+		final long gcMillis;
+
+		Result(String name, int param, double[] samples, double bytesPerOp, long gcCount, long gcMillis){
+			this.name = name;
+			this.param = param;
+			this.samples = samples;
+			this.bytesPerOp = bytesPerOp;
+			this.gcCount = gcCount;
+			this.gcMillis = gcMillis;
+			double sum = 0;
+			for (double value : samples){
+				sum += value;
+			}
+			nanosPerOp = sum / samples.length;
+			double squares = 0;
+			for (double value : samples){
+				squares += (value - nanosPerOp) * (value - nanosPerOp);
+			}
+			error = t95(samples.length - 1) * Math.sqrt(squares / (samples.length - 1) / samples.length);
+		}
+
+		/**
+		 * combine
+		 * <p>
+		 * Pools the results of the same benchmark and parameter from several forks:
+		 * the iterations of all of them count as one sample, allocation is averaged
+		 * and collections are added up.
+		 * @param forks - results that share a key
+		 * <p>
+		 * @return the pooled result
+		 */
+		public static Result combine(List<Result> forks){
+			Result first = forks.get(0);
+			int count = 0;
+			for (Result fork : forks){
+				count += fork.samples.length;
+			}
+			double[] samples = new double[count];
+			double bytes = 0;
+			long collections = 0;
+			long millis = 0;
+			int at = 0;
+			for (Result fork : forks){
+				if (!fork.getKey().equals(first.getKey())){
+					throw new IllegalArgumentException("Cannot pool " + fork.getKey() + " with " + first.getKey());
+				}
+				System.arraycopy(fork.samples, 0, samples, at, fork.samples.length);
+				at += fork.samples.length;
+				bytes += fork.bytesPerOp;
+				collections += fork.gcCount;
+				millis += fork.gcMillis;
+			}
+			return new Result(first.name, first.param, samples, bytes / forks.size(), collections, millis);
+		}
+
+		/**
+		 * toRecord
+		 * <p>
+		 * Gives the result as one line that parseRecord reads back, for passing
+		 * results from a forked JVM.
+		 */
+		public String toRecord(){
+			StringBuilder record = new StringBuilder();
+			record.append(name).append(' ').append(param).append(' ').append(bytesPerOp)
+					.append(' ').append(gcCount).append(' ').append(gcMillis);
+			for (double sample : samples){
+				record.append(' ').append(sample);
+			}
+			return record.toString();
+		}
+
+		/**
+		 * parseRecord
+		 * <p>
+		 * Reads a result written by toRecord.
+		 * @param record - the line to read
+		 * <p>
+		 * @return the result
+		 */
+		public static Result parseRecord(String record){
+			String[] fields = record.trim().split(" ");
+			if (fields.length < 7){
+				throw new IllegalArgumentException("Not a benchmark record: " + record);
+			}
+			double[] samples = new double[fields.length - 5];
+			for (int i = 0; i < samples.length; i++){
+				samples[i] = Double.parseDouble(fields[i + 5]);
+			}
+			return new Result(fields[0], Integer.parseInt(fields[1]), samples, Double.parseDouble(fields[2]),
+					Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+		}
+
+		/**
+		 * getKey
+		 * <p>
+		 * Gives the name and parameter that identify this result in a baseline.
+		 */
+		public String getKey(){
+			return name + ":" + param;
+		}
+
+		public double getNanosPerOp(){
+			return nanosPerOp;
+		}
+
+		public String toString(){
+			return String.format("%-28s %10d %14.3f %10.3f %12.2f %8d %8d",
+					name, param, nanosPerOp, error, bytesPerOp, gcCount, gcMillis);
+		}
+	}
+
+}//End of MicroBenchmark class
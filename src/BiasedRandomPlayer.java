@@ -0,0 +1,52 @@
+/**
+ * <b>BiasedRandomPlayer class</b>
+ * <p>
+ * A scripted player that throws a favourite gesture with a fixed probability and
+ * otherwise picks uniformly among all five gestures. This models the "unwitting,
+ * unaware player" that GameAI is designed to beat.
+ */
+public class BiasedRandomPlayer implements ScriptedPlayer {
+	private static final GameGesture[] GESTURES = {GameGesture.SCISSORS, GameGesture.PAPER,
+		GameGesture.ROCK, GameGesture.LIZARD, GameGesture.SPOCK};
+	private final GameGesture favourite;
+	private final double bias;
+	private final GameRandom random;
+
+	/**
+	 * Constructs a biased random scripted player.
+	 * @param favourite - the gesture that the player leans towards
+	 * @param bias - the probability of throwing the favourite instead of a uniformly
+	 * random gesture, between 0 and 1
+	 */
+	public BiasedRandomPlayer(GameGesture favourite, double bias){
+		this(favourite, bias, new GameRandom());
+	}
+
+	/**
+	 * Constructs a biased random scripted player whose throws can be replayed from
+	 * the seed of the given generator.
+	 * @param favourite - the gesture that the player leans towards
+	 * @param bias - the probability of throwing the favourite instead of a uniformly
+	 * random gesture, between 0 and 1
+	 * @param random - the random source owned by this player
+	 */
+	public BiasedRandomPlayer(GameGesture favourite, double bias, GameRandom random){
+		if (bias < 0 || bias > 1){
+			throw new IllegalArgumentException("Bias must be between 0 and 1: " + bias);
+		}
+		this.favourite = favourite;
+		this.bias = bias;
+		this.random = random;
+	}
+
+	public GameGesture nextGesture(){
+		if (random.nextDouble() < bias){
+			return favourite;
+		}
+		return GESTURES[random.nextInt(GESTURES.length)];
+	}
+
+	public void observe(GameGesture playerGesture, GameGesture compGesture){
+	}
+
+}//End of BiasedRandomPlayer class
@@ -0,0 +1,25 @@
+/**
+ * <b>ConstantPlayer class</b>
+ * <p>
+ * A scripted player that throws the same gesture every round. This is the easiest
+ * possible opponent for GameAI, since the preferred gesture never changes.
+ */
+public class ConstantPlayer implements ScriptedPlayer {
+	private final GameGesture gesture;
+
+	/**
+	 * Constructs a scripted player that always throws the given gesture.
+	 * @param gesture - the gesture to throw every round
+	 */
+	public ConstantPlayer(GameGesture gesture){
+		this.gesture = gesture;
+	}
+
+	public GameGesture nextGesture(){
+		return gesture;
+	}
+
+	public void observe(GameGesture playerGesture, GameGesture compGesture){
+	}
+
+}//End of ConstantPlayer class
@@ -0,0 +1,32 @@
+/**
+ * <b>CyclicPlayer class</b>
+ * <p>
+ * A scripted player that cycles through scissors, paper, rock, lizard and spock in
+ * order. Over a full cycle all gesture counts are even, so GameAI keeps falling back
+ * on its tie-breaking order.
+ */
+public class CyclicPlayer implements ScriptedPlayer {
+	private static final GameGesture[] CYCLE = {GameGesture.SCISSORS, GameGesture.PAPER,
+		GameGesture.ROCK, GameGesture.LIZARD, GameGesture.SPOCK};
+	private int position;
+
+	/**
+	 * Constructs a cyclic scripted player that starts the cycle at scissors.
+	 */
+	public CyclicPlayer(){
+		position = 0;
+	}
+
+	public GameGesture nextGesture(){
+		GameGesture gesture = CYCLE[position];
+		position++;
+		if (position == CYCLE.length){
+			position = 0;
+		}
+		return gesture;
+	}
+
+	public void observe(GameGesture playerGesture, GameGesture compGesture){
+	}
+
+}//End of CyclicPlayer class
@@ -0,0 +1,384 @@
+/**
+ * <b>EnsembleAI class</b>
+ * <p>
+ * A computer strategy that runs many cheap predictors of the player's next gesture
+ * side by side and follows whichever has been doing best lately.
+ * <p>
+ * The predictors, from cheapest to most expensive, are: the player repeats their
+ * last gesture; the player mirrors the computer's last gesture; the player's most
+ * frequent gesture (a GameAI); a recency-weighted frequency; and Markov models
+ * (MarkovAI) of order 1, order 1 over whole rounds, and order 3. Each prediction is
+ * also played in two "second-guess" rotations, which assume the player expects the
+ * computer to counter the prediction and moves one or two steps ahead of it. Every
+ * predictor and rotation is a candidate strategy.
+ * <p>
+ * After each round every candidate is scored on the move it would have made, win
+ * +1, loss -1, tie 0, with older rounds decaying away, so the scores follow a player
+ * who changes style. This costs a few operations per candidate per round. The AI
+ * then follows the best scoring candidate, except for a small share of rounds in
+ * which it throws a random gesture, so it never becomes fully predictable itself.
+ * <p>
+ * An AI built with a time budget times its predictions on every move. Once the
+ * budget is spent, the predictors not yet asked, which are the more expensive
+ * ones, are skipped for that move, so a move overruns the budget by at most one
+ * predictor; the three cheapest are always asked. When several moves in a row go
+ * over the budget, the most expensive active predictor is dropped, down to the
+ * three cheapest ones; it is brought back after a long run of moves well within the
+ * budget. A single slow move, such as one that ran into a garbage collection or the
+ * first move of a game, drops nothing. A dropped predictor stops predicting but
+ * still observes every round, which costs far less, so it knows the whole game when
+ * it comes back; the scores of its candidates start again from 0. Without a budget
+ * nothing is timed, which suits batch simulation.
+ */
+public class EnsembleAI implements GameStrategy {
+	/**
+	 * Per-move budget suggested for interactive play, in nanoseconds
+	 */
+	public static final long INTERACTIVE_BUDGET_NANOS = 50000;
+	/**
+	 * Budget that turns off timing and never drops predictors
+	 */
+	public static final long NO_BUDGET = Long.MAX_VALUE;
+
+	private static final GameGesture[] GESTURES = {GameGesture.SCISSORS, GameGesture.PAPER,
+		GameGesture.ROCK, GameGesture.LIZARD, GameGesture.SPOCK};
+	private static final int OPTIONS = 5;//number of possible gestures that one can throw
+	private static final int ROTATIONS = 3;//the prediction itself and two second guesses
+	private static final int MIN_ACTIVE = 3;//predictors that are never dropped
+	private static final int DROP_MOVES = 8;//slow moves in a row before a predictor is dropped
+	private static final int RESTORE_MOVES = 4096;//fast moves before a predictor comes back
+	private static final double SCORE_DECAY = 0.9;
+	private static final double EXPLORATION = 0.05;//share of rounds played at random
+
+	private final Predictor[] predictors;
+	private final int[] moves;//move of each candidate this round, -1 if none
+	private final double[] scores;//decayed score of each candidate
+	private final GameRandom random;
+	private final long budgetNanos;
+	private int active;//predictors in use, always the cheapest ones
+	private int slowMoves;//consecutive moves over the budget
+	private int fastMoves;//consecutive moves well within the budget
+	private long degradations;//times a predictor was dropped
+	private boolean predicted;//whether moves holds this round's candidates
+
+	/**
+	 * Constructs an ensemble AI without a time budget.
+	 * @param random - the random source owned by this AI
+	 */
+	public EnsembleAI(GameRandom random){
+		this(random, NO_BUDGET);
+	}
+
+	/**
+	 * Constructs an ensemble AI with a per-move time budget.
+	 * @param random - the random source owned by this AI
+	 * @param budgetNanos - the longest a move's predictions should take, or NO_BUDGET
+	 */
+	public EnsembleAI(GameRandom random, long budgetNanos){
+		if (budgetNanos <= 0){
+			throw new IllegalArgumentException("Budget must be positive: " + budgetNanos);
+		}
+		this.random = random;
+		this.budgetNanos = budgetNanos;
+		predictors = new Predictor[]{new RepeatPredictor(), new MirrorPredictor(),
+			new FrequencyPredictor(random), new RecencyPredictor(),
+			new MarkovPredictor(new MarkovAI(1, false, random)),
+			new MarkovPredictor(new MarkovAI(1, true, random)),
+			new MarkovPredictor(new MarkovAI(3, false, random))};
+		moves = new int[predictors.length * ROTATIONS];
+		scores = new double[predictors.length * ROTATIONS];
+		active = predictors.length;
+	}
+
+	/**
+	 * chooseGesture
+	 * <p>
+	 * Throws the move of the best scoring candidate, or a random gesture if no
+	 * candidate has a move yet or this round explores.
+	 */
+	public GameGesture chooseGesture(int gamesPlayed){
+		predictAll(budgetNanos != NO_BUDGET);
+		int best = -1;
+		for (int candidate = 0; candidate < active * ROTATIONS; candidate++){
+			if (moves[candidate] >= 0 && (best < 0 || scores[candidate] > scores[best])){
+				best = candidate;
+			}
+		}
+		if (best < 0 || random.nextDouble() < EXPLORATION){
+			return GESTURES[random.nextInt(OPTIONS)];
+		}
+		return GESTURES[moves[best]];
+	}
+
+	/**
+	 * inputRound
+	 * <p>
+	 * Scores every active candidate on the move it made this round, then tells
+	 * every predictor, active or dropped, what was thrown. Rounds where the player
+	 * threw nothing are ignored.
+	 */
+	public void inputRound(GameGesture playerGesture, GameGesture compGesture){
+		if (playerGesture == GameGesture.NONE){
+			return;
+		}
+		if (!predicted){//The round was replayed rather than chosen
+			predictAll(false);
+		}
+		int player = playerGesture.ordinal();
+		for (int candidate = 0; candidate < active * ROTATIONS; candidate++){
+			double result = 0;
+			if (moves[candidate] >= 0){
+				byte outcome = GameRules.outcome(player, moves[candidate]);
+				if (outcome == GameRules.COMP_WIN){
+					result = 1;
+				}
+				else if (outcome == GameRules.PLAYER_WIN){
+					result = -1;
+				}
+			}
+			scores[candidate] = scores[candidate] * SCORE_DECAY + result;
+		}
+		int comp = compGesture.ordinal();
+		for (int i = 0; i < predictors.length; i++){
+			predictors[i].observe(player, comp);
+		}
+		predicted = false;
+	}
+
+	/**
+	 * predictAll
+	 * <p>
+	 * Asks every active predictor for its prediction and works out the move of each
+	 * of its rotations. A timed run checks the clock before each predictor past the
+	 * cheapest ones and skips the rest once the budget is spent.
+	 * @param timed - whether to hold the predictions to the budget
+	 */
+	private void predictAll(boolean timed){
+		long start = timed ? System.nanoTime() : 0;
+		for (int i = 0; i < active; i++){
+			if (timed && i >= MIN_ACTIVE && System.nanoTime() - start > budgetNanos){
+				for (int candidate = i * ROTATIONS; candidate < active * ROTATIONS; candidate++){
+					moves[candidate] = -1;//Skipped for this move
+				}
+				break;
+			}
+			int guess = predictors[i].predict();
+			for (int rotation = 0; rotation < ROTATIONS; rotation++){
+				int candidate = i * ROTATIONS + rotation;
+				if (guess < 0){
+					moves[candidate] = -1;
+				}
+				else {
+					moves[candidate] = GameRules.counter(guess, 0).ordinal();
+					guess = GameRules.counter(moves[candidate], 0).ordinal();//Player beats that move
+				}
+			}
+		}
+		predicted = true;
+		if (timed){
+			checkBudget(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * checkBudget
+	 * <p>
+	 * Drops the most expensive active predictor after a run of moves over budget, 
+	 * and brings one back after a long run of moves well within it.
+	 * @param elapsed - the time the move's predictions took
+	 */
+	private void checkBudget(long elapsed){
+		if (elapsed > budgetNanos){
+			fastMoves = 0;
+			slowMoves++;
+			if (slowMoves == DROP_MOVES){
+				slowMoves = 0;
+				if (active > MIN_ACTIVE){
+					active--;
+					degradations++;
+				}
+			}
+			return;
+		}
+		slowMoves = 0;
+		if (elapsed < budgetNanos / 4 && active < predictors.length){
+			fastMoves++;
+			if (fastMoves == RESTORE_MOVES){
+				fastMoves = 0;
+				for (int candidate = active * ROTATIONS; candidate < (active + 1) * ROTATIONS; candidate++){
+					scores[candidate] = 0;//Scores from before the drop are stale
+				}
+				active++;
+			}
+		}
+		else {
+			fastMoves = 0;
+		}
+	}
+
+	/**
+	 * getActivePredictors
+	 * <p>
+	 * Gives the number of predictors currently in use.
+	 * @return active - the active predictor count
+	 */
+	public int getActivePredictors(){
+		return active;
+	}
+
+	/**
+	 * getPredictorCount
+	 * <p>
+	 * Gives the number of predictors the AI has, active or not.
+	 */
+	public int getPredictorCount(){
+		return predictors.length;
+	}
+
+	/**
+	 * getDegradations
+	 * <p>
+	 * Gives how many times a predictor was dropped for going over the budget.
+	 * @return degradations - the number of drops
+	 */
+	public long getDegradations(){
+		return degradations;
+	}
+
+	/**
+	 * <b>Predictor class</b>
+	 * <p>
+	 * Predicts the player's next gesture from the rounds it has observed.
+	 */
+	private abstract static class Predictor {
+
+		/**
+		 * predict
+		 * <p>
+		 * Gives the ordinal of the gesture the player is expected to throw next, or
+		 * -1 if there is no prediction yet.
+		 */
+		abstract int predict();
+
+		/**
+		 * observe
+		 * <p>
+		 * Takes in a finished round, given by gesture ordinals.
+		 */
+		abstract void observe(int player, int comp);
+	}
+
+	/**
+	 * The player throws the same gesture as last round.
+	 */
+	private static class RepeatPredictor extends Predictor {
+		private int last = -1;
+
+		int predict(){
+			return last;
+		}
+
+		void observe(int player, int comp){
+			last = player;
+		}
+	}
+
+	/**
+	 * The player throws what the computer threw last round.
+	 */
+	private static class MirrorPredictor extends Predictor {
+		private int last = -1;
+
+		int predict(){
+			return last;
+		}
+
+		void observe(int player, int comp){
+			if (comp < OPTIONS){
+				last = comp;
+			}
+		}
+	}
+
+	/**
+	 * The player throws their most frequent gesture, as GameAI sees it.
+	 */
+	private static class FrequencyPredictor extends Predictor {
+		private final GameAI counts;
+		private int rounds;
+
+		FrequencyPredictor(GameRandom random){
+			counts = new GameAI(random);
+		}
+
+		int predict(){
+			return counts.preferredGesture(rounds);
+		}
+
+		void observe(int player, int comp){
+			counts.inputGesture(player);
+			rounds++;
+		}
+	}
+
+	/**
+	 * The player throws the gesture with the highest recency-weighted count. Each
+	 * round's weight grows by 1 / DECAY instead of every old count shrinking, and
+	 * everything is rescaled once the weights get large, so an update is O(1).
+	 */
+	private static class RecencyPredictor extends Predictor {
+		private static final double DECAY = 0.85;
+		private static final double RESCALE_AT = 1e150;
+		private final double[] weights = new double[OPTIONS];
+		private double increment = 1;
+		private boolean seen;
+
+		int predict(){
+			if (!seen){
+				return -1;
+			}
+			int best = 0;
+			for (int gesture = 1; gesture < OPTIONS; gesture++){
+				if (weights[gesture] > weights[best]){
+					best = gesture;
+				}
+			}
+			return best;
+		}
+
+		void observe(int player, int comp){
+			weights[player] += increment;
+			increment /= DECAY;
+			if (increment > RESCALE_AT){
+				for (int gesture = 0; gesture < OPTIONS; gesture++){
+					weights[gesture] /= increment;
+				}
+				increment = 1;
+			}
+			seen = true;
+		}
+	}
+
+	/**
+	 * The player throws what a MarkovAI predicts. Like MirrorPredictor, it skips
+	 * rounds where the computer threw nothing.
+	 */
+	private static class MarkovPredictor extends Predictor {
+		private final MarkovAI model;
+
+		MarkovPredictor(MarkovAI model){
+			this.model = model;
+		}
+
+		int predict(){
+			return model.predict();
+		}
+
+		void observe(int player, int comp){
+			if (comp < OPTIONS){
+				model.inputRound(GESTURES[player], GESTURES[comp]);
+			}
+		}
+	}
+
+}//End of EnsembleAI class
@@ -0,0 +1,348 @@
+/**
+ * <b>ExploitabilityAnalyzer class</b>
+ * <p>
+ * Measures how much an adversary who knows exactly how GameAI works can win
+ * against it. The GameAI Javadoc claims that such a player loses at most the first
+ * round; this tool checks the claim for any rules and tie-breaking policy by
+ * computing the best possible expected number of wins over a given number of rounds.
+ * It models GameAI with UNLIMITED GameMemory.
+ * <p>
+ * GameAI's random choices are the only thing the adversary cannot see, and they do
+ * not change its state: the AI only counts the player's gestures. So the AI's state
+ * after any sequence of player throws is known, and the adversary's best play is a
+ * dynamic program over those states. Each round the adversary picks the gesture
+ * that maximizes its chance of winning the round (against the AI's known
+ * distribution of counter moves) plus the best it can do from the resulting state.
+ * <p>
+ * States are canonicalized before they are remembered. Only the gap between each
+ * count and the highest count matters. A gap of at least the number of rounds left
+ * is never closed in time, so gaps are capped there. The most recent leader only
+ * matters for the MOST_RECENT policy. A state and the number of rounds left are
+ * then packed into one long, and the values are memoized in a LongLongMap. Moves
+ * are tried best first, and a move is skipped when winning every round after it
+ * could still not beat the best move so far. Against GameAI's fixed tie-break, the
+ * adversary can win every round with certainty, so the search follows a single line
+ * of play and horizons of thousands of rounds take a few thousand states. The same
+ * holds for MOST_RECENT. The RANDOM tie-break cannot always be beaten, so many lines
+ * of play must be compared; its states grow faster than the fourth power of the
+ * horizon, which puts about 70 SPRLK rounds within the default state budget.
+ * <p>
+ * Usage: java ExploitabilityAnalyzer horizon [fixed_order|random|most_recent]
+ * [rules resource] [state budget]
+ */
+public class ExploitabilityAnalyzer {
+	private static final long STACK_SIZE = 1L << 28;//the search recurses once per round
+
+	private final RuleSet rules;
+	private final int OPTIONS;//number of possible gestures that one can throw
+	private final PreferenceTieBreak tieBreak;
+	private final int horizon;
+	private final int maxStates;
+	private final LongLongMap memo;//packed state and rounds left to expected wins
+	private final int horizonBits;
+	private final int gestureBits;
+	private final int gapBits;
+	private long expanded;//states whose moves were searched
+
+	/**
+	 * Constructs an analyzer of GameAI.
+	 * @param rules - the rules the AI plays by
+	 * @param tieBreak - the AI's preference tie-breaking policy
+	 * @param horizon - the number of rounds played
+	 * @param maxStates - the most states to remember before giving up
+	 */
+	public ExploitabilityAnalyzer(RuleSet rules, PreferenceTieBreak tieBreak, int horizon, int maxStates){
+		if (horizon < 1){
+			throw new IllegalArgumentException("Horizon must be at least 1 round: " + horizon);
+		}
+		this.rules = rules;
+		OPTIONS = rules.getSize();
+		this.tieBreak = tieBreak;
+		this.horizon = horizon;
+		this.maxStates = maxStates;
+		horizonBits = bitsFor(horizon);
+		gestureBits = bitsFor(OPTIONS - 1);
+		gapBits = bitsFor(horizon / 2);//a remembered gap is at most the smaller of the rounds played and left
+		int recentBits = tieBreak == PreferenceTieBreak.MOST_RECENT ? gestureBits : 0;
+		int bits = horizonBits + recentBits + gestureBits + (OPTIONS - 1) * gapBits;
+		if (bits > 64){
+			throw new IllegalArgumentException("A horizon of " + horizon + " rounds is too long to analyze "
+					+ OPTIONS + " gestures");
+		}
+		memo = new LongLongMap(Math.min(maxStates, 1 << 16));
+	}
+
+	/**
+	 * analyze
+	 * <p>
+	 * Computes the optimal adversary's expected number of wins over the horizon. The
+	 * search recurses once per round, so long horizons need a thread with a large
+	 * stack.
+	 * @return the expected wins, between 0 and the horizon
+	 * @throws IllegalStateException if more than the state budget would be needed
+	 */
+	public double analyze(){
+		int[] gaps = new int[OPTIONS];//all counts tied at 0
+		return value(gaps, 0, horizon, true);
+	}
+
+	/**
+	 * getStatesStored
+	 * <p>
+	 * Gives the number of distinct states remembered by the search so far.
+	 */
+	public int getStatesStored(){
+		return memo.size();
+	}
+
+	/**
+	 * getStatesExpanded
+	 * <p>
+	 * Gives the number of states whose moves were searched so far.
+	 */
+	public long getStatesExpanded(){
+		return expanded;
+	}
+
+	/**
+	 * value
+	 * <p>
+	 * Gives the optimal expected wins from a state.
+	 * @param gaps - for each gesture, the highest count minus its count, capped at
+	 * the rounds left
+	 * @param recent - the leader that reached the highest count most recently
+	 * @param left - the number of rounds left
+	 * @param first - whether no round has been played, when the AI throws at random
+	 */
+	private double value(int[] gaps, int recent, int left, boolean first){
+		if (left == 0){
+			return 0;
+		}
+		long key = 0;
+		if (!first){
+			key = pack(gaps, recent, left);
+			long known = memo.get(key, 0);
+			if (known != 0){
+				return Double.longBitsToDouble(known) - 1;
+			}
+		}
+		expanded++;
+		double[] winChances = winChances(gaps, recent, first);
+		int[] order = byChance(winChances);
+		double best = -1;
+		int[] child = new int[OPTIONS];
+		for (int i = 0; i < OPTIONS; i++){
+			int gesture = order[i];
+			if (winChances[gesture] + (left - 1) <= best){//Not even winning every later round would do better
+				break;
+			}
+			int childRecent = input(gaps, gesture, left - 1, child, recent);
+			double total = winChances[gesture] + value(child, childRecent, left - 1, false);
+			if (total > best){
+				best = total;
+			}
+		}
+		if (!first){
+			if (memo.size() >= maxStates){
+				throw new IllegalStateException("More than " + maxStates + " states needed for "
+						+ horizon + " rounds");
+			}
+			memo.put(key, Double.doubleToRawLongBits(best + 1));//stored plus 1 so that no value is the missing 0
+		}
+		return best;
+	}
+
+	/**
+	 * winChances
+	 * <p>
+	 * Works out the AI's distribution of throws in a state, as GameAI's
+	 * preferredGesture and counterGesture would make them, and from it the chance
+	 * that each gesture wins the round.
+	 * @return the chance of winning with each gesture
+	 */
+	private double[] winChances(int[] gaps, int recent, boolean first){
+		double[] throwChances = new double[OPTIONS];
+		if (first){//No preference yet, so any gesture
+			for (int comp = 0; comp < OPTIONS; comp++){
+				throwChances[comp] = 1.0 / OPTIONS;
+			}
+		}
+		else {
+			int leaderTotal = 0;
+			int fixedLeader = -1;
+			for (int g = 0; g < OPTIONS; g++){
+				if (gaps[g] == 0){
+					leaderTotal++;
+					if (fixedLeader < 0){
+						fixedLeader = g;
+					}
+				}
+			}
+			if (leaderTotal == 1 || tieBreak == PreferenceTieBreak.FIXED_ORDER){
+				addCounters(throwChances, fixedLeader, 1);
+			}
+			else if (tieBreak == PreferenceTieBreak.MOST_RECENT){
+				addCounters(throwChances, recent, 1);
+			}
+			else {
+				for (int g = 0; g < OPTIONS; g++){
+					if (gaps[g] == 0){
+						addCounters(throwChances, g, 1.0 / leaderTotal);
+					}
+				}
+			}
+		}
+		double[] winChances = new double[OPTIONS];
+		for (int gesture = 0; gesture < OPTIONS; gesture++){
+			for (int comp = 0; comp < OPTIONS; comp++){
+				if (throwChances[comp] > 0 && rules.beats(gesture, comp)){
+					winChances[gesture] += throwChances[comp];
+				}
+			}
+		}
+		return winChances;
+	}
+
+	private void addCounters(double[] throwChances, int preferred, double weight){
+		int beaters = rules.getBeaterCount(preferred);
+		for (int choice = 0; choice < beaters; choice++){
+			throwChances[rules.getBeater(preferred, choice)] += weight / beaters;
+		}
+	}
+
+	/**
+	 * input
+	 * <p>
+	 * Applies a player throw to a state the way GameAI.inputGesture does.
+	 * @param gaps - the state before the throw
+	 * @param gesture - the gesture thrown
+	 * @param left - the rounds left after the throw, at which the gaps are capped
+	 * @param child - receives the gaps after the throw
+	 * @param recent - the most recent leader before the throw
+	 * <p>
+	 * @return the most recent leader after the throw
+	 */
+	private int input(int[] gaps, int gesture, int left, int[] child, int recent){
+		if (gaps[gesture] == 0){//New sole leader
+			for (int g = 0; g < OPTIONS; g++){
+				child[g] = Math.min(gaps[g] + 1, left);
+			}
+			child[gesture] = 0;
+			recent = gesture;
+		}
+		else {
+			for (int g = 0; g < OPTIONS; g++){
+				child[g] = Math.min(gaps[g], left);
+			}
+			child[gesture] = Math.min(gaps[gesture] - 1, left);
+			if (child[gesture] == 0){//Joins the leaders
+				recent = gesture;
+			}
+		}
+		return recent;
+	}
+
+	/**
+	 * pack
+	 * <p>
+	 * Packs a canonical state into a long: the rounds left, the most recent leader
+	 * (only for MOST_RECENT), the first leader, then the gaps of the other gestures.
+	 * The rounds left are at least 1, so no key is 0.
+	 */
+	private long pack(int[] gaps, int recent, int left){
+		long key = left;
+		int shift = horizonBits;
+		if (tieBreak == PreferenceTieBreak.MOST_RECENT){
+			key |= (long) recent << shift;
+			shift += gestureBits;
+		}
+		int fixedLeader = 0;
+		while (gaps[fixedLeader] != 0){
+			fixedLeader++;
+		}
+		key |= (long) fixedLeader << shift;
+		shift += gestureBits;
+		for (int g = 0; g < OPTIONS; g++){
+			if (g != fixedLeader){
+				key |= (long) gaps[g] << shift;
+				shift += gapBits;
+			}
+		}
+		return key;
+	}
+
+	private int[] byChance(double[] chances){
+		int[] order = new int[OPTIONS];
+		for (int i = 0; i < OPTIONS; i++){
+			int gesture = i;
+			int j = i;
+			while (j > 0 && chances[order[j - 1]] < chances[gesture]){
+				order[j] = order[j - 1];
+				j--;
+			}
+			order[j] = gesture;
+		}
+		return order;
+	}
+
+	private static int bitsFor(int value){
+		return Math.max(1, 32 - Integer.numberOfLeadingZeros(value));
+	}
+
+	/**
+	 * main
+	 * <p>
+	 * Analyzes GameAI and prints the optimal adversary's expected win rate.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1){
+			System.err.println("Usage: java ExploitabilityAnalyzer horizon [fixed_order|random|most_recent] "
+					+ "[rules resource] [state budget]");
+			System.exit(2);
+		}
+		final int horizon = Integer.parseInt(args[0]);
+		final PreferenceTieBreak tieBreak = args.length > 1
+				? PreferenceTieBreak.valueOf(args[1].toUpperCase()) : PreferenceTieBreak.FIXED_ORDER;
+		final RuleSet rules = args.length > 2 ? RuleSet.loadResource(args[2]) : RuleSet.SPRLK;
+		final int maxStates = args.length > 3 ? Integer.parseInt(args[3]) : 1 << 22;
+		final ExploitabilityAnalyzer analyzer = new ExploitabilityAnalyzer(rules, tieBreak, horizon, maxStates);
+		final double[] result = new double[1];
+		final IllegalStateException[] failure = new IllegalStateException[1];
+		Thread worker = new Thread(null, new Runnable(){
+			public void run(){
+				try {
+					result[0] = analyzer.analyze();
+				}
+				catch (IllegalStateException e){
+					failure[0] = e;
+				}
+			}
+		}, "ExploitabilityAnalyzer", STACK_SIZE);
+		long start = System.nanoTime();
+		worker.start();
+		worker.join();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println("Rules: " + rules.getName() + ", tie-break: " + tieBreak.name().toLowerCase()
+				+ ", horizon: " + horizon + " rounds");
+		if (failure[0] != null){
+			System.out.println("Gave up: " + failure[0].getMessage() + " (raise the state budget or shorten the horizon)");
+			System.exit(1);
+		}
+		double wins = result[0];
+		System.out.println(String.format("Optimal adversary expects %.4f wins (%.2f%% of rounds)",
+				wins, 100 * wins / horizon));
+		int firstWins = 0;//the most wins the best first throw can expect against a random throw
+		for (int gesture = 0; gesture < rules.getSize(); gesture++){
+			firstWins = Math.max(firstWins, rules.getSize() - 1 - rules.getBeaterCount(gesture));
+		}
+		if (wins >= (double) firstWins / rules.getSize() + horizon - 1 - 1e-9){
+			System.out.println("Every round after the first can be won with certainty");
+		}
+		else {
+			System.out.println("Not every round after the first can be won with certainty");
+		}
+		System.out.println(String.format("States stored: %d, expanded: %d, in %.2f s",
+				analyzer.getStatesStored(), analyzer.getStatesExpanded(), seconds));
+	}
+
+}//End of ExploitabilityAnalyzer class
@@ -0,0 +1,68 @@
+/**
+ * <b>ExploiterPlayer class</b>
+ * <p>
+ * A scripted player that plays the counts-aware strategy described in the GameAI
+ * Javadoc. It keeps track of its own gesture counts, works out which gesture the AI
+ * perceives as its preference (ties broken in the order scissors, paper, rock, lizard,
+ * spock) and then throws the gesture that beats both of the computer's possible
+ * answers to that preference.
+ * <p>
+ * If the Javadoc is right, this player loses at most the first round.
+ */
+public class ExploiterPlayer implements ScriptedPlayer {
+	private static final int OPTIONS = 5;//number of possible gestures that one can throw
+	private static final GameGesture[] GESTURES = {GameGesture.SCISSORS, GameGesture.PAPER,
+		GameGesture.ROCK, GameGesture.LIZARD, GameGesture.SPOCK};
+	private final int[] counts;
+	private int gamesPlayed;
+
+	/**
+	 * Constructs a counts-aware exploiter with all of its gesture counts at 0.
+	 */
+	public ExploiterPlayer(){
+		counts = new int[OPTIONS];
+		gamesPlayed = 0;
+	}
+
+	public GameGesture nextGesture(){
+		if (gamesPlayed == 0){//AI throws randomly in the first round
+			return GameGesture.SCISSORS;
+		}
+		//Finds the perceived preference the same way the AI does
+		int pref = 0;
+		for (int i = 1; i < OPTIONS; i++){
+			if (counts[i] > counts[pref]){
+				pref = i;
+			}
+		}
+		//Finds the gestures that the AI may answer with
+		GameGesture first = GameGesture.NONE;
+		GameGesture second = GameGesture.NONE;
+		for (GameGesture candidate : GESTURES){
+			if (GameRules.outcome(GESTURES[pref], candidate) == GameRules.COMP_WIN){
+				if (first == GameGesture.NONE){
+					first = candidate;
+				}
+				else {
+					second = candidate;
+				}
+			}
+		}
+		//Throws whatever beats both possible answers
+		for (GameGesture gesture : GESTURES){
+			if (GameRules.outcome(gesture, first) == GameRules.PLAYER_WIN
+					&& GameRules.outcome(gesture, second) == GameRules.PLAYER_WIN){
+				return gesture;
+			}
+		}
+		return GESTURES[pref];
+	}
+
+	public void observe(GameGesture playerGesture, GameGesture compGesture){
+		if (playerGesture != GameGesture.NONE){
+			counts[playerGesture.ordinal()]++;
+		}
+		gamesPlayed++;
+	}
+
+}//End of ExploiterPlayer class
@@ -1,3 +1,6 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * <b>GameAI class</b>
  * <p>
@@ -23,54 +26,268 @@
  * It is also important to note that you must know the order of the logic statements
  * for the AI to be able to correctly predict what the AI will perceive as your 
  * preferred gesture when two or more player gesture counts are tied for the most. 
- * Due to the nature of the if-else statements, whatever is first in the order of 
- * scissors, paper, rock, lizard, and spock will be considered the preference. 
- * Against an unaware player, this might not be a big deal, but to someone who knows
- * the ins and outs of the AI code, it allows for the player to completely know what
- * the AI is "thinking."
+ * By default, whatever is first in the order of scissors, paper, rock, lizard, and
+ * spock will be considered the preference. Against an unaware player, this might 
+ * not be a big deal, but to someone who knows the ins and outs of the AI code, it 
+ * allows for the player to completely know what the AI is "thinking." The AI can
+ * therefore be built with a different PreferenceTieBreak policy, which picks among 
+ * tied gestures at random or by which one was thrown most recently.
+ * <p>
+ * The AI plays by a RuleSet, SPRLK unless another is given, and sizes its counts
+ * and its choice of counter moves to however many gestures the rules have. Games
+ * with more gestures than GameGesture can name drive the AI through the gesture 
+ * number methods (inputGesture(int), preferredGesture, counterGesture and 
+ * chooseGestureNumber); the GameGesture methods are for SPRLK, and throw
+ * IllegalStateException when the rules are not SPRLK's, gesture for gesture.
+ * <p>
+ * By default the AI counts every gesture the player has ever thrown. In long
+ * sessions it can instead be given a GameMemory that only counts a window of the
+ * most recent throws, kept in a ring buffer, or that lets old throws decay. Decayed
+ * counts are fixed-point longs: rather than shrinking every count each round, the
+ * weight of a new throw grows by the inverse of the decay factor, and all counts are
+ * shifted down together whenever that weight gets large. Either way a throw costs
+ * constant time, and the counts are longs that cannot overflow.
+ * <p>
+ * The counts can be saved and restored with writeState and readState, which is how
+ * ProfileStore remembers returning players.
  * @author James Wen - jrw2175
  */
-public class GameAI {
-	private int scissorGestures;
-	private int paperGestures;
-	private int rockGestures;
-	private int lizardGestures;
-	private int spockGestures;
-	private final int OPTIONS = 5;//number of possible gestures that one can throw
+public class GameAI implements PersistentStrategy {
+	private static final GameGesture[] GESTURES = {GameGesture.SCISSORS, GameGesture.PAPER,
+		GameGesture.ROCK, GameGesture.LIZARD, GameGesture.SPOCK};
+	private static final byte STATE_VERSION = 2;
+	private static final byte UNLIMITED_STATE_VERSION = 1;//int counts, written before GameMemory
+	private static final int GROWTH_BITS = 32;//fraction bits of the fixed-point decay growth
+	private static final long DECAY_UNIT = 1L << 36;//weight of a throw right after a rescale
+	private static final long RESCALE_AT = 1L << 40;//keeps decayed counts well within a long
+	private static final int RESCALE_SHIFT = 4;//brings RESCALE_AT back to DECAY_UNIT
+	private final RuleSet rules;
+	private final int OPTIONS;//number of possible gestures that one can throw
+	private final boolean namedGestures;//whether the rules are SPRLK's, so GameGesture applies
+	private final long[] gestureCounts;//player gesture counts, indexed by gesture number
+	private final int[] leaders;//gestures whose count equals the highest count, in the order they got there
+	private int leaderTotal;//number of gestures held in leaders
+	private long leaderCount;//the highest gesture count
+	private int fixedLeader;//first leader in the order scissors, paper, rock, lizard, spock
+	private int recentLeader;//leader that reached the highest count most recently
+	private final PreferenceTieBreak tieBreak;
+	private final GameRandom random;
+	private final GameMemory memory;
+	private final byte[] window;//ring buffer of the remembered gestures, for a WINDOW memory
+	private int windowNext;//where the next gesture goes in the window
+	private int windowFilled;//number of gestures in the window
+	private final long growth;//fixed-point growth of the weight minus 1, for a DECAY memory
+	private long weight;//what a new throw adds to its count
 	
 	/**
 	 * Constructs a SPRLK Computer AI and initiates all its player gesture counts to 
-	 * 0.
+	 * 0. Preference ties are broken in the fixed order scissors, paper, rock, 
+	 * lizard, spock.
 	 */
 	public GameAI(){
-		scissorGestures = 0;
-		paperGestures = 0;
-		rockGestures = 0;
-		lizardGestures = 0;
-		spockGestures = 0;
+		this(PreferenceTieBreak.FIXED_ORDER, new GameRandom());
+	}
+
+	/**
+	 * Constructs a SPRLK Computer AI that breaks preference ties with the given 
+	 * policy and initiates all its player gesture counts to 0.
+	 * @param tieBreak - how to choose between gestures tied for the highest count
+	 */
+	public GameAI(PreferenceTieBreak tieBreak){
+		this(tieBreak, new GameRandom());
+	}
+
+	/**
+	 * Constructs a SPRLK Computer AI that makes all its random choices with the 
+	 * given generator, so that its play can be replayed from the generator's seed.
+	 * Preference ties are broken in the fixed order.
+	 * @param random - the random source owned by this AI
+	 */
+	public GameAI(GameRandom random){
+		this(PreferenceTieBreak.FIXED_ORDER, random);
+	}
+
+	/**
+	 * Constructs a SPRLK Computer AI with the given tie-breaking policy and random
+	 * source, and initiates all its player gesture counts to 0.
+	 * @param tieBreak - how to choose between gestures tied for the highest count
+	 * @param random - the random source owned by this AI
+	 */
+	public GameAI(PreferenceTieBreak tieBreak, GameRandom random){
+		this(RuleSet.SPRLK, tieBreak, random);
+	}
+
+	/**
+	 * Constructs a Computer AI for a game with the given rules, with the given 
+	 * tie-breaking policy and random source, and initiates all its player gesture 
+	 * counts to 0.
+	 * @param rules - the rules of the game, which decide the counter moves
+	 * @param tieBreak - how to choose between gestures tied for the highest count
+	 * @param random - the random source owned by this AI
+	 */
+	public GameAI(RuleSet rules, PreferenceTieBreak tieBreak, GameRandom random){
+		this(rules, tieBreak, GameMemory.UNLIMITED, random);
+	}
+
+	/**
+	 * Constructs a Computer AI for a game with the given rules, tie-breaking policy,
+	 * memory of the player's gestures and random source.
+	 * @param rules - the rules of the game, which decide the counter moves
+	 * @param tieBreak - how to choose between gestures tied for the highest count
+	 * @param memory - which of the player's past gestures are counted
+	 * @param random - the random source owned by this AI
+	 */
+	public GameAI(RuleSet rules, PreferenceTieBreak tieBreak, GameMemory memory, GameRandom random){
+		this.rules = rules;
+		OPTIONS = rules.getSize();
+		namedGestures = rules == RuleSet.SPRLK || rules.hasSameWins(RuleSet.SPRLK);
+		this.tieBreak = tieBreak;
+		this.random = random;
+		this.memory = memory;
+		if (memory.getKind() == GameMemory.Kind.WINDOW){
+			if (OPTIONS > 256){
+				throw new IllegalArgumentException("A window holds at most 256 gestures, not " + OPTIONS);
+			}
+			window = new byte[memory.getWindow()];
+		}
+		else {
+			window = null;
+		}
+		if (memory.getKind() == GameMemory.Kind.DECAY){
+			growth = Math.round((1L << GROWTH_BITS) * (1 / memory.getDecay() - 1));
+			weight = DECAY_UNIT;
+		}
+		else {
+			growth = 0;
+			weight = 1;
+		}
+		gestureCounts = new long[OPTIONS];
+		leaders = new int[OPTIONS];
+		//All gestures start out tied at a count of 0
+		for (int i = 0; i < OPTIONS; i++){
+			leaders[i] = i;
+		}
+		leaderTotal = OPTIONS;
+		leaderCount = 0;
+		fixedLeader = 0;
+		recentLeader = 0;
 	}
 
 	/**
 	 * inputGesture
 	 * <p>
 	 * Updates the AI's frequency counts of the player's thrown gestures.
+	 * <p>
+	 * Also keeps track of which gestures are tied for the highest count, so that
+	 * playerPref never has to search the counts.
 	 */
 	public void inputGesture(GameGesture playerGesture){
-		if (playerGesture == GameGesture.SCISSORS){
-			scissorGestures++;
+		if (playerGesture == GameGesture.NONE){
+			return;
 		}
-		else if(playerGesture == GameGesture.PAPER){
-			paperGestures++;
+		inputGesture(playerGesture.ordinal());
+	}
+
+	/**
+	 * inputGesture
+	 * <p>
+	 * Updates the AI's frequency counts with a gesture given by its number in the
+	 * AI's rules.
+	 * @param gesture - the number of the gesture that the player threw
+	 */
+	public void inputGesture(int gesture){
+		if (window != null){
+			if (windowFilled == window.length){
+				forget(window[windowNext] & 0xFF);
+			}
+			else {
+				windowFilled++;
+			}
+			window[windowNext] = (byte) gesture;
+			windowNext = windowNext + 1 == window.length ? 0 : windowNext + 1;
 		}
-		else if(playerGesture == GameGesture.ROCK){
-			rockGestures++;
+		long count = gestureCounts[gesture] += weight;
+		if (count > leaderCount){//New sole leader
+			leaderCount = count;
+			leaders[0] = gesture;
+			leaderTotal = 1;
+			fixedLeader = gesture;
+			recentLeader = gesture;
 		}
-		else if(playerGesture == GameGesture.LIZARD){
-			lizardGestures++;
+		else if (count == leaderCount){//Joins the leaders
+			leaders[leaderTotal] = gesture;
+			leaderTotal++;
+			if (gesture < fixedLeader){
+				fixedLeader = gesture;
+			}
+			recentLeader = gesture;
 		}
-		else if(playerGesture == GameGesture.SPOCK){
-			spockGestures++;
+		if (growth != 0){//Adds weight * growth, rounded, in two halves so nothing overflows
+			long high = weight >>> GROWTH_BITS;
+			long low = weight & ((1L << GROWTH_BITS) - 1);
+			weight += high * growth + ((low * growth + (1L << (GROWTH_BITS - 1))) >>> GROWTH_BITS);
+			if (weight > RESCALE_AT){
+				rescale();
+			}
+		}
+	}
+
+	/**
+	 * forget
+	 * <p>
+	 * Takes the oldest gesture out of the counts when it leaves the window. When it
+	 * was the sole leader it is now tied with every gesture one count below, so the
+	 * leaders are found again; it stays the most recent leader.
+	 * @param gesture - the number of the gesture that left the window
+	 */
+	private void forget(int gesture){
+		long count = --gestureCounts[gesture];
+		if (count + 1 < leaderCount){//Was not a leader
+			return;
+		}
+		if (leaderTotal > 1){//Leaves the leaders, which keep their order
+			int i = 0;
+			while (leaders[i] != gesture){
+				i++;
+			}
+			System.arraycopy(leaders, i + 1, leaders, i, leaderTotal - i - 1);
+			leaderTotal--;
+			fixedLeader = leaders[0];
+			for (int j = 1; j < leaderTotal; j++){
+				fixedLeader = Math.min(fixedLeader, leaders[j]);
+			}
+			recentLeader = leaders[leaderTotal - 1];
 		}
+		else {
+			leaderCount = count;
+			leaderTotal = 0;
+			fixedLeader = gesture;
+			for (int g = 0; g < OPTIONS; g++){
+				if (g != gesture && gestureCounts[g] == count){
+					leaders[leaderTotal] = g;
+					leaderTotal++;
+					fixedLeader = Math.min(fixedLeader, g);
+				}
+			}
+			leaders[leaderTotal] = gesture;
+			leaderTotal++;
+			recentLeader = gesture;
+		}
+	}
+
+	/**
+	 * rescale
+	 * <p>
+	 * Shifts the decayed counts and the throw weight down together, which keeps their
+	 * ratios. The leaders stay the leaders; a gesture just below them that rounds to
+	 * the same count only becomes a leader by being thrown again.
+	 */
+	private void rescale(){
+		for (int g = 0; g < OPTIONS; g++){
+			gestureCounts[g] >>>= RESCALE_SHIFT;
+		}
+		leaderCount >>>= RESCALE_SHIFT;
+		weight >>>= RESCALE_SHIFT;
 	}
 	
 	/**
@@ -78,11 +295,12 @@ public class GameAI {
 	 * <p>
 	 * Determines if the player has a preference for any specific game gesture.
 	 * <p>
-	 * Algorithm for finding a preference is based on the fact that no player
-	 * gesture count can be greater than the number of games that have been played.
-	 * Hence, whichever gesture count is closest in frequency to the total number 
-	 * of games played is the one that the player prefers. Preference ties are 
-	 * negligible since they do not hurt the computer in any way.
+	 * The preferred gesture is the one with the highest count. The gestures tied for
+	 * the highest count are maintained by inputGesture, so this takes constant time
+	 * however many games have been played. When several gestures are tied, the 
+	 * AI's tie-breaking policy decides: the fixed order scissors, paper, rock, 
+	 * lizard, spock (the original behaviour, which an aware player can predict), a
+	 * random choice, or the gesture that reached the highest count most recently.
 	 * @param gamesPlayed - the number of games played so far
 	 * <p>
 	 * @return playerPref - the gesture that the player prefers to throw by
@@ -90,35 +308,223 @@ public class GameAI {
 	 */
 	//Used to determine if the player has a preference
 	public GameGesture playerPref(int gamesPlayed){
-		boolean preferenceFound = false;
-		GameGesture playerPref = GameGesture.NONE;
+		checkNamedGestures();
+		int preferred = preferredGesture(gamesPlayed);
+		if (preferred < 0){
+			return GameGesture.NONE;
+		}
+		return GESTURES[preferred];
+	}
+
+	/**
+	 * preferredGesture
+	 * <p>
+	 * Same as playerPref, for gestures given by their number in the AI's rules.
+	 * @param gamesPlayed - the number of games played so far
+	 * <p>
+	 * @return the number of the gesture that the player prefers, or -1 if no games 
+	 * have been played
+	 */
+	public int preferredGesture(int gamesPlayed){
 		if (gamesPlayed == 0){//if no games played yet, skips finding preference
-			preferenceFound = true;
+			return -1;
+		}
+		if (leaderTotal == 1 || tieBreak == PreferenceTieBreak.FIXED_ORDER){
+			return fixedLeader;
+		}
+		else if (tieBreak == PreferenceTieBreak.MOST_RECENT){
+			return recentLeader;
+		}
+		else {//Random among the tied gestures
+			return leaders[random.nextInt(leaderTotal)];
+		}
+	}
+
+	/**
+	 * chooseGesture
+	 * <p>
+	 * Plays as a GameStrategy: throws a gesture that beats the player's preferred 
+	 * gesture, as decided by playerPref and gestureComp.
+	 */
+	public GameGesture chooseGesture(int gamesPlayed){
+		return gestureComp(playerPref(gamesPlayed));
+	}
+
+	/**
+	 * chooseGestureNumber
+	 * <p>
+	 * Same as chooseGesture, for gestures given by their number in the AI's rules.
+	 * @param gamesPlayed - the number of games played so far
+	 * <p>
+	 * @return the number of the gesture that the computer has selected
+	 */
+	public int chooseGestureNumber(int gamesPlayed){
+		return counterGesture(preferredGesture(gamesPlayed));
+	}
+
+	/**
+	 * inputRound
+	 * <p>
+	 * Plays as a GameStrategy: only the player's gesture is counted.
+	 */
+	public void inputRound(GameGesture playerGesture, GameGesture compGesture){
+		inputGesture(playerGesture);
+	}
+
+	/**
+	 * writeState
+	 * <p>
+	 * Writes the player gesture counts and the gestures tied for the highest count:
+	 * a version byte, the number of gestures, the memory kind as a byte, every count
+	 * as a long, then the tied gestures and the two tie-breaking leaders as shorts.
+	 * A window follows with its size, fill and position as ints and its gestures as
+	 * bytes; decay follows with the throw weight as a long. SPRLK takes 50 bytes plus
+	 * 2 per tied gesture, and a window adds 12 bytes plus 1 per remembered gesture.
+	 * @param out - the buffer to write to
+	 */
+	public void writeState(ByteBuffer out){
+		out.put(STATE_VERSION);
+		out.putShort((short) OPTIONS);
+		out.put((byte) memory.getKind().ordinal());
+		for (int i = 0; i < OPTIONS; i++){
+			out.putLong(gestureCounts[i]);
+		}
+		out.putShort((short) leaderTotal);
+		for (int i = 0; i < leaderTotal; i++){
+			out.putShort((short) leaders[i]);
+		}
+		out.putShort((short) fixedLeader);
+		out.putShort((short) recentLeader);
+		if (window != null){
+			out.putInt(window.length);
+			out.putInt(windowFilled);
+			out.putInt(windowNext);
+			out.put(window, 0, windowFilled);
+		}
+		else if (growth != 0){
+			out.putLong(weight);
+		}
+	}
+
+	/**
+	 * readState
+	 * <p>
+	 * Restores counts written by writeState. The AI must play by rules with the same
+	 * number of gestures, and have the same kind of memory (and window size), as the
+	 * one that wrote them. Counts written before GameAI had a GameMemory can be read
+	 * by an AI with UNLIMITED memory. State that cannot be read leaves the AI as it
+	 * was.
+	 * @param in - the buffer to read from
+	 */
+	public void readState(ByteBuffer in) throws IOException {
+		byte version = in.get();
+		if (version != STATE_VERSION && version != UNLIMITED_STATE_VERSION){
+			throw new IOException("Unsupported GameAI state version " + version);
+		}
+		int options = in.getShort();
+		if (options != OPTIONS){
+			throw new IOException("GameAI state is for " + options + " gestures, not " + OPTIONS);
 		}
-		while(!preferenceFound){//finds player preference
-			if (scissorGestures == gamesPlayed){
-				playerPref = GameGesture.SCISSORS;
-				preferenceFound = true;
+		int kind = version == UNLIMITED_STATE_VERSION ? GameMemory.Kind.UNLIMITED.ordinal() : in.get();
+		if (kind != memory.getKind().ordinal()){
+			throw new IOException("GameAI state is not for " + memory + " memory");
+		}
+		//Everything is read and checked before any of it replaces the AI's state
+		long[] counts = new long[OPTIONS];
+		long highest = 0;
+		for (int i = 0; i < OPTIONS; i++){
+			counts[i] = version == UNLIMITED_STATE_VERSION ? in.getInt() : in.getLong();
+			if (counts[i] < 0){
+				throw new IOException("Corrupt GameAI state: count " + counts[i]);
 			}
-			else if (paperGestures == gamesPlayed){
-				playerPref = GameGesture.PAPER;
-				preferenceFound = true;
+			highest = Math.max(highest, counts[i]);
+		}
+		int total = in.getShort();
+		if (total < 1 || total > OPTIONS){
+			throw new IOException("Corrupt GameAI state: " + total + " leaders");
+		}
+		int[] readLeaders = new int[total];
+		for (int i = 0; i < total; i++){
+			readLeaders[i] = checkedGesture(in.getShort());
+		}
+		int readFixed = checkedGesture(in.getShort());
+		int readRecent = checkedGesture(in.getShort());
+		byte[] readWindow = null;
+		int filled = 0;
+		int next = 0;
+		long readWeight = weight;
+		if (window != null){
+			int size = in.getInt();
+			filled = in.getInt();
+			next = in.getInt();
+			if (size != window.length){
+				throw new IOException("GameAI state is for a window of " + size + ", not " + window.length);
 			}
-			else if (rockGestures == gamesPlayed){
-				playerPref = GameGesture.ROCK;
-				preferenceFound = true;
+			if (filled < 0 || filled > size || next < 0 || next >= size){
+				throw new IOException("Corrupt GameAI state: window at " + next + " with " + filled + " gestures");
 			}
-			else if (lizardGestures == gamesPlayed){
-				playerPref = GameGesture.LIZARD;
-				preferenceFound = true;
+			readWindow = new byte[filled];
+			in.get(readWindow);
+			for (int i = 0; i < filled; i++){
+				checkedGesture(readWindow[i] & 0xFF);
 			}
-			else if (spockGestures == gamesPlayed){
-				playerPref = GameGesture.SPOCK;
-				preferenceFound = true;
+		}
+		else if (growth != 0){
+			readWeight = in.getLong();
+			if (readWeight < DECAY_UNIT || readWeight > RESCALE_AT){//A rescale never goes below DECAY_UNIT
+				throw new IOException("Corrupt GameAI state: weight " + readWeight);
 			}
-			gamesPlayed--;
 		}
-		return playerPref;
+
+		System.arraycopy(counts, 0, gestureCounts, 0, OPTIONS);
+		System.arraycopy(readLeaders, 0, leaders, 0, total);
+		leaderTotal = total;
+		leaderCount = highest;
+		fixedLeader = readFixed;
+		recentLeader = readRecent;
+		if (readWindow != null){
+			System.arraycopy(readWindow, 0, window, 0, filled);
+			windowFilled = filled;
+			windowNext = next;
+		}
+		weight = readWeight;
+	}
+
+	private int checkedGesture(int gesture) throws IOException {
+		if (gesture < 0 || gesture >= OPTIONS){
+			throw new IOException("Corrupt GameAI state: gesture " + gesture);
+		}
+		return gesture;
+	}
+
+	/**
+	 * getTieBreak
+	 * <p>
+	 * Gives the policy that this AI uses for preference ties.
+	 * @return tieBreak - the preference tie-breaking policy
+	 */
+	public PreferenceTieBreak getTieBreak(){
+		return tieBreak;
+	}
+
+	/**
+	 * getMemory
+	 * <p>
+	 * Gives which of the player's past gestures this AI counts.
+	 * @return memory - the AI's memory
+	 */
+	public GameMemory getMemory(){
+		return memory;
+	}
+
+	/**
+	 * getRules
+	 * <p>
+	 * Gives the rules that this AI plays by.
+	 * @return rules - the AI's rule set
+	 */
+	public RuleSet getRules(){
+		return rules;
 	}
 
 	/**
@@ -136,75 +542,52 @@ public class GameAI {
 	 * randomly chooses one of these two possible gestures (decideBetween = 1 is the
 	 * gesture that is physically next to the player preferred gesture in the SPRLK 
 	 * diagrams). 
+	 * <p>
+	 * All random choices come from the AI's own GameRandom rather than the shared
+	 * Math.random generator.
 	 * @param playerPref - the gesture that the player prefers to throw by frequency
 	 * <p>
 	 * @return compGesture - the gesture that the computer has selected
 	 */
 	public GameGesture gestureComp(GameGesture playerPref){
-		GameGesture compGesture = GameGesture.NONE;
-		int decideBetween = 0;
+		checkNamedGestures();
+		int preferred = -1;
 		if (playerPref != GameGesture.NONE){
-			decideBetween = (int)(Math.random() * 2) + 1;
-		}
-		if (playerPref == GameGesture.NONE){//if player has no current preference
-			int randomGesture = (int)(Math.random() * OPTIONS) + 1;
-			if(randomGesture==1){
-				compGesture = GameGesture.SCISSORS;
-			}
-			if(randomGesture==2){
-				compGesture = GameGesture.PAPER;
-			}
-			if(randomGesture==3){
-				compGesture = GameGesture.ROCK;
-			}
-			if(randomGesture==4){
-				compGesture = GameGesture.LIZARD;
-			}
-			if(randomGesture==5){
-				compGesture = GameGesture.SPOCK;
-			}
+			preferred = playerPref.ordinal();
 		}
-		else if (playerPref == GameGesture.SCISSORS){//Player prefers Scissors
-			if (decideBetween == 1){
-				compGesture = GameGesture.SPOCK;
-			}
-			else{
-				compGesture = GameGesture.ROCK;
-			}
-		}
-		else if (playerPref == GameGesture.PAPER){//Player prefers Paper
-			if (decideBetween == 1){
-				compGesture = GameGesture.SCISSORS;
-			}
-			else{
-				compGesture = GameGesture.LIZARD;
-			}
-		}
-		else if (playerPref == GameGesture.ROCK){//Player prefers Rock
-			if (decideBetween == 1){
-				compGesture = GameGesture.PAPER;
-			}
-			else{
-				compGesture = GameGesture.SPOCK;
-			}
-		}
-		else if (playerPref == GameGesture.LIZARD){//Player prefers Lizard
-			if (decideBetween == 1){
-				compGesture = GameGesture.ROCK;
-			}
-			else{
-				compGesture = GameGesture.SCISSORS;
-			}
+		return GESTURES[counterGesture(preferred)];
+	}
+
+	/**
+	 * checkNamedGestures
+	 * <p>
+	 * Makes sure that the rules are SPRLK's, so that every gesture number of the
+	 * rules is the GameGesture of the same number and wins as GameRules says, which
+	 * the GameGesture methods rely on.
+	 */
+	private void checkNamedGestures(){
+		if (!namedGestures){
+			throw new IllegalStateException("Rules " + rules + " need the gesture number methods");
 		}
-		else if (playerPref == GameGesture.SPOCK){//Player prefers Spock
-			if (decideBetween == 1){
-				compGesture = GameGesture.LIZARD;
-			}
-			else{
-				compGesture = GameGesture.PAPER;
-			}
+	}
+
+	/**
+	 * counterGesture
+	 * <p>
+	 * Same as gestureComp, for gestures given by their number in the AI's rules. 
+	 * The computer picks at random among all the gestures that beat the preferred
+	 * one, which are looked up in the rules rather than searched for.
+	 * @param preferred - the number of the gesture that the player prefers, or -1 if
+	 * there is no preference yet
+	 * <p>
+	 * @return the number of the gesture that the computer has selected
+	 */
+	public int counterGesture(int preferred){
+		if (preferred < 0){//if player has no current preference
+			return random.nextInt(OPTIONS);
 		}
-		return compGesture;
+		int decideBetween = random.nextInt(rules.getBeaterCount(preferred));
+		return rules.getBeater(preferred, decideBetween);
 	}
 	
-}//End of GameAI class
\ No newline at end of file
+}//End of GameAI class
\ No newline at end of file
@@ -1,6 +1,3 @@
-import javax.swing.ImageIcon;
-import java.text.*;
-
 /**
  * <b>GameHandler class</b>
  * <p>
@@ -9,6 +6,9 @@ import java.text.*;
  * <p>
  * Separate entity from Computer/Game AI, although does provide input information
  * for the AI.
+ * <p>
+ * Has no GUI dependency, so the game can run headless (see SPRLKConsole) without
+ * loading Swing. The GUI shows gesture images through GestureIcons.
  * @author James Wen - jrw2175
  */
 public class GameHandler {
@@ -18,19 +18,50 @@ public class GameHandler {
 	private int compWins;
 	private GameGesture playerGesture;
 	private GameGesture compGesture;
+	private byte outcome;//GameRules outcome code of the last round, -1 before the first
 	private String gameStatus;
-	private GameAI smarts;
+	private GameStrategy smarts;
+	private GameMetrics.Recorder metrics;
+	private RoundDispatcher dispatcher;
+	private final GameStatistics statistics;
+	private StatsFormatter statsFormatter;
+	private GameStatistics.Snapshot statsSnapshot;
+	private StringBuilder statsText;
 	
 	/**
 	 * Constructs a SPRLK game Hander, initiates a computer AI, and 
 	 * starts a new game (all information set to 0).
 	 */
 	public GameHandler(){
-		smarts = new GameAI();
+		this(new GameAI());
+	}
+	
+	/**
+	 * Constructs a SPRLK game Handler whose computer AI makes all its random 
+	 * choices with the given generator, and starts a new game (all information set 
+	 * to 0). Two handlers built from generators with the same seed play identically
+	 * against the same player.
+	 * @param random - the random source for the computer AI
+	 */
+	public GameHandler(GameRandom random){
+		this(new GameAI(random));
+	}
+	
+	/**
+	 * Constructs a SPRLK game Handler that plays with the given computer strategy,
+	 * for example a GameAI or a MarkovAI, and starts a new game (all information 
+	 * set to 0).
+	 * @param smarts - the computer strategy to play against
+	 */
+	public GameHandler(GameStrategy smarts){
+		this.smarts = smarts;
+		statistics = new GameStatistics();
+		metrics = GameMetrics.getGlobal().newRecorder();
 		gamesPlayed = 0;
 		tieGames = 0;
 		playerWins = 0;
 		compWins = 0;
+		outcome = -1;
 	}
 	
 	/**
@@ -39,54 +70,101 @@ public class GameHandler {
 	  * Applies the rules of SPRLK to the hands that the player and the 
 	  * computer chose to determine a winner or tie.
 	  * <p>
-	  * Also inputs player gesture information to the AI through the GameAI's 
-	  * inputGesture method.
+	  * The rules are looked up in the GameRules outcome table, the same table used by
+	  * the bulk resolver, so single rounds and bulk scoring always agree.
+	  * <p>
+	  * Also inputs the round's gestures to the AI through the GameStrategy's 
+	  * inputRound method, and records it in the handler's GameStatistics, which 
+	  * getStats reads directly.
+	  * <p>
+	  * The computer's decision is timed on the rounds that GameMetrics samples, if 
+	  * the handler has metrics. If the handler has a RoundDispatcher, the round's 
+	  * RoundResult is published to it last, and everything else that consumes 
+	  * rounds, such as a MatchLog or a GameMetrics.Recorder, listens there. 
+	  * Without a dispatcher the round is counted in the handler's GameMetrics 
+	  * here, and counted rounds reach the shared metrics on the sampled rounds, or 
+	  * on flushMetrics.
 	  * @param playerGesture - the game gesture chosen by the player through the GUI
       */
 	public void playGame(GameGesture playerGesture){
-		boolean playerWon = false;
-		boolean tie = false;
-		this.playerGesture = playerGesture;
 		//Computer chooses a gesture, based on user's preferences if not first round
-		compGesture = smarts.gestureComp(smarts.playerPref(gamesPlayed));
-		
-		//Tie occurs
-		if (playerGesture == compGesture){
-			tie = true;
+		GameGesture compGesture;
+		if (metrics != null && GameMetrics.isSampled(gamesPlayed)){
+			metrics.flush();
+			compGesture = timedChoice();
 		}
+		else {
+			compGesture = smarts.chooseGesture(gamesPlayed);
+		}
+		byte outcome = recordRound(playerGesture, compGesture);
 		
-		else if (playerGesture == GameGesture.SCISSORS){//Scissors
-			if(compGesture == GameGesture.PAPER || compGesture == GameGesture.LIZARD){
-				playerWon = true;
-			}
-		}
-		else if (playerGesture == GameGesture.PAPER){//Paper
-			if(compGesture == GameGesture.ROCK || compGesture == GameGesture.SPOCK){
-				playerWon = true;
-			}			
-		}
-		else if (playerGesture == GameGesture.ROCK){//Rock
-			if(compGesture == GameGesture.SCISSORS || compGesture == GameGesture.LIZARD){
-				playerWon = true;
-			}			
-		}
-		else if (playerGesture == GameGesture.LIZARD){//Lizard
-			if(compGesture == GameGesture.PAPER || compGesture == GameGesture.SPOCK){
-				playerWon = true;
-			}			
-		}
-		else if (playerGesture == GameGesture.SPOCK){//Spock
-			if(compGesture == GameGesture.SCISSORS || compGesture == GameGesture.ROCK){
-				playerWon = true;
-			}			
+		//Tells the listeners, if there are any, and otherwise counts the round here
+		if (dispatcher != null){
+			dispatcher.publish(new RoundResult(gamesPlayed, playerGesture, compGesture, outcome,
+					tieGames, playerWins, compWins));
+		}
+		else if (metrics != null){
+			metrics.recordRound(compGesture, outcome);
 		}
+	}	
+	
+	/**
+	  * timedChoice
+	  * <p>
+	  * Asks the strategy for the computer's gesture and records how long it took.
+	  * A GameAI is timed step by step, so that the preference lookup and the 
+	  * counter move show up separately.
+	  * @return the gesture that the computer has selected
+	  */
+	private GameGesture timedChoice(){
+		long start = System.nanoTime();
+		if (smarts instanceof GameAI){
+			GameAI ai = (GameAI) smarts;
+			GameGesture preference = ai.playerPref(gamesPlayed);
+			long preferred = System.nanoTime();
+			GameGesture choice = ai.gestureComp(preference);
+			metrics.getMetrics().recordDecision(preferred - start, System.nanoTime() - preferred);
+			return choice;
+		}
+		GameGesture choice = smarts.chooseGesture(gamesPlayed);
+		metrics.getMetrics().recordDecision(System.nanoTime() - start);
+		return choice;
+	}
+	
+	/**
+	  * replayRound
+	  * <p>
+	  * Records a round whose gestures are already known, for example one read back
+	  * from a MatchLog, exactly as if it had just been played. The computer's 
+	  * strategy is told about the round but is not asked to choose a gesture, and 
+	  * the round is neither published nor counted in the metrics.
+	  * @param playerGesture - the game gesture that the player threw
+	  * @param compGesture - the game gesture that the computer threw
+	  */
+	public void replayRound(GameGesture playerGesture, GameGesture compGesture){
+		recordRound(playerGesture, compGesture);
+	}
+	
+	/**
+	  * recordRound
+	  * <p>
+	  * Applies the rules to a round, records the result and informs the AI.
+	  * @return the GameRules outcome code of the round
+	  */
+	private byte recordRound(GameGesture playerGesture, GameGesture compGesture){
+		this.playerGesture = playerGesture;
+		this.compGesture = compGesture;
+		
+		//Applies the rules through the shared outcome table
+		byte outcome = GameRules.outcome(playerGesture, compGesture);
+		this.outcome = outcome;
 		
 		//Records Data
-		if(tie){
+		if(outcome == GameRules.TIE){
 			tieGames++;
 			gameStatus = "Tie Round";
 		}
-		else if(playerWon){
+		else if(outcome == GameRules.PLAYER_WIN){
 			playerWins++;
 			gameStatus = "Player Won";
 		}
@@ -95,10 +173,57 @@ public class GameHandler {
 			gameStatus = "Computer Won";
 		}
 		gamesPlayed++;
+		statistics.record(playerGesture, compGesture, outcome);
 		
 		//Inputs Player info to AI
-		smarts.inputGesture(playerGesture);
-	}	
+		smarts.inputRound(playerGesture, compGesture);
+		return outcome;
+	}
+	
+	/**
+	  * setRoundDispatcher
+	  * <p>
+	  * Starts or stops publishing a RoundResult for every round played through 
+	  * playGame. While a dispatcher is set, playGame does not count rounds in the 
+	  * handler's GameMetrics; add a GameMetrics.Recorder to the dispatcher to count 
+	  * them there. Rounds counted before the dispatcher is set are flushed.
+	  * @param dispatcher - where to publish rounds, or null to stop publishing
+	  */
+	public void setRoundDispatcher(RoundDispatcher dispatcher){
+		if (dispatcher != null){
+			flushMetrics();
+		}
+		this.dispatcher = dispatcher;
+	}
+	
+	/**
+	  * setMetrics
+	  * <p>
+	  * Chooses where rounds played through playGame are counted. Handlers count 
+	  * into GameMetrics.getGlobal() unless told otherwise.
+	  * @param metrics - the metrics to record into, or null to record nothing
+	  */
+	public void setMetrics(GameMetrics metrics){
+		flushMetrics();
+		if (metrics == null){
+			this.metrics = null;
+		}
+		else {
+			this.metrics = metrics.newRecorder();
+		}
+	}
+	
+	/**
+	  * flushMetrics
+	  * <p>
+	  * Adds the rounds not yet counted in the handler's GameMetrics, for example
+	  * when the game ends.
+	  */
+	public void flushMetrics(){
+		if (metrics != null){
+			metrics.flush();
+		}
+	}
 	
 	/**
 	  * getGesture
@@ -125,78 +250,133 @@ public class GameHandler {
 			targetGesture = compGesture;
 		}
 		String playHand = "None";
-		if(targetGesture == GameGesture.SCISSORS){
-			playHand = "Scissors";
-		}
-		else if(targetGesture == GameGesture.PAPER){
-			playHand = "Paper";
-		}
-		else if(targetGesture == GameGesture.ROCK){
-			playHand = "Rock";
-		}
-		else if(targetGesture == GameGesture.LIZARD){
-			playHand = "Lizard";
-		}
-		else if(targetGesture == GameGesture.SPOCK){
-			playHand = "Spock";
+		if (targetGesture != null && targetGesture != GameGesture.NONE){
+			playHand = RuleSet.SPRLK.getGestureName(targetGesture.ordinal());
 		}
 		return playHand;
 	}
 	
 	/**
-	  * getIcon
+	  * getGameStatus
 	  * <p>
-	  * Gives an Icon image representation of either the player or computer's current
-	  * game gesture.
+	  * Gives a string declaration of current status of the game.
+	  * @return gameStatus - a string representation of the current game status
+	  */
+	public String getGameStatus(){
+		return gameStatus;
+	}
+
+	/**
+	  * getPlayerGesture
 	  * <p>
-	  * Modified from originally two separate getPlayerIcon and getCompIcon 
-	  * methods. These methods were combined and reconciled through the 
-	  * wantPlayer boolean because of the repeat code in the two methods for
-	  * selecting an image from the type of current gesture.
+	  * Gives the gesture that the player threw in the last round.
+	  * @return playerGesture - the player's current game gesture
+	  */
+	public GameGesture getPlayerGesture(){
+		return playerGesture;
+	}
+
+	/**
+	  * getCompGesture
 	  * <p>
-	  * Note that the scissor.jpg, paper.jpg, rock.jpg, lizard.jpg, and spock.jpg
-	  * image files are all necessary for this function's purpose.
-	  * @param wantPlayer - whether the icon for the current game gesture of the 
-	  * player or computer is desired
+	  * Gives the gesture that the computer threw in the last round.
+	  * @return compGesture - the computer's current game gesture
+	  */
+	public GameGesture getCompGesture(){
+		return compGesture;
+	}
+
+	/**
+	  * getOutcome
 	  * <p>
-	  * @return targetIcon - an icon image of either the player or computer's current
-	  * game gesture
+	  * Gives the result of the last round.
+	  * @return outcome - the GameRules outcome code of the last round, or -1 if no
+	  * round has been played
 	  */
-	public ImageIcon getIcon(boolean wantPlayer){
-		GameGesture targetGesture = GameGesture.NONE;
-		ImageIcon targetIcon = new ImageIcon();
-		if (wantPlayer){//Desires game throw of player
-			targetGesture = playerGesture;
-		}
-		else {//Desires game throw of computer
-			targetGesture = compGesture;
-		}
-		if(targetGesture == GameGesture.SCISSORS){
-			targetIcon = new ImageIcon("scissor.jpg");
-		}
-		else if(targetGesture == GameGesture.PAPER){
-			targetIcon = new ImageIcon("paper.jpg");
-		}
-		else if(targetGesture == GameGesture.ROCK){
-			targetIcon = new ImageIcon("rock.jpg");
-		}
-		else if(targetGesture == GameGesture.LIZARD){
-			targetIcon = new ImageIcon("lizard.jpg");
-		}
-		else if(targetGesture == GameGesture.SPOCK){
-			targetIcon = new ImageIcon("spock.jpg");
+	public byte getOutcome(){
+		return outcome;
+	}
+
+	/**
+	  * getGamesPlayed
+	  * <p>
+	  * Gives the number of rounds played so far.
+	  * @return gamesPlayed - the number of rounds played
+	  */
+	public int getGamesPlayed(){
+		return gamesPlayed;
+	}
+
+	/**
+	  * getTieGames
+	  * <p>
+	  * Gives the number of rounds that ended in a tie.
+	  * @return tieGames - the number of tied rounds
+	  */
+	public int getTieGames(){
+		return tieGames;
+	}
+
+	/**
+	  * getPlayerWins
+	  * <p>
+	  * Gives the number of rounds that the player won.
+	  * @return playerWins - the number of rounds won by the player
+	  */
+	public int getPlayerWins(){
+		return playerWins;
+	}
+
+	/**
+	  * getCompWins
+	  * <p>
+	  * Gives the number of rounds that the computer won.
+	  * @return compWins - the number of rounds won by the computer
+	  */
+	public int getCompWins(){
+		return compWins;
+	}
+
+	/**
+	  * restoreTotals
+	  * <p>
+	  * Carries over the game counters of earlier sessions, for example from a saved
+	  * player profile, as if those rounds had been played in this game.
+	  * @param gamesPlayed - the number of rounds played before
+	  * @param tieGames - the number of those rounds that were tied
+	  * @param playerWins - the number of those rounds that the player won
+	  * @param compWins - the number of those rounds that the computer won
+	  */
+	public void restoreTotals(int gamesPlayed, int tieGames, int playerWins, int compWins){
+		if (tieGames + playerWins + compWins != gamesPlayed || tieGames < 0 || playerWins < 0 || compWins < 0){
+			throw new IllegalArgumentException("Game counters do not add up");
 		}
-		return targetIcon;		
+		this.gamesPlayed = gamesPlayed;
+		this.tieGames = tieGames;
+		this.playerWins = playerWins;
+		this.compWins = compWins;
+		statistics.restoreTotals(gamesPlayed, tieGames, playerWins, compWins);
 	}
-	
+
 	/**
-	  * getGameStatus
+	  * getStrategy
 	  * <p>
-	  * Gives a string declaration of current status of the game.
-	  * @return gameStatus - a string representation of the current game status
+	  * Gives the computer strategy that this handler plays with.
+	  * @return smarts - the computer strategy
 	  */
-	public String getGameStatus(){
-		return gameStatus;
+	public GameStrategy getStrategy(){
+		return smarts;
+	}
+
+	/**
+	  * getStatistics
+	  * <p>
+	  * Gives the incrementally updated statistics of this game. Snapshots of them 
+	  * may be taken from any thread.
+	  * @return statistics - the game statistics
+	  */
+	public GameStatistics getStatistics(){
+		return statistics;
 	}
 
 	/**
@@ -204,20 +384,21 @@ public class GameHandler {
 	  * <p>
 	  * Presents and formats all the relevant game statistics.
 	  * <p>
-	  * Percentage of wins and ties are formatted to 2 decimal places.
+	  * Percentage of wins and ties are formatted to 2 decimal places, and are 0%
+	  * rather than undefined before any game was won or played. The numbers come 
+	  * from the incrementally updated GameStatistics; only the formatting happens
+	  * here.
 	  * @return a String presentation of all the game statistics
 	  */
 	public String getStats(){
-		double percentPlayerWins = (double) 100 * playerWins / (playerWins + compWins);
-		double percentTies = (double) 100 * tieGames / gamesPlayed;
-        DecimalFormat df = new DecimalFormat("#.##");
-        df.format(percentTies);
-		return ("Game Statistics:\n\n" + "Games Played: " + gamesPlayed + "\n" + 
-				"Games Computer Won: " + compWins + "\n" + "Games Player Won: " + 
-				playerWins + "\n" + "Games Tied: " + tieGames + "\n" + 
-				"Percentage of Player Wins: " + "(Out of Total Wins): " + 
-				df.format(percentPlayerWins) +"%" + "\n" + "Percentage of Ties: " + 
-				df.format(percentTies) +"%");
+		if (statsFormatter == null){//Created on first use, most handlers never need one
+			statsFormatter = new StatsFormatter();
+			statsSnapshot = new GameStatistics.Snapshot();
+			statsText = new StringBuilder();
+		}
+		statistics.snapshot(statsSnapshot);
+		statsText.setLength(0);
+		return statsFormatter.formatSummary(statsSnapshot, statsText).toString();
 	}
 	
-}//End of GameHandler class
\ No newline at end of file
+}//End of GameHandler class
\ No newline at end of file
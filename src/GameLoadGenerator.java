@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * <b>GameLoadGenerator class</b>
+ * <p>
+ * Measures how many rounds a GameServer plays per second and how long clients wait
+ * for their answers. It opens many connections, and each keeps a batch of throws in
+ * flight: it sends the batch in one write, waits for every answer frame, records the
+ * time the batch took in a LatencyHistogram, and sends the next one. All
+ * connections are driven by one thread with a NIO selector.
+ * <p>
+ * With no host given it starts a GameServer of its own on a free loopback port, so
+ * a single command measures the server on this machine. A machine has fewer than
+ * 30,000 ephemeral ports per address pair, so against a loopback server the
+ * connections are spread over the source addresses 127.0.0.2 and up, 20,000 each;
+ * that is how 50,000 or more connections fit. Both the server and the generator
+ * need a file descriptor limit above the number of connections (ulimit -n).
+ * <p>
+ * Usage: java GameLoadGenerator [connections] [batch] [seconds] [host] [port]
+ */
+public class GameLoadGenerator {
+	private static final int CONNECTIONS_PER_ADDRESS = 20000;
+	private static final int OPTIONS = 5;//number of possible gestures that one can throw
+	private static final double WARM_UP = 0.2;//share of the run not measured
+
+	private final InetSocketAddress target;
+	private final int connectionTotal;
+	private final int batch;
+	private final ByteBuffer sendBuffer;//one batch of throws, shared by every connection
+	private final ByteBuffer readBuffer;
+	private final LatencyHistogram latencies;
+	private long frames;//answer frames received while measuring
+	private double measured;//seconds measured by the last run
+
+	/**
+	 * <b>Client class</b>
+	 * <p>
+	 * The state of one connection.
+	 */
+	private static class Client {
+		final SocketChannel channel;
+		long sentAt;//when the batch in flight was sent
+		int unsent;//bytes of the batch not yet written
+		int awaited;//bytes of answer frames not yet read
+
+		Client(SocketChannel channel){
+			this.channel = channel;
+		}
+	}
+
+	/**
+	 * Constructs a load generator.
+	 * @param target - the server's address
+	 * @param connections - the number of connections to open
+	 * @param batch - the number of throws each connection keeps in flight
+	 */
+	public GameLoadGenerator(InetSocketAddress target, int connections, int batch){
+		if (connections < 1 || batch < 1){
+			throw new IllegalArgumentException("Need at least one connection and one throw in flight");
+		}
+		this.target = target;
+		this.connectionTotal = connections;
+		this.batch = batch;
+		sendBuffer = ByteBuffer.allocateDirect(batch);
+		for (int i = 0; i < batch; i++){
+			sendBuffer.put((byte) (i * 3 % OPTIONS));
+		}
+		readBuffer = ByteBuffer.allocateDirect(Math.max(1 << 14, batch * GameServer.FRAME_SIZE));
+		latencies = new LatencyHistogram();
+	}
+
+	/**
+	 * run
+	 * <p>
+	 * Connects, plays for the given time and disconnects. The first fifth of the
+	 * time warms up the server and is not measured.
+	 * @param seconds - how long to play
+	 */
+	public void run(double seconds) throws IOException {
+		Selector selector = Selector.open();
+		try {
+			connect(selector);
+			long start = System.nanoTime();
+			long measureFrom = start + (long) (seconds * WARM_UP * 1e9);
+			long end = start + (long) (seconds * 1e9);
+			for (SelectionKey key : selector.keys()){
+				send(key, (Client) key.attachment());
+			}
+			boolean measuring = false;
+			long now = start;
+			while (now < end){
+				selector.select(100);
+				now = System.nanoTime();
+				if (!measuring && now >= measureFrom){
+					latencies.reset();
+					frames = 0;
+					measuring = true;
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()){
+					SelectionKey key = keys.next();
+					keys.remove();
+					Client client = (Client) key.attachment();
+					if (key.isWritable()){
+						send(key, client);
+					}
+					if (key.isReadable()){
+						receive(key, client, now);
+					}
+				}
+			}
+			measured = (now - measureFrom) / 1e9;
+		}
+		finally {
+			for (SelectionKey key : selector.keys()){
+				((Client) key.attachment()).channel.close();
+			}
+			selector.close();
+		}
+	}
+
+	private void connect(Selector selector) throws IOException {
+		boolean loopback = target.getAddress().isLoopbackAddress() && connectionTotal > CONNECTIONS_PER_ADDRESS;
+		for (int i = 0; i < connectionTotal; i++){
+			SocketChannel channel = SocketChannel.open();
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			if (loopback){
+				int address = 2 + i / CONNECTIONS_PER_ADDRESS;
+				channel.bind(new InetSocketAddress(InetAddress.getByAddress(
+						new byte[] {127, 0, (byte) (address >> 8), (byte) address}), 0));
+			}
+			channel.connect(target);
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ, new Client(channel));
+		}
+	}
+
+	/**
+	 * send
+	 * <p>
+	 * Writes a connection's batch, or whatever the socket would not take before.
+	 */
+	private void send(SelectionKey key, Client client) throws IOException {
+		if (client.unsent == 0){
+			client.unsent = batch;
+			client.awaited = batch * GameServer.FRAME_SIZE;
+			client.sentAt = System.nanoTime();
+		}
+		ByteBuffer view = sendBuffer.duplicate();
+		view.limit(batch);
+		view.position(batch - client.unsent);
+		client.unsent -= client.channel.write(view);
+		//Keeps reading answers while the rest waits, or a server blocked on a full send buffer never drains ours
+		key.interestOps(client.unsent > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+	}
+
+	/**
+	 * receive
+	 * <p>
+	 * Reads a connection's answer frames, and sends the next batch once the whole
+	 * batch has been answered.
+	 */
+	private void receive(SelectionKey key, Client client, long now) throws IOException {
+		readBuffer.clear();
+		readBuffer.limit(client.awaited);
+		int read = client.channel.read(readBuffer);
+		if (read < 0){
+			throw new IOException("Server closed a connection");
+		}
+		client.awaited -= read;
+		if (client.awaited == 0){
+			frames += batch;
+			latencies.record(now - client.sentAt);
+			send(key, client);
+		}
+	}
+
+	/**
+	 * report
+	 * <p>
+	 * Describes the throughput and latencies of the last run.
+	 */
+	public String report(){
+		return String.format("Connections: %d, throws in flight each: %d%n"
+				+ "Rounds/sec: %.0f%n"
+				+ "Batch latency (upper bounds): p50 %d us, p99 %d us, p99.9 %d us, mean %.0f us",
+				connectionTotal, batch, frames / measured,
+				latencies.getPercentile(50) / 1000, latencies.getPercentile(99) / 1000,
+				latencies.getPercentile(99.9) / 1000, latencies.getMean() / 1000);
+	}
+
+	/**
+	 * main
+	 * <p>
+	 * Runs a load test and prints the results.
+	 */
+	public static void main(String[] args) throws Exception {
+		int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int batch = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+		GameServer server = null;
+		InetSocketAddress target;
+		if (args.length > 3){
+			target = new InetSocketAddress(args[3], args.length > 4 ? Integer.parseInt(args[4]) : 5050);
+		}
+		else {
+			server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+					GameSimulator.parseStrategy("frequency"), 0);
+			target = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+			Thread serving = new Thread(server, "GameServer");
+			serving.setDaemon(true);
+			serving.start();
+		}
+		GameLoadGenerator generator = new GameLoadGenerator(target, connections, batch);
+		try {
+			generator.run(seconds);
+		}
+		finally {
+			if (server != null){
+				server.close();
+			}
+		}
+		System.out.println(generator.report());
+	}
+
+}//End of GameLoadGenerator class
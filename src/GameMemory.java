@@ -0,0 +1,124 @@
+/**
+ * <b>GameMemory class</b>
+ * <p>
+ * How much of the player's history a GameAI goes by when it looks for the player's
+ * preferred gesture.
+ * <p>
+ * UNLIMITED counts every gesture ever thrown, the original behaviour: the longer a
+ * session runs, the more slowly the AI notices a player who changes style. A window
+ * only counts the most recent throws, so an old habit is forgotten entirely once it
+ * has been out of the window. Decay weighs every throw by a factor per round since
+ * it was thrown, so old throws fade out gradually instead. Both take constant time
+ * per throw and constant memory however long the session lasts.
+ */
+public final class GameMemory {
+
+	/**
+	 * <b>Kind enum</b>
+	 * <p>
+	 * The ways that GameAI can remember the player's gestures.
+	 */
+	public enum Kind {
+
+		/**
+		 * Every gesture ever thrown counts the same
+		 */
+		UNLIMITED,
+
+		/**
+		 * Only a fixed number of the most recent gestures count
+		 */
+		WINDOW,
+
+		/**
+		 * Each gesture counts for less the longer ago it was thrown
+		 */
+		DECAY
+	}//End of Kind enum
+
+	/**
+	 * Counts every gesture ever thrown
+	 */
+	public static final GameMemory UNLIMITED = new GameMemory(Kind.UNLIMITED, 0, 1);
+	/**
+	 * Largest decay factor, whose per-round growth GameAI can still count precisely
+	 */
+	public static final double MAX_DECAY = 0.999999;
+
+	private final Kind kind;
+	private final int window;
+	private final double decay;
+
+	private GameMemory(Kind kind, int window, double decay){
+		this.kind = kind;
+		this.window = window;
+		this.decay = decay;
+	}
+
+	/**
+	 * window
+	 * <p>
+	 * Makes a memory of the player's most recent gestures.
+	 * @param rounds - the number of gestures remembered, at least 1
+	 * <p>
+	 * @return the memory
+	 */
+	public static GameMemory window(int rounds){
+		if (rounds < 1){
+			throw new IllegalArgumentException("A window must hold at least one round: " + rounds);
+		}
+		return new GameMemory(Kind.WINDOW, rounds, 1);
+	}
+
+	/**
+	 * decay
+	 * <p>
+	 * Makes a memory in which every gesture's weight is multiplied by the given
+	 * factor each round. A factor of 0.99 halves a gesture's weight in about 69
+	 * rounds.
+	 * @param factor - the weight kept per round, from 0.5 to MAX_DECAY
+	 * <p>
+	 * @return the memory
+	 */
+	public static GameMemory decay(double factor){
+		if (!(factor >= 0.5 && factor <= MAX_DECAY)){
+			throw new IllegalArgumentException("Decay factor must be from 0.5 to " + MAX_DECAY + ": " + factor);
+		}
+		return new GameMemory(Kind.DECAY, 0, factor);
+	}
+
+	public Kind getKind(){
+		return kind;
+	}
+
+	/**
+	 * getWindow
+	 * <p>
+	 * Gives the number of gestures a WINDOW memory holds.
+	 * @return window - the window size, or 0 for other kinds
+	 */
+	public int getWindow(){
+		return window;
+	}
+
+	/**
+	 * getDecay
+	 * <p>
+	 * Gives the weight a DECAY memory keeps per round.
+	 * @return decay - the decay factor, or 1 for other kinds
+	 */
+	public double getDecay(){
+		return decay;
+	}
+
+	public String toString(){
+		if (kind == Kind.WINDOW){
+			return "window" + window;
+		}
+		if (kind == Kind.DECAY){
+			return "decay" + decay;
+		}
+		return "unlimited";
+	}
+
+}//End of GameMemory class
@@ -0,0 +1,397 @@
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * <b>GameMetrics class</b>
+ * <p>
+ * Counts what every GameHandler in the JVM is doing: rounds played, their outcomes,
+ * the gestures the computer threw and how long the computer takes to decide. The
+ * numbers can be pulled directly through the getters or the text report, or
+ * published over JMX with registerMBean.
+ * <p>
+ * Recording is cheap enough to leave on. Each GameHandler counts its rounds in a
+ * Recorder of plain ints and adds them to the shared StripedCounters once every
+ * DECISION_SAMPLE_RATE rounds, so most rounds do no atomic operation at all, games
+ * on different threads never contend, and nothing is allocated per round. Decision
+ * latency is timed on the same one round in every DECISION_SAMPLE_RATE, which keeps
+ * the cost of reading the clock off most rounds while still filling the histograms
+ * quickly. The counters may therefore trail each live game by a few rounds.
+ * For a GameAI the preference lookup (playerPref) and the counter move
+ * (gestureComp) are timed separately; other strategies are timed as a whole.
+ * <p>
+ * The JMX classes are only loaded when registerMBean is called, so code that never
+ * publishes the metrics does not pay for them.
+ */
+public class GameMetrics implements GameMetricsMBean {
+	/**
+	 * Rounds per decision latency sample, a power of two
+	 */
+	public static final int DECISION_SAMPLE_RATE = 16;
+	/**
+	 * Name under which registerMBean publishes the global metrics
+	 */
+	public static final String OBJECT_NAME = "SPRLK:type=GameMetrics";
+	/**
+	 * Shortest interval over which getRoundsPerSecond measures the rate, in nanoseconds
+	 */
+	public static final long RATE_INTERVAL = 1000000000L;
+
+	private static final int OPTIONS = 5;//number of possible gestures that one can throw
+	private static final GameGesture[] GESTURES = {GameGesture.SCISSORS, GameGesture.PAPER,
+		GameGesture.ROCK, GameGesture.LIZARD, GameGesture.SPOCK};
+	private static final GameMetrics GLOBAL = new GameMetrics();
+
+	private final StripedCounter[] outcomes;//by GameRules outcome code
+	private final StripedCounter[] compGestures;//by gesture ordinal
+	private final LatencyHistogram decisionLatency;
+	private final LatencyHistogram preferenceLatency;
+	private final LatencyHistogram counterLatency;
+	private long rateRounds;//rounds at the start of the current sampling interval
+	private long rateTime;//nanoTime at the start of the current sampling interval
+	private double rate;//rounds per second over the last complete interval, or -1
+
+	/**
+	 * Constructs an empty set of metrics.
+	 */
+	public GameMetrics(){
+		outcomes = new StripedCounter[3];
+		for (int i = 0; i < outcomes.length; i++){
+			outcomes[i] = new StripedCounter();
+		}
+		compGestures = new StripedCounter[OPTIONS];
+		for (int i = 0; i < OPTIONS; i++){
+			compGestures[i] = new StripedCounter();
+		}
+		decisionLatency = new LatencyHistogram();
+		preferenceLatency = new LatencyHistogram();
+		counterLatency = new LatencyHistogram();
+		rateTime = System.nanoTime();
+		rate = -1;
+	}
+
+	/**
+	 * getGlobal
+	 * <p>
+	 * Gives the metrics that every GameHandler records into by default.
+	 * @return the JVM wide metrics
+	 */
+	public static GameMetrics getGlobal(){
+		return GLOBAL;
+	}
+
+	/**
+	 * registerMBean
+	 * <p>
+	 * Publishes the global metrics on the platform MBean server under OBJECT_NAME.
+	 * Does nothing if they are already published.
+	 */
+	public static void registerMBean(){
+		Registration.register(GLOBAL);
+	}
+
+	/**
+	 * <b>Registration class</b>
+	 * <p>
+	 * Keeps every reference to the JMX classes out of GameMetrics itself, so they are
+	 * only loaded when the metrics are actually published.
+	 */
+	private static class Registration {
+		static void register(GameMetrics metrics){
+			try {
+				ObjectName name = new ObjectName(OBJECT_NAME);
+				if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)){
+					ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+				}
+			}
+			catch (JMException e){
+				throw new IllegalStateException("Game metrics could not be registered", e);
+			}
+		}
+	}
+
+	/**
+	 * newRecorder
+	 * <p>
+	 * Creates a recorder through which one game counts its rounds into these
+	 * metrics.
+	 * @return a recorder for a single thread's use
+	 */
+	public Recorder newRecorder(){
+		return new Recorder(this);
+	}
+
+	/**
+	 * isSampled
+	 * <p>
+	 * Tells whether the decision of a round should be timed.
+	 * @param gamesPlayed - the number of games the handler had played before the round
+	 * <p>
+	 * @return true on one round in every DECISION_SAMPLE_RATE
+	 */
+	public static boolean isSampled(int gamesPlayed){
+		return (gamesPlayed & (DECISION_SAMPLE_RATE - 1)) == 0;
+	}
+
+	/**
+	 * recordDecision
+	 * <p>
+	 * Counts the time a strategy took to choose a gesture.
+	 * @param nanos - the time taken by chooseGesture
+	 */
+	public void recordDecision(long nanos){
+		decisionLatency.record(nanos);
+	}
+
+	/**
+	 * recordDecision
+	 * <p>
+	 * Counts the time a GameAI took to choose a gesture, split into its two steps.
+	 * @param preferenceNanos - the time taken by playerPref
+	 * @param counterNanos - the time taken by gestureComp
+	 */
+	public void recordDecision(long preferenceNanos, long counterNanos){
+		preferenceLatency.record(preferenceNanos);
+		counterLatency.record(counterNanos);
+		decisionLatency.record(preferenceNanos + counterNanos);
+	}
+
+	public long getRounds(){
+		return outcomes[GameRules.TIE].sum() + outcomes[GameRules.PLAYER_WIN].sum()
+				+ outcomes[GameRules.COMP_WIN].sum();
+	}
+
+	public long getPlayerWins(){
+		return outcomes[GameRules.PLAYER_WIN].sum();
+	}
+
+	public long getCompWins(){
+		return outcomes[GameRules.COMP_WIN].sum();
+	}
+
+	public long getTieGames(){
+		return outcomes[GameRules.TIE].sum();
+	}
+
+	/**
+	 * getRoundsPerSecond
+	 * <p>
+	 * Gives the rate of the last complete sampling interval. A reading only starts a
+	 * new interval once RATE_INTERVAL has passed, so several readers, such as a JMX
+	 * console and report, do not cut each other's intervals short.
+	 */
+	public synchronized double getRoundsPerSecond(){
+		long now = System.nanoTime();
+		long rounds = getRounds();
+		if (now - rateTime >= RATE_INTERVAL){
+			rate = (rounds - rateRounds) * 1e9 / (now - rateTime);
+			rateRounds = rounds;
+			rateTime = now;
+		}
+		if (rate < 0){//No complete interval yet
+			return now > rateTime ? (rounds - rateRounds) * 1e9 / (now - rateTime) : 0;
+		}
+		return rate;
+	}
+
+	public long[] getCompGestureCounts(){
+		long[] counts = new long[OPTIONS];
+		for (int i = 0; i < OPTIONS; i++){
+			counts[i] = compGestures[i].sum();
+		}
+		return counts;
+	}
+
+	/**
+	 * getCompGestureCount
+	 * <p>
+	 * Gives how often the computer threw a gesture.
+	 * @param gesture - a real gesture
+	 */
+	public long getCompGestureCount(GameGesture gesture){
+		return compGestures[gesture.ordinal()].sum();
+	}
+
+	public long getDecisionSamples(){
+		return decisionLatency.getCount();
+	}
+
+	public double getDecisionLatencyMean(){
+		return decisionLatency.getMean();
+	}
+
+	public long getDecisionLatencyP50(){
+		return decisionLatency.getPercentile(50);
+	}
+
+	public long getDecisionLatencyP99(){
+		return decisionLatency.getPercentile(99);
+	}
+
+	public double getPreferenceLatencyMean(){
+		return preferenceLatency.getMean();
+	}
+
+	public long getPreferenceLatencyP99(){
+		return preferenceLatency.getPercentile(99);
+	}
+
+	public double getCounterLatencyMean(){
+		return counterLatency.getMean();
+	}
+
+	public long getCounterLatencyP99(){
+		return counterLatency.getPercentile(99);
+	}
+
+	/**
+	 * getDecisionLatency
+	 * <p>
+	 * Gives the histogram of whole decision times, for finer reading than the
+	 * getters offer.
+	 */
+	public LatencyHistogram getDecisionLatency(){
+		return decisionLatency;
+	}
+
+	public LatencyHistogram getPreferenceLatency(){
+		return preferenceLatency;
+	}
+
+	public LatencyHistogram getCounterLatency(){
+		return counterLatency;
+	}
+
+	public synchronized void reset(){
+		for (StripedCounter counter : outcomes){
+			counter.reset();
+		}
+		for (StripedCounter counter : compGestures){
+			counter.reset();
+		}
+		decisionLatency.reset();
+		preferenceLatency.reset();
+		counterLatency.reset();
+		rateRounds = 0;
+		rateTime = System.nanoTime();
+		rate = -1;
+	}
+
+	/**
+	 * report
+	 * <p>
+	 * Appends a plain text report of the metrics, for logging without JMX.
+	 * @param out - where the report is appended
+	 * <p>
+	 * @return out, for chaining
+	 */
+	public StringBuilder report(StringBuilder out){
+		out.append("Rounds: ").append(getRounds());
+		out.append(" (Player ").append(getPlayerWins());
+		out.append(", Computer ").append(getCompWins());
+		out.append(", Ties ").append(getTieGames()).append(")\n");
+		out.append("Rounds/sec: ").append(Math.round(getRoundsPerSecond())).append('\n');
+		out.append("Computer Gestures:");
+		for (int i = 0; i < OPTIONS; i++){
+			out.append(' ').append(GESTURES[i]).append('=').append(compGestures[i].sum());
+		}
+		out.append('\n');
+		appendLatency("Decision", decisionLatency, out);
+		appendLatency("Preference", preferenceLatency, out);
+		return appendLatency("Counter", counterLatency, out);
+	}
+
+	/**
+	 * <b>Recorder class</b>
+	 * <p>
+	 * Counts the rounds of one game locally until they are flushed into the shared
+	 * metrics. Not thread-safe; it belongs to the thread that plays the game, or,
+	 * when it is added to a RoundDispatcher as a listener, to the dispatcher's
+	 * thread, which counts and flushes each batch of rounds off the round path.
+	 */
+	public static class Recorder implements RoundListener {
+		private final GameMetrics metrics;
+		private final int[] outcomes;//pending rounds by GameRules outcome code
+		private final int[] compGestures;//pending rounds by gesture ordinal
+		private boolean pending;
+
+		private Recorder(GameMetrics metrics){
+			this.metrics = metrics;
+			outcomes = new int[3];
+			compGestures = new int[OPTIONS];
+		}
+
+		/**
+		 * recordRound
+		 * <p>
+		 * Counts a finished round.
+		 * @param compGesture - the gesture that the computer threw
+		 * @param outcome - the GameRules outcome code of the round
+		 */
+		public void recordRound(GameGesture compGesture, byte outcome){
+			outcomes[outcome]++;
+			int comp = compGesture.ordinal();
+			if (comp < OPTIONS){
+				compGestures[comp]++;
+			}
+			pending = true;
+		}
+
+		/**
+		 * roundsPlayed
+		 * <p>
+		 * Counts a batch of rounds delivered by a RoundDispatcher and flushes them.
+		 */
+		public void roundsPlayed(List<RoundResult> results){
+			for (int i = 0; i < results.size(); i++){
+				RoundResult result = results.get(i);
+				recordRound(result.getCompGesture(), result.getOutcome());
+			}
+			flush();
+		}
+
+		/**
+		 * flush
+		 * <p>
+		 * Adds the rounds counted since the last flush to the shared metrics.
+		 */
+		public void flush(){
+			if (!pending){
+				return;
+			}
+			for (int i = 0; i < outcomes.length; i++){
+				if (outcomes[i] != 0){
+					metrics.outcomes[i].add(outcomes[i]);
+					outcomes[i] = 0;
+				}
+			}
+			for (int i = 0; i < OPTIONS; i++){
+				if (compGestures[i] != 0){
+					metrics.compGestures[i].add(compGestures[i]);
+					compGestures[i] = 0;
+				}
+			}
+			pending = false;
+		}
+
+		/**
+		 * getMetrics
+		 * <p>
+		 * Gives the metrics that this recorder flushes into.
+		 */
+		public GameMetrics getMetrics(){
+			return metrics;
+		}
+	}
+
+	private static StringBuilder appendLatency(String label, LatencyHistogram histogram, StringBuilder out){
+		out.append(label).append(" ns: samples ").append(histogram.getCount());
+		out.append(", mean ").append(Math.round(histogram.getMean()));
+		out.append(", p50 <=").append(histogram.getPercentile(50));
+		out.append(", p99 <=").append(histogram.getPercentile(99));
+		return out.append('\n');
+	}
+
+}//End of GameMetrics class
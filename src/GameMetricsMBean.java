@@ -0,0 +1,56 @@
+/**
+ * <b>GameMetricsMBean interface</b>
+ * <p>
+ * The management interface through which GameMetrics is published over JMX, for
+ * example to jconsole or VisualVM. Latencies are in nanoseconds.
+ */
+public interface GameMetricsMBean {
+
+	long getRounds();
+
+	long getPlayerWins();
+
+	long getCompWins();
+
+	long getTieGames();
+
+	/**
+	 * getRoundsPerSecond
+	 * <p>
+	 * Gives the rate at which rounds were played over the last sampling interval of
+	 * at least a second, or since the metrics were created or reset if no interval
+	 * has passed yet. Every reader sees the same samples.
+	 */
+	double getRoundsPerSecond();
+
+	/**
+	 * getCompGestureCounts
+	 * <p>
+	 * Gives how often the computer threw each gesture, in the order Scissors, Paper,
+	 * Rock, Lizard, Spock.
+	 */
+	long[] getCompGestureCounts();
+
+	long getDecisionSamples();
+
+	double getDecisionLatencyMean();
+
+	long getDecisionLatencyP50();
+
+	long getDecisionLatencyP99();
+
+	double getPreferenceLatencyMean();
+
+	long getPreferenceLatencyP99();
+
+	double getCounterLatencyMean();
+
+	long getCounterLatencyP99();
+
+	/**
+	 * reset
+	 * <p>
+	 * Sets every counter and histogram back to 0.
+	 */
+	void reset();
+}
@@ -1,12 +1,31 @@
 import java.awt.*;
 import javax.swing.*;
 import java.awt.event.*;
+import java.util.concurrent.*;
 
 /**
  * <b>GamePanel Class</b>
  * <p>
  * Creates and maintains a visual GUI for the Scissors, Paper, Rock, Lizard,
  * Spock game.
+ * <p>
+ * Rounds are played on a separate game thread, never on the Swing event thread. 
+ * The GameHandler publishes an immutable RoundResult for every round through a 
+ * RoundDispatcher; the panel listens for them and keeps the newest, and a Swing 
+ * timer shows it at most once per frame, so the GUI stays responsive however fast
+ * rounds are played. This also allows an auto-play mode that plays thousands of 
+ * rounds per second against a scripted player. Other consumers of the rounds can
+ * subscribe to the same dispatcher.
+ * <p>
+ * A StatsChartPanel below the gestures charts the rolling win, tie and loss rates
+ * and each side's gesture shares, sampled by the same timer.
+ * <p>
+ * If the sprlk.player system property names the player, the game starts from that
+ * player's saved profile (kept in the file named by sprlk.profiles, 
+ * sprlk-profiles.dat by default) and saves it again when the game ends.
+ * <p>
+ * If the sprlk.matchlog system property names a file, every round is also 
+ * recorded to that file through a MatchLog listening to the round dispatcher.
  * @author James Wen - jrw2175
  */
 public class GamePanel extends JPanel
@@ -14,6 +33,7 @@ public class GamePanel extends JPanel
 	private JButton playSPRLK;
 	private JButton rulesGuide;
 	private JButton endGame;
+	private JToggleButton autoPlay;
 	
 	private JLabel playerGesture;
 	private JLabel compGesture;
@@ -22,13 +42,22 @@ public class GamePanel extends JPanel
 	private JLabel compLabel;
 
 	private ButtonGroup playerOptions;
-	private JCheckBox scissors;
-	private JCheckBox paper;
-	private JCheckBox rock;
-	private JCheckBox lizard;
-	private JCheckBox spock;
+	private JCheckBox[] gestureBoxes;//one per gesture, indexed by GameGesture ordinal
 	
 	private GameHandler gameOperator;
+	private MatchLog matchLog;
+	private ProfileStore profiles;
+	private String playerName;//whose profile is loaded and saved, or null
+	private ScheduledExecutorService gameThread;//the only thread that touches gameOperator
+	private ScheduledFuture<?> autoPlayTask;
+	private RoundDispatcher rounds;//publishes every round played by gameOperator
+	private volatile RoundResult latestRound;//newest round delivered by the dispatcher
+	private RoundResult shownRound;//round currently on screen, only used on the EDT
+	private StatsChartPanel statsChart;//rolling rates and gesture shares, only used on the EDT
+	
+	private static final int FRAME_MILLIS = 16;//refresh period of about 60 frames/sec
+	private static final int AUTO_PLAY_RATE = 5000;//auto-play rounds per second
+	private static final int AUTO_PLAY_TICK_MILLIS = 10;//auto-play batch period
 	
 	/**
 	 * Constructs a SPRLK visual GUI panel through a variety of frames, layouts 
@@ -51,20 +80,64 @@ public class GamePanel extends JPanel
 	public GamePanel(){
 		
 		gameOperator = new GameHandler();
+		GestureIcons.preload();//Decodes the gesture images before the first round
+		playerName = System.getProperty("sprlk.player");
+		if (playerName != null){//Picks up where this player's last game left off
+			String profileFile = System.getProperty("sprlk.profiles", "sprlk-profiles.dat");
+			try {
+				profiles = new ProfileStore(new java.io.File(profileFile));
+				profiles.load(playerName, gameOperator);
+			}
+			catch (java.io.IOException e){
+				System.err.println("Could not load the profile of " + playerName + ": " + e);
+				gameOperator = new GameHandler();//Starts afresh rather than half restored
+				if (profiles != null){//Never saves the fresh game over the stored profile
+					try {
+						profiles.close();
+					}
+					catch (java.io.IOException closing){
+						//Nothing was written to it
+					}
+					profiles = null;
+				}
+			}
+		}
+		String logFile = System.getProperty("sprlk.matchlog");
+		if (logFile != null){
+			try {
+				matchLog = new MatchLog(new java.io.File(logFile));
+			}
+			catch (java.io.IOException e){
+				System.err.println("Could not open match log " + logFile + ": " + e);
+			}
+		}
+		rounds = new RoundDispatcher();
+		rounds.addListener(new RoundListener(){
+			public void roundsPlayed(java.util.List<RoundResult> results){
+				latestRound = results.get(results.size() - 1);
+			}
+		});
+		rounds.addListener(GameMetrics.getGlobal().newRecorder());
+		if (matchLog != null){
+			rounds.addListener(matchLog);
+		}
+		gameOperator.setRoundDispatcher(rounds);
+		gameThread = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			public Thread newThread(Runnable task){
+				Thread thread = new Thread(task, "SPRLK game");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
 		setLayout (new BorderLayout());
 		
-		//Creates all the required checkboxes and configures the button group
-		scissors = new JCheckBox ("Scissors");
-		paper = new JCheckBox ("Paper");		
-		rock = new JCheckBox ("Rock");
-		lizard = new JCheckBox ("Lizard");
-		spock = new JCheckBox ("Spock");
+		//Creates all the required checkboxes, named by the rules, and configures the button group
 		playerOptions = new ButtonGroup();
-		playerOptions.add(scissors);
-		playerOptions.add(paper);
-		playerOptions.add(rock);
-		playerOptions.add(lizard);
-		playerOptions.add(spock);
+		gestureBoxes = new JCheckBox[RuleSet.SPRLK.getSize()];
+		for (int i = 0; i < gestureBoxes.length; i++){
+			gestureBoxes[i] = new JCheckBox (RuleSet.SPRLK.getGestureName(i));
+			playerOptions.add(gestureBoxes[i]);
+		}
 		
 		//Creates and configures all the required buttons
 		playSPRLK = new JButton ("Play SPRLK");
@@ -73,6 +146,8 @@ public class GamePanel extends JPanel
 		rulesGuide.addActionListener(new NewRulesListener());
 		endGame = new JButton ("End Game");
 		endGame.addActionListener(new EndGameListener());
+		autoPlay = new JToggleButton ("Auto Play");
+		autoPlay.addActionListener(new AutoPlayListener());
 		
 		//Creates and configures all the required labels
 		playerGesture = new JLabel ("Player gestures: None");
@@ -91,6 +166,8 @@ public class GamePanel extends JPanel
 		JPanel gestureOptions = new JPanel();
 		JPanel gesturePadding = new JPanel();
 		JPanel versusGraphics = new JPanel(new GridLayout(0,2));
+		JPanel bottomSec = new JPanel(new BorderLayout());
+		statsChart = new StatsChartPanel(gameOperator.getStatistics());
 
 		//Sets the layouts of the panels
 		topBar.setLayout (new BoxLayout (topBar, BoxLayout.X_AXIS));
@@ -126,11 +203,9 @@ public class GamePanel extends JPanel
 		versusGraphics.add(compLabel);
 		
 		//Creates the Player Options Area
-		gestureOptions.add(scissors);
-		gestureOptions.add(paper);
-		gestureOptions.add(rock);
-		gestureOptions.add(lizard);
-		gestureOptions.add(spock);
+		for (JCheckBox box : gestureBoxes){
+			gestureOptions.add(box);
+		}
 		gesturePadding.add((Box.createRigidArea(new Dimension(10,5))));
 		gesturePanel.add(gesturePadding);
 		gesturePanel.add(gestureOptions);
@@ -139,6 +214,7 @@ public class GamePanel extends JPanel
 		//Creates the Bottom Bar Area
 		bottomBar.add(endGame);
 		bottomBar.add(Box.createHorizontalGlue());
+		bottomBar.add(autoPlay);
 		bottomBar.add(playSPRLK);		
 
 		//Sets the Area background colors
@@ -147,11 +223,9 @@ public class GamePanel extends JPanel
 		
 		//Sets the Area backgrounds
 		topBar.setBackground(darkerBlue);
-		scissors.setBackground(cuBlue);
-		paper.setBackground(cuBlue);
-		rock.setBackground(cuBlue);
-		lizard.setBackground(cuBlue);
-		spock.setBackground(cuBlue);
+		for (JCheckBox box : gestureBoxes){
+			box.setBackground(cuBlue);
+		}
 		gameInfo.setBackground(cuBlue);
 		gameInfoPadding.setBackground(cuBlue);
 		gameInfoSec.setBackground(cuBlue);
@@ -159,6 +233,7 @@ public class GamePanel extends JPanel
 		gestureOptions.setBackground(cuBlue);
 		gesturePanel.setBackground(cuBlue);
 		bottomBar.setBackground(darkerBlue);
+		statsChart.setBackground(cuBlue);
 		
 		//Creates the Area borders
 		topBar.setBorder (BorderFactory.createLineBorder (Color.red, 1));
@@ -167,29 +242,67 @@ public class GamePanel extends JPanel
 		gestureOptions.setBorder (BorderFactory.createTitledBorder ("Play Options"));
 		gesturePanel.setBorder (BorderFactory.createLineBorder (Color.red, 1));
 		bottomBar.setBorder (BorderFactory.createLineBorder (Color.red, 1));
+		statsChart.setBorder (BorderFactory.createLineBorder (Color.red, 1));
 		
 		//Adds the composite frames to the main panel
 		add(topBar, BorderLayout.NORTH);
 		add(gameInfoSec, BorderLayout.WEST);
 		add(versusGraphics, BorderLayout.CENTER);
 		add(gesturePanel, BorderLayout.EAST);
-		add(bottomBar, BorderLayout.SOUTH);
+		bottomSec.add(statsChart, BorderLayout.CENTER);
+		bottomSec.add(bottomBar, BorderLayout.SOUTH);
+		add(bottomSec, BorderLayout.SOUTH);
 		
 		//Sets panel size
-		setPreferredSize (new Dimension (700,220));
+		setPreferredSize (new Dimension (700,360));
+		
+		//Shows the newest round and samples the chart at most once per frame
+		new javax.swing.Timer(FRAME_MILLIS, new RefreshListener()).start();
 	}
 	
 	/**
 	 * updateGame
 	 * <p>
-	 * Updates all labels and icons to represent current state of gestures and game.
+	 * Updates all labels and icons to represent a round's gestures and result. 
+	 * Everything shown comes from the immutable RoundResult, so the EDT never reads
+	 * the GameHandler while it is being played. Runs on the EDT.
+	 * @param round - the round to show
+	 */
+	private void updateGame(RoundResult round){
+		playerGesture.setText("Player Gestures: " + round.getGestureName(true));
+		compGesture.setText("Computer Gestures: " + round.getGestureName(false));
+		gameResult.setText("Game Status: " + round.getStatus());
+		playerLabel.setIcon(GestureIcons.getIcon(round.getPlayerGesture()));
+		compLabel.setIcon(GestureIcons.getIcon(round.getCompGesture()));
+	}
+	
+	/**
+	 * playRound
+	 * <p>
+	 * Plays one round, which the handler publishes for the next screen refresh. 
+	 * Only ever runs on the game thread.
+	 * @param gesture - the gesture thrown by the player
 	 */
-	private void updateGame(){
-		playerGesture.setText("Player Gestures: " + gameOperator.getGesture(true));
-		compGesture.setText("Computer Gestures: " + gameOperator.getGesture(false));
-		gameResult.setText("Game Status: " + gameOperator.getGameStatus());
-		playerLabel.setIcon(gameOperator.getIcon(true));
-		compLabel.setIcon(gameOperator.getIcon(false));
+	private void playRound(GameGesture gesture){
+		gameOperator.playGame(gesture);
+	}
+	
+	/**
+	 * <b>RefreshListener Class</b>
+	 * <p>
+	 * Called by a Swing timer once per frame. Shows the newest published round if 
+	 * it has not been shown yet, so any number of rounds between two frames cost 
+	 * a single update, and adds a sample of the statistics to the chart.
+	 */
+	private class RefreshListener implements ActionListener{
+		public void actionPerformed(ActionEvent event){
+			RoundResult round = latestRound;
+			if (round != null && round != shownRound){
+				shownRound = round;
+				updateGame(round);
+			}
+			statsChart.refresh();
+		}
 	}
 	
 	/**
@@ -220,30 +333,75 @@ public class GamePanel extends JPanel
 	 * <b>PlayListener Class</b>
 	 * <p>
 	 * An action listener that takes note of the gesture that the player has 
-	 * selected and initiates a round of SPRLK against the computer. Also updates
-	 * the GUI labels.
+	 * selected and initiates a round of SPRLK against the computer on the game 
+	 * thread. The GUI labels are updated at the next screen refresh.
 	 * @author James Wen - jrw2175
 	 */
 	private class PlayListener implements ActionListener{
 		public void actionPerformed(ActionEvent event){
 			GameGesture playerGesture = GameGesture.NONE;
-			if(scissors.isSelected()){
-				playerGesture = GameGesture.SCISSORS;
+			GameGesture[] gestures = GameGesture.values();
+			for (int i = 0; i < gestureBoxes.length; i++){
+				if (gestureBoxes[i].isSelected()){
+					playerGesture = gestures[i];
+				}
 			}
-			if(paper.isSelected()){
-				playerGesture = GameGesture.PAPER;
-			}
-			if(rock.isSelected()){
-				playerGesture = GameGesture.ROCK;
-			}
-			if(lizard.isSelected()){
-				playerGesture = GameGesture.LIZARD;
+			final GameGesture thrown = playerGesture;
+			gameThread.execute(new Runnable(){
+				public void run(){
+					playRound(thrown);
+				}
+			});
+		}
+	}
+
+	/**
+	 * <b>AutoPlayListener Class</b>
+	 * <p>
+	 * An action listener that starts or stops auto-play when the Auto Play button 
+	 * is toggled. While auto-play is on, the game thread plays AUTO_PLAY_RATE 
+	 * rounds per second, in small batches, for a scripted player that favours the 
+	 * currently selected gesture (or plays uniformly at random if none is 
+	 * selected).
+	 */
+	private class AutoPlayListener implements ActionListener{
+		public void actionPerformed(ActionEvent event){
+			if (!autoPlay.isSelected()){
+				stopAutoPlay();
+				return;
 			}
-			if(spock.isSelected()){
-				playerGesture = GameGesture.SPOCK;
+			GameGesture favourite = GameGesture.SCISSORS;
+			double bias = 0;
+			GameGesture[] gestures = GameGesture.values();
+			for (int i = 0; i < gestureBoxes.length; i++){
+				if (gestureBoxes[i].isSelected()){
+					favourite = gestures[i];
+					bias = 0.5;
+				}
 			}
-			gameOperator.playGame(playerGesture);
-			updateGame();
+			final ScriptedPlayer player = new BiasedRandomPlayer(favourite, bias);
+			final int batch = AUTO_PLAY_RATE * AUTO_PLAY_TICK_MILLIS / 1000;
+			autoPlayTask = gameThread.scheduleAtFixedRate(new Runnable(){
+				public void run(){
+					for (int i = 0; i < batch; i++){
+						GameGesture gesture = player.nextGesture();
+						playRound(gesture);
+						player.observe(gesture, gameOperator.getCompGesture());
+					}
+				}
+			}, 0, AUTO_PLAY_TICK_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	/**
+	 * stopAutoPlay
+	 * <p>
+	 * Cancels auto-play if it is running. Runs on the EDT.
+	 */
+	private void stopAutoPlay(){
+		if (autoPlayTask != null){
+			autoPlayTask.cancel(false);
+			autoPlayTask = null;
 		}
 	}
 
@@ -251,15 +409,60 @@ public class GamePanel extends JPanel
 	 * <b>EndGameListener Class</b>
 	 * <p>
 	 * An action listener that initiates a popup message with the overall game
-	 * statistics when the End Game button is clicked. When the popup message is 
+	 * statistics, followed by per-gesture, streak and recent round statistics, 
+	 * when the End Game button is clicked. When the popup message is 
 	 * closed, the game also automatically closes.
 	 * @author James Wen - jrw2175
 	 */
 	private class EndGameListener implements ActionListener{
 		public void actionPerformed(ActionEvent event){
-			JOptionPane.showMessageDialog(null, gameOperator.getStats());
+			stopAutoPlay();
+			String stats;
+			try {//Reads the statistics on the game thread, after any queued rounds
+				stats = gameThread.submit(new Callable<String>(){
+					public String call(){
+						gameOperator.setRoundDispatcher(null);
+						rounds.close();//Delivers every round to the listeners first
+						if (profiles != null){//Each resource is closed even if another fails
+							try {
+								try {
+									profiles.save(playerName, gameOperator);
+								}
+								finally {
+									profiles.close();
+								}
+							}
+							catch (java.io.IOException e){
+								System.err.println("Could not save the profile of " + playerName + ": " + e);
+							}
+						}
+						if (matchLog != null){
+							try {
+								matchLog.close();
+							}
+							catch (java.io.IOException e){
+								System.err.println("Could not close the match log: " + e);
+							}
+						}
+						gameOperator.flushMetrics();
+						StringBuilder text = new StringBuilder(gameOperator.getStats());
+						text.append("\n\n");
+						GameStatistics.Snapshot snapshot = new GameStatistics.Snapshot();
+						gameOperator.getStatistics().snapshot(snapshot);
+						return new StatsFormatter().formatDetails(snapshot, text).toString();
+					}
+				}).get();
+			}
+			catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (ExecutionException e){
+				stats = "Game statistics are unavailable: " + e.getCause();
+			}
+			JOptionPane.showMessageDialog(null, stats);
 			System.exit(0);//Exits window and program
 		}
 	}
 	
-} //End of GamePanel class
\ No newline at end of file
+} //End of GamePanel class
\ No newline at end of file
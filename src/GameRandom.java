@@ -0,0 +1,120 @@
+/**
+ * <b>GameRandom class</b>
+ * <p>
+ * A small, fast, seedable source of random numbers for the game, based on the
+ * SplitMix64 generator (the algorithm behind java.util.SplittableRandom, which the
+ * Java 7 platform does not have).
+ * <p>
+ * Unlike Math.random, which every caller shares through one synchronized generator,
+ * a GameRandom is meant to be owned by a single session and is not thread-safe.
+ * Parallel sessions each get their own instance and never contend. Every instance
+ * made from the same seed produces exactly the same sequence, so a whole simulation
+ * can be replayed by deriving each session's generator from one master seed with
+ * forStream.
+ */
+public class GameRandom {
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	private static long seedUniquifier = 0x2545F4914F6CDD1DL;
+	private long state;
+
+	/**
+	 * Constructs a generator with a seed that is very likely to differ from any other
+	 * generator made in this JVM.
+	 */
+	public GameRandom(){
+		this(mix64(nextSeedUniquifier() ^ System.nanoTime()));
+	}
+
+	/**
+	 * Constructs a generator from a seed. Generators with the same seed produce the
+	 * same sequence.
+	 * @param seed - the initial seed
+	 */
+	public GameRandom(long seed){
+		state = seed;
+	}
+
+	/**
+	 * forStream
+	 * <p>
+	 * Derives an independent generator for one numbered stream of a master seed, for
+	 * example one session of a simulation. The result only depends on the seed and
+	 * the stream number, not on the order in which streams are created.
+	 * @param seed - the master seed
+	 * @param stream - the stream number
+	 * <p>
+	 * @return a generator for the stream
+	 */
+	public static GameRandom forStream(long seed, long stream){
+		return new GameRandom(mix64(seed ^ mix64((stream + 1) * GOLDEN_GAMMA)));
+	}
+
+	/**
+	 * split
+	 * <p>
+	 * Creates a new generator seeded from this one. Both can then be used
+	 * independently, for example by different threads.
+	 * @return a new generator
+	 */
+	public GameRandom split(){
+		return new GameRandom(mix64(nextLong() ^ GOLDEN_GAMMA));
+	}
+
+	/**
+	 * nextLong
+	 * <p>
+	 * Gives the next 64 random bits.
+	 * @return a random long
+	 */
+	public long nextLong(){
+		state += GOLDEN_GAMMA;
+		return mix64(state);
+	}
+
+	/**
+	 * nextInt
+	 * <p>
+	 * Gives a uniformly distributed int between 0 (inclusive) and bound (exclusive),
+	 * without modulo bias.
+	 * @param bound - the upper bound, must be positive
+	 * <p>
+	 * @return a random int in [0, bound)
+	 */
+	public int nextInt(int bound){
+		if (bound <= 0){
+			throw new IllegalArgumentException("Bound must be positive: " + bound);
+		}
+		long product = (nextLong() >>> 32) * bound;
+		long low = product & 0xFFFFFFFFL;
+		if (low < bound){//Rejects the few values that would bias the result
+			long threshold = (0x100000000L - bound) % bound;
+			while (low < threshold){
+				product = (nextLong() >>> 32) * bound;
+				low = product & 0xFFFFFFFFL;
+			}
+		}
+		return (int) (product >>> 32);
+	}
+
+	/**
+	 * nextDouble
+	 * <p>
+	 * Gives a uniformly distributed double between 0 (inclusive) and 1 (exclusive).
+	 * @return a random double in [0, 1)
+	 */
+	public double nextDouble(){
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	private static long mix64(long z){
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static synchronized long nextSeedUniquifier(){
+		seedUniquifier *= 0x5851F42D4C957F2DL;
+		return seedUniquifier;
+	}
+
+}//End of GameRandom class
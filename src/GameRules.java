@@ -0,0 +1,248 @@
+/**
+ * <b>GameRules class</b>
+ * <p>
+ * Holds the rules of Scissors, Paper, Rock, Lizard, Spock as a precomputed outcome
+ * table and resolves rounds against it, either one at a time or in bulk.
+ * <p>
+ * Gestures are encoded by their GameGesture ordinal (scissors = 0, paper = 1,
+ * rock = 2, lizard = 3, spock = 4, none = 5). The table is indexed by
+ * player * STRIDE + comp and holds one of TIE, PLAYER_WIN or COMP_WIN. It is built
+ * from RuleSet.SPRLK, which numbers its gestures the same way. A player that throws
+ * no gesture loses to any real gesture, exactly as the original if-else chain in 
+ * GameHandler did. Games with other rule sets use RuleSet directly.
+ * <p>
+ * The bulk resolver is meant for offline scoring jobs. Short arrays go through the
+ * table; long arrays go through a branch-free kernel that only uses subtraction,
+ * shifts and masks so that the JIT can vectorize it. It relies on the SPRLK diagram
+ * ordering: the player wins exactly when (comp - player) mod 5 is odd. Both paths are
+ * checked against each other when the class is loaded.
+ */
+public class GameRules {
+	/**
+	 * Outcome code of a tied round
+	 */
+	public static final byte TIE = 0;
+	/**
+	 * Outcome code of a round won by the player
+	 */
+	public static final byte PLAYER_WIN = 1;
+	/**
+	 * Outcome code of a round won by the computer
+	 */
+	public static final byte COMP_WIN = 2;
+
+	private static final int OPTIONS = 5;//number of real gestures
+	private static final int STRIDE = OPTIONS + 1;//real gestures plus NONE
+	private static final int WIDE_THRESHOLD = 64;//bulk length that uses the wide kernel
+	private static final byte[] OUTCOMES = buildOutcomes();
+	private static final int COUNTERS_PER_GESTURE = 2;
+	private static final GameGesture[] COUNTERS = buildCounters();
+
+	static {
+		checkWideKernel();
+	}
+
+	private GameRules(){
+	}
+
+	/**
+	 * outcome
+	 * <p>
+	 * Looks up the outcome of a single round.
+	 * @param playerGesture - the gesture thrown by the player
+	 * @param compGesture - the gesture thrown by the computer
+	 * <p>
+	 * @return one of TIE, PLAYER_WIN or COMP_WIN
+	 */
+	public static byte outcome(GameGesture playerGesture, GameGesture compGesture){
+		return OUTCOMES[playerGesture.ordinal() * STRIDE + compGesture.ordinal()];
+	}
+
+	/**
+	 * outcome
+	 * <p>
+	 * Looks up the outcome of a single round given gesture ordinals.
+	 * @param player - the ordinal of the player gesture
+	 * @param comp - the ordinal of the computer gesture
+	 * <p>
+	 * @return one of TIE, PLAYER_WIN or COMP_WIN
+	 */
+	public static byte outcome(int player, int comp){
+		return OUTCOMES[player * STRIDE + comp];
+	}
+
+	/**
+	 * counter
+	 * <p>
+	 * Gives one of the two gestures that beat the given gesture. Choice 0 is the
+	 * gesture physically next to it in the SPRLK diagram, the same one that GameAI
+	 * throws when decideBetween = 1.
+	 * @param gesture - the ordinal of the gesture to beat, 0 to 4
+	 * @param choice - which of the two counters, 0 or 1
+	 * <p>
+	 * @return a gesture that beats the given gesture
+	 */
+	public static GameGesture counter(int gesture, int choice){
+		return COUNTERS[gesture * COUNTERS_PER_GESTURE + choice];
+	}
+
+	/**
+	 * resolve
+	 * <p>
+	 * Resolves a block of rounds in bulk. Round i is player[i] against comp[i], and
+	 * its outcome code is written to outcomes[i].
+	 * <p>
+	 * Win, tie and loss totals are added to the totals array, indexed by outcome code
+	 * (totals[TIE], totals[PLAYER_WIN], totals[COMP_WIN]), so the same array can be
+	 * used to accumulate over many blocks. Gestures must be real gestures (ordinals
+	 * 0 to 4).
+	 * @param player - player gesture ordinals
+	 * @param comp - computer gesture ordinals
+	 * @param outcomes - receives the outcome code of each round; may be null if only
+	 * the totals are wanted
+	 * @param totals - array of at least 3 counters that the totals are added to
+	 */
+	public static void resolve(byte[] player, byte[] comp, byte[] outcomes, long[] totals){
+		int rounds = player.length;
+		if (comp.length != rounds || (outcomes != null && outcomes.length < rounds)){
+			throw new IllegalArgumentException("Gesture and outcome arrays must have matching lengths");
+		}
+		long playerWins;
+		long compWins;
+		if (rounds < WIDE_THRESHOLD){
+			playerWins = 0;
+			compWins = 0;
+			for (int i = 0; i < rounds; i++){
+				byte result = OUTCOMES[player[i] * STRIDE + comp[i]];
+				if (outcomes != null){
+					outcomes[i] = result;
+				}
+				playerWins += result & 1;
+				compWins += result >> 1;
+			}
+		}
+		else if (outcomes != null){
+			long both = resolveWide(player, comp, outcomes, rounds);
+			playerWins = both & 0xFFFFFFFFL;
+			compWins = both >>> 32;
+		}
+		else {
+			long both = countWide(player, comp, rounds);
+			playerWins = both & 0xFFFFFFFFL;
+			compWins = both >>> 32;
+		}
+		totals[PLAYER_WIN] += playerWins;
+		totals[COMP_WIN] += compWins;
+		totals[TIE] += rounds - playerWins - compWins;
+	}
+
+	/**
+	 * resolveWide
+	 * <p>
+	 * Branch-free kernel for long arrays that also stores the per-round outcomes.
+	 * <p>
+	 * d = (comp - player) mod 5 is 0 for a tie, odd for a player win and even for a
+	 * computer win, so the outcome code is (d & 1) | (2 if d is even and non zero).
+	 * @return player wins in the low 32 bits, computer wins in the high 32 bits
+	 */
+	private static long resolveWide(byte[] player, byte[] comp, byte[] outcomes, int rounds){
+		int playerWins = 0;
+		int compWins = 0;
+		for (int i = 0; i < rounds; i++){
+			int d = comp[i] - player[i];
+			d += (d >> 31) & OPTIONS;
+			int win = d & 1;
+			int loss = ((-d) >>> 31) & ~d & 1;
+			outcomes[i] = (byte) (win | (loss << 1));
+			playerWins += win;
+			compWins += loss;
+		}
+		return ((long) compWins << 32) | (playerWins & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * countWide
+	 * <p>
+	 * Same kernel as resolveWide, but only keeps the totals.
+	 * @return player wins in the low 32 bits, computer wins in the high 32 bits
+	 */
+	private static long countWide(byte[] player, byte[] comp, int rounds){
+		int playerWins = 0;
+		int compWins = 0;
+		for (int i = 0; i < rounds; i++){
+			int d = comp[i] - player[i];
+			d += (d >> 31) & OPTIONS;
+			playerWins += d & 1;
+			compWins += ((-d) >>> 31) & ~d & 1;
+		}
+		return ((long) compWins << 32) | (playerWins & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * buildOutcomes
+	 * <p>
+	 * Builds the outcome table from the SPRLK rule set. Any round involving NONE
+	 * that is not a tie goes to the computer, as in the original if-else chain.
+	 * @return the flattened outcome table
+	 */
+	private static byte[] buildOutcomes(){
+		RuleSet rules = RuleSet.SPRLK;
+		int none = GameGesture.NONE.ordinal();
+		byte[] table = new byte[STRIDE * STRIDE];
+		for (int player = 0; player < STRIDE; player++){
+			for (int comp = 0; comp < STRIDE; comp++){
+				if (player == comp){
+					table[player * STRIDE + comp] = TIE;
+				}
+				else if (player == none || comp == none){
+					table[player * STRIDE + comp] = COMP_WIN;
+				}
+				else {
+					table[player * STRIDE + comp] = rules.outcome(player, comp);
+				}
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * buildCounters
+	 * <p>
+	 * Lists the gestures that beat each gesture, in the SPRLK rule set's order, so
+	 * that the nearest counter comes first.
+	 * @return the flattened counter table
+	 */
+	private static GameGesture[] buildCounters(){
+		GameGesture[] gestures = GameGesture.values();
+		GameGesture[] counters = new GameGesture[OPTIONS * COUNTERS_PER_GESTURE];
+		for (int gesture = 0; gesture < OPTIONS; gesture++){
+			for (int choice = 0; choice < COUNTERS_PER_GESTURE; choice++){
+				counters[gesture * COUNTERS_PER_GESTURE + choice] = gestures[RuleSet.SPRLK.getBeater(gesture, choice)];
+			}
+		}
+		return counters;
+	}
+
+	/**
+	 * checkWideKernel
+	 * <p>
+	 * Makes sure the wide kernel agrees with the outcome table for every pair of real
+	 * gestures, so that both bulk paths and playGame always give identical results.
+	 */
+	private static void checkWideKernel(){
+		byte[] player = new byte[OPTIONS * OPTIONS];
+		byte[] comp = new byte[OPTIONS * OPTIONS];
+		byte[] outcomes = new byte[OPTIONS * OPTIONS];
+		for (int i = 0; i < player.length; i++){
+			player[i] = (byte) (i / OPTIONS);
+			comp[i] = (byte) (i % OPTIONS);
+		}
+		resolveWide(player, comp, outcomes, player.length);
+		for (int i = 0; i < player.length; i++){
+			if (outcomes[i] != OUTCOMES[player[i] * STRIDE + comp[i]]){
+				throw new IllegalStateException("Wide kernel disagrees with the outcome table");
+			}
+		}
+	}
+
+}//End of GameRules class
@@ -0,0 +1,345 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * <b>GameServer class</b>
+ * <p>
+ * Lets remote clients play SPRLK over TCP. Every connection is one player with its
+ * own GameHandler and computer strategy, and all connections are served by a single
+ * thread with a NIO selector, so tens of thousands of players need no thread each.
+ * <p>
+ * The protocol is binary. The client sends one byte per throw, the gesture's
+ * ordinal (0 scissors, 1 paper, 2 rock, 3 lizard, 4 spock), and the server answers
+ * every byte with a FRAME_SIZE frame: the player's gesture, the computer's gesture,
+ * the GameRules outcome code, and the round number modulo 256. A byte that is not a
+ * gesture is answered with a frame of three ERROR bytes and the round number, and
+ * plays no round. A client may send any number of throws without waiting, and the
+ * frames come back in the same order.
+ * <p>
+ * Reading and writing go through one pair of direct buffers shared by every
+ * connection, so a round allocates nothing. A connection only gets a buffer of its
+ * own when the socket will not take all of its frames at once; it then stops being
+ * read until those frames have gone out, so a client that does not read its
+ * answers cannot make the server queue without bound.
+ * <p>
+ * Each player's strategy gets its own GameRandom derived from the server seed and
+ * the connection number. Serving 50,000 connections needs a file descriptor limit
+ * above that (ulimit -n).
+ * <p>
+ * Usage: java GameServer [port] [seed] [strategy], where strategy names are those
+ * of GameSimulator.
+ */
+public class GameServer implements Runnable, Closeable {
+	/**
+	 * Bytes in every answer frame
+	 */
+	public static final int FRAME_SIZE = 4;
+	/**
+	 * Gesture and outcome byte of the frame answering a byte that is not a gesture
+	 */
+	public static final byte ERROR = (byte) 0xFF;
+
+	private static final int READ_SIZE = 1 << 14;//throws read at once from a connection
+	private static final long ACCEPT_BACKOFF = 100;//milliseconds without accepting after accept fails
+	private static final int OPTIONS = 5;//number of possible gestures that one can throw
+	private static final GameGesture[] GESTURES = {GameGesture.SCISSORS, GameGesture.PAPER,
+		GameGesture.ROCK, GameGesture.LIZARD, GameGesture.SPOCK};
+
+	private final ServerSocketChannel server;
+	private final Selector selector;
+	private final StrategyFactory strategy;
+	private final long seed;
+	private final ByteBuffer readBuffer;
+	private final ByteBuffer writeBuffer;
+	private SelectionKey acceptKey;
+	private long acceptResumesAt;//nanoTime at which accepting resumes; 0 while accepting
+	private long nextConnection;
+	private int connections;
+	private volatile long roundsPlayed;
+	private volatile boolean closed;
+
+	/**
+	 * <b>Connection class</b>
+	 * <p>
+	 * The state of one player's connection.
+	 */
+	private static class Connection {
+		final SocketChannel channel;
+		final GameHandler handler;
+		ByteBuffer pending;//frames the socket has not taken yet, only after a partial write
+
+		Connection(SocketChannel channel, GameHandler handler){
+			this.channel = channel;
+			this.handler = handler;
+		}
+	}
+
+	/**
+	 * Opens a server on the given address. It serves nothing until run.
+	 * @param address - the address to listen on; port 0 picks a free port
+	 * @param strategy - makes the computer strategy of each connection
+	 * @param seed - the master seed that every player's random source derives from
+	 */
+	public GameServer(InetSocketAddress address, StrategyFactory strategy, long seed) throws IOException {
+		this.strategy = strategy;
+		this.seed = seed;
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		try {
+			server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			server.bind(address, 1 << 12);
+			server.configureBlocking(false);
+			acceptKey = server.register(selector, SelectionKey.OP_ACCEPT);
+		}
+		catch (IOException e){
+			server.close();
+			selector.close();
+			throw e;
+		}
+		readBuffer = ByteBuffer.allocateDirect(READ_SIZE);
+		writeBuffer = ByteBuffer.allocateDirect(READ_SIZE * FRAME_SIZE);
+	}
+
+	/**
+	 * getPort
+	 * <p>
+	 * Gives the port the server listens on.
+	 */
+	public int getPort() throws IOException {
+		return ((InetSocketAddress) server.getLocalAddress()).getPort();
+	}
+
+	/**
+	 * getConnections
+	 * <p>
+	 * Gives the number of open connections. Only exact on the server thread.
+	 */
+	public int getConnections(){
+		return connections;
+	}
+
+	/**
+	 * getRoundsPlayed
+	 * <p>
+	 * Gives the number of rounds played over all connections so far.
+	 */
+	public long getRoundsPlayed(){
+		return roundsPlayed;
+	}
+
+	/**
+	 * run
+	 * <p>
+	 * Serves connections until the server is closed.
+	 */
+	public void run(){
+		try {
+			while (!closed){
+				if (acceptResumesAt == 0){
+					selector.select();
+				}
+				else {
+					long wait = (acceptResumesAt - System.nanoTime()) / 1000000;
+					if (wait > 0){
+						selector.select(wait);
+					}
+					if (System.nanoTime() - acceptResumesAt >= 0){
+						acceptResumesAt = 0;
+						acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+					}
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()){
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()){
+						continue;
+					}
+					if (key.isAcceptable()){
+						accept();
+					}
+					else {
+						Connection connection = (Connection) key.attachment();
+						try {
+							if (key.isWritable()){
+								drain(key, connection);
+							}
+							else if (key.isReadable()){
+								serve(key, connection);
+							}
+						}
+						catch (IOException e){//The player went away
+							disconnect(key, connection);
+						}
+					}
+				}
+			}
+		}
+		catch (IOException e){
+			if (!closed){
+				throw new IllegalStateException("Game server failed", e);
+			}
+		}
+		finally {
+			shutDown();
+		}
+	}
+
+	/**
+	 * close
+	 * <p>
+	 * Stops the server and disconnects every player.
+	 */
+	public void close(){
+		closed = true;
+		selector.wakeup();
+	}
+
+	/**
+	 * accept
+	 * <p>
+	 * Accepts every waiting connection. If accepting fails, most likely because the
+	 * process has run out of file descriptors, the server stops accepting for
+	 * ACCEPT_BACKOFF milliseconds while the players already connected carry on; a
+	 * connection that fails while it is being set up is closed.
+	 */
+	private void accept(){
+		while (true){
+			SocketChannel channel;
+			try {
+				channel = server.accept();
+			}
+			catch (IOException e){
+				acceptKey.interestOps(0);
+				acceptResumesAt = (System.nanoTime() + ACCEPT_BACKOFF * 1000000) | 1;
+				return;
+			}
+			if (channel == null){
+				return;
+			}
+			try {
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				GameHandler handler = new GameHandler(strategy.create(GameRandom.forStream(seed, nextConnection++)));
+				channel.register(selector, SelectionKey.OP_READ, new Connection(channel, handler));
+				connections++;
+			}
+			catch (IOException e){
+				try {
+					channel.close();
+				}
+				catch (IOException closing){
+					//Already gone
+				}
+			}
+		}
+	}
+
+	/**
+	 * serve
+	 * <p>
+	 * Plays every throw that has arrived on a connection and answers them.
+	 */
+	private void serve(SelectionKey key, Connection connection) throws IOException {
+		readBuffer.clear();
+		int read = connection.channel.read(readBuffer);
+		if (read < 0){
+			disconnect(key, connection);
+			return;
+		}
+		GameHandler handler = connection.handler;
+		writeBuffer.clear();
+		int played = 0;
+		for (int i = 0; i < read; i++){
+			int gesture = readBuffer.get(i);
+			if (gesture >= 0 && gesture < OPTIONS){
+				handler.playGame(GESTURES[gesture]);
+				int comp = handler.getCompGesture().ordinal();
+				writeBuffer.put((byte) gesture);
+				writeBuffer.put((byte) comp);
+				writeBuffer.put(GameRules.outcome(gesture, comp));
+				played++;
+			}
+			else {
+				writeBuffer.put(ERROR);
+				writeBuffer.put(ERROR);
+				writeBuffer.put(ERROR);
+			}
+			writeBuffer.put((byte) handler.getGamesPlayed());
+		}
+		roundsPlayed += played;//Only written by the server thread
+		writeBuffer.flip();
+		connection.channel.write(writeBuffer);
+		if (writeBuffer.hasRemaining()){//Keep the rest and stop reading until it is sent
+			if (connection.pending == null || connection.pending.capacity() < writeBuffer.remaining()){
+				connection.pending = ByteBuffer.allocate(writeBuffer.remaining());
+			}
+			connection.pending.clear();
+			connection.pending.put(writeBuffer);
+			connection.pending.flip();
+			key.interestOps(SelectionKey.OP_WRITE);
+		}
+	}
+
+	/**
+	 * drain
+	 * <p>
+	 * Sends a connection's waiting frames, and reads from it again once they are gone.
+	 */
+	private void drain(SelectionKey key, Connection connection) throws IOException {
+		connection.channel.write(connection.pending);
+		if (!connection.pending.hasRemaining()){
+			key.interestOps(SelectionKey.OP_READ);
+		}
+	}
+
+	private void disconnect(SelectionKey key, Connection connection){
+		key.cancel();
+		connection.handler.flushMetrics();
+		connections--;
+		try {
+			connection.channel.close();
+		}
+		catch (IOException e){
+			//Already gone
+		}
+	}
+
+	private void shutDown(){
+		for (SelectionKey key : selector.keys()){
+			if (key.isValid() && key.attachment() instanceof Connection){
+				disconnect(key, (Connection) key.attachment());
+			}
+		}
+		try {
+			server.close();
+			selector.close();
+		}
+		catch (IOException e){
+			//Nothing left to release
+		}
+	}
+
+	/**
+	 * main
+	 * <p>
+	 * Serves games until the process is stopped.
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 5050;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		String strategy = args.length > 2 ? args[2] : "frequency";
+		GameServer server = new GameServer(new InetSocketAddress(port), GameSimulator.parseStrategy(strategy), seed);
+		System.out.println("Serving " + strategy + " on port " + server.getPort());
+		server.run();
+	}
+
+}//End of GameServer class
@@ -0,0 +1,216 @@
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <b>GameSession class</b>
+ * <p>
+ * One player's game, hosted by a SessionEngine. Owns a GameHandler and its GameAI,
+ * which are not thread-safe, and only ever touches them from its own task queue.
+ * <p>
+ * Work submitted to a session is queued and run one task at a time on the engine's
+ * shared executor, so a session behaves as if it had a thread of its own while tens
+ * of thousands of sessions share a handful of worker threads. Different sessions
+ * never wait on each other, and there is no lock around any session's counters.
+ * <p>
+ * Once the executor has been shut down, submitting work throws
+ * IllegalStateException, and work still queued that can no longer run is
+ * cancelled rather than left waiting forever.
+ */
+public class GameSession implements Runnable {
+	private static final int BATCH = 64;//tasks run before yielding the worker thread
+	private final long id;
+	private final GameHandler handler;
+	private final Executor executor;
+	private final SessionEngine engine;
+	private final ConcurrentLinkedQueue<Runnable> mailbox;
+	private final AtomicBoolean scheduled;
+	private volatile boolean retired;
+
+	/**
+	 * Constructs a session. Sessions are created through SessionEngine.
+	 */
+	GameSession(long id, GameHandler handler, Executor executor, SessionEngine engine){
+		this.id = id;
+		this.handler = handler;
+		this.executor = executor;
+		this.engine = engine;
+		mailbox = new ConcurrentLinkedQueue<Runnable>();
+		scheduled = new AtomicBoolean(false);
+		retired = false;
+	}
+
+	/**
+	 * getId
+	 * <p>
+	 * Gives the id that the engine knows this session by.
+	 * @return id - the session id
+	 */
+	public long getId(){
+		return id;
+	}
+
+	/**
+	 * isRetired
+	 * <p>
+	 * Tells whether the session has been retired and accepts no more work.
+	 * @return retired - true once the session has been retired
+	 */
+	public boolean isRetired(){
+		return retired;
+	}
+
+	/**
+	 * play
+	 * <p>
+	 * Queues a round with the given player gesture.
+	 * @param playerGesture - the gesture chosen by the player
+	 * <p>
+	 * @return a future holding the round's GameRules outcome code
+	 */
+	public Future<Byte> play(final GameGesture playerGesture){
+		return submit(new Callable<Byte>(){
+			public Byte call(){
+				handler.playGame(playerGesture);
+				byte outcome = handler.getOutcome();
+				engine.recordRound(outcome);
+				return outcome;
+			}
+		});
+	}
+
+	/**
+	 * stats
+	 * <p>
+	 * Queues a request for the session's statistics report.
+	 * @return a future holding the text of GameHandler.getStats
+	 */
+	public Future<String> stats(){
+		return submit(new Callable<String>(){
+			public String call(){
+				return handler.getStats();
+			}
+		});
+	}
+
+	/**
+	 * submit
+	 * <p>
+	 * Queues arbitrary work against the session's GameHandler. The work runs after
+	 * everything queued before it and before anything queued after it.
+	 * @param work - the work to run with exclusive access to the session
+	 * <p>
+	 * @return a future holding the result of the work
+	 * @throws IllegalStateException if the session has been retired or the executor
+	 * has been shut down
+	 */
+	public <T> Future<T> submit(Callable<T> work){
+		if (retired){
+			throw new IllegalStateException("Session " + id + " has been retired");
+		}
+		FutureTask<T> task = new FutureTask<T>(work);
+		mailbox.offer(task);
+		try {
+			schedule();
+		}
+		catch (RejectedExecutionException e){
+			cancelQueued();
+			throw new IllegalStateException("Session " + id + " has been shut down", e);
+		}
+		return task;
+	}
+
+	/**
+	 * getHandler
+	 * <p>
+	 * Gives the session's GameHandler. Only safe to use from work run by submit.
+	 */
+	GameHandler getHandler(){
+		return handler;
+	}
+
+	/**
+	 * retire
+	 * <p>
+	 * Stops the session from accepting new work. Work already queued still runs,
+	 * followed by a flush of the rounds the handler has not yet counted in the
+	 * global metrics, which is queued here so that it happens even if the session
+	 * is idle.
+	 */
+	void retire(){
+		mailbox.offer(new FutureTask<Void>(new Runnable(){
+			public void run(){
+				handler.flushMetrics();
+			}
+		}, null));
+		retired = true;
+		try {
+			schedule();
+		}
+		catch (RejectedExecutionException e){
+			cancelQueued();
+		}
+	}
+
+	/**
+	 * run
+	 * <p>
+	 * Drains a batch of queued work on an executor thread.
+	 */
+	public void run(){
+		//A retired session drains everything so that shutdown never has to reschedule it
+		int limit = retired ? Integer.MAX_VALUE : BATCH;
+		for (int i = 0; i < limit; i++){
+			Runnable task = mailbox.poll();
+			if (task == null){
+				break;
+			}
+			task.run();
+		}
+		scheduled.set(false);
+		if (!mailbox.isEmpty()){//More work arrived, or the batch ran out
+			try {
+				schedule();
+			}
+			catch (RejectedExecutionException e){
+				cancelQueued();
+			}
+		}
+	}
+
+	/**
+	 * schedule
+	 * <p>
+	 * Hands the session to the executor unless it is already waiting there or
+	 * running. If the executor refuses it, the session is left unscheduled so that
+	 * it does not look busy forever.
+	 */
+	private void schedule(){
+		if (scheduled.compareAndSet(false, true)){
+			try {
+				executor.execute(this);
+			}
+			catch (RejectedExecutionException e){
+				scheduled.set(false);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * cancelQueued
+	 * <p>
+	 * Cancels every queued task, once the executor will not run them.
+	 */
+	private void cancelQueued(){
+		Runnable task;
+		while ((task = mailbox.poll()) != null){
+			((Future<?>) task).cancel(false);
+		}
+	}
+
+}//End of GameSession class
@@ -0,0 +1,379 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <b>GameSimulator class</b>
+ * <p>
+ * Headless Monte Carlo evaluation of GameAI. Plays many independent sessions of a
+ * fixed length between a fresh GameHandler (and so a fresh GameAI, or another
+ * GameStrategy such as MarkovAI) and a scripted opponent, and reports the AI's win
+ * rate with a confidence interval.
+ * <p>
+ * Sessions are run in waves on a fork/join pool. Every task counts into its own
+ * Totals object and totals are merged only when tasks are joined, so worker threads
+ * never share a counter. After each wave the 95% confidence interval of the per
+ * session win rate is checked, and the simulation stops early once it is narrower
+ * than the requested half width.
+ * <p>
+ * Every session's AI and opponent draw from GameRandoms derived from one master
+ * seed and the session's number, and waves have a fixed size, so a run can be
+ * replayed bit-for-bit from its seed on any number of cores.
+ * <p>
+ * Usage: java GameSimulator [opponent] [sessionLength] [maxRounds] [halfWidth] [seed]
+ * [strategy] where opponent is one of constant, cyclic, biased or exploiter, and
+ * strategy is frequency (GameAI), windowN or decayF (GameAI remembering the last N
+ * gestures, or decaying them by F per round), markovK or markovKc (MarkovAI of order
+ * K, the latter also conditioning on computer gestures) or ensemble (EnsembleAI).
+ */
+public class GameSimulator {
+	private static final double Z_95 = 1.96;//two sided 95% normal quantile
+	private static final int MIN_SESSIONS = 1000;//sessions needed before stopping early
+	private static final long LEAF_ROUNDS = 1 << 20;//rounds played by one leaf task
+	private static final long WAVE_LEAVES = 64;//leaf tasks in one wave
+
+	private final StrategyFactory strategy;
+	private final Opponent opponent;
+	private final int sessionLength;
+	private final long seed;
+	private final ForkJoinPool pool;
+
+	/**
+	 * <b>Opponent enum</b>
+	 * <p>
+	 * The kinds of scripted opponents that the simulator can play GameAI against.
+	 */
+	public enum Opponent {
+		/**
+		 * Always throws rock
+		 */
+		CONSTANT {
+			ScriptedPlayer create(GameRandom random){
+				return new ConstantPlayer(GameGesture.ROCK);
+			}
+		},
+
+		/**
+		 * Cycles through all five gestures
+		 */
+		CYCLIC {
+			ScriptedPlayer create(GameRandom random){
+				return new CyclicPlayer();
+			}
+		},
+
+		/**
+		 * Throws spock half the time, otherwise a random gesture
+		 */
+		BIASED {
+			ScriptedPlayer create(GameRandom random){
+				return new BiasedRandomPlayer(GameGesture.SPOCK, 0.5, random);
+			}
+		},
+
+		/**
+		 * Counts-aware exploiter from the GameAI Javadoc
+		 */
+		EXPLOITER {
+			ScriptedPlayer create(GameRandom random){
+				return new ExploiterPlayer();
+			}
+		};
+
+		abstract ScriptedPlayer create(GameRandom random);
+	}
+
+	/**
+	 * <b>Totals class</b>
+	 * <p>
+	 * Counters of a set of simulated sessions. Each task owns its own instance.
+	 */
+	public static class Totals {
+		private long sessions;
+		private long rounds;
+		private long compWins;
+		private long playerWins;
+		private long ties;
+		private double sumRate;//sum of per session AI win rates
+		private double sumRateSquared;//sum of squared per session AI win rates
+
+		/**
+		 * add
+		 * <p>
+		 * Adds the counters of another set of sessions to this one.
+		 * @param other - the totals to merge in
+		 */
+		void add(Totals other){
+			sessions += other.sessions;
+			rounds += other.rounds;
+			compWins += other.compWins;
+			playerWins += other.playerWins;
+			ties += other.ties;
+			sumRate += other.sumRate;
+			sumRateSquared += other.sumRateSquared;
+		}
+
+		public long getSessions(){
+			return sessions;
+		}
+
+		public long getRounds(){
+			return rounds;
+		}
+
+		public long getCompWins(){
+			return compWins;
+		}
+
+		public long getPlayerWins(){
+			return playerWins;
+		}
+
+		public long getTies(){
+			return ties;
+		}
+
+		/**
+		 * getWinRate
+		 * <p>
+		 * Gives the mean of the AI's per session win rates.
+		 * @return the mean win rate, or 0 if no sessions were played
+		 */
+		public double getWinRate(){
+			if (sessions == 0){
+				return 0;
+			}
+			return sumRate / sessions;
+		}
+
+		/**
+		 * getHalfWidth
+		 * <p>
+		 * Gives the half width of the 95% confidence interval of the AI's win rate.
+		 * @return the half width, or infinity while fewer than two sessions were played
+		 */
+		public double getHalfWidth(){
+			if (sessions < 2){
+				return Double.POSITIVE_INFINITY;
+			}
+			double mean = sumRate / sessions;
+			double variance = (sumRateSquared - sessions * mean * mean) / (sessions - 1);
+			return Z_95 * Math.sqrt(Math.max(variance, 0) / sessions);
+		}
+	}
+
+	/**
+	 * Constructs a simulator that runs on all available cores.
+	 * @param opponent - the kind of scripted opponent to play against
+	 * @param sessionLength - the number of rounds in each session
+	 * @param seed - the master seed that every session's random source derives from
+	 */
+	public GameSimulator(Opponent opponent, int sessionLength, long seed){
+		this(parseStrategy("frequency"), opponent, sessionLength, seed, new ForkJoinPool());
+	}
+
+	/**
+	 * Constructs a simulator that runs on the given pool.
+	 * @param strategy - creates the computer strategy for each session
+	 * @param opponent - the kind of scripted opponent to play against
+	 * @param sessionLength - the number of rounds in each session
+	 * @param seed - the master seed that every session's random source derives from
+	 * @param pool - the fork/join pool to run sessions on
+	 */
+	public GameSimulator(StrategyFactory strategy, Opponent opponent, int sessionLength, long seed,
+			ForkJoinPool pool){
+		if (sessionLength < 1){
+			throw new IllegalArgumentException("Session length must be positive: " + sessionLength);
+		}
+		this.strategy = strategy;
+		this.opponent = opponent;
+		this.sessionLength = sessionLength;
+		this.seed = seed;
+		this.pool = pool;
+	}
+
+	/**
+	 * simulate
+	 * <p>
+	 * Runs sessions in waves until either maxRounds rounds have been played or the
+	 * confidence interval of the AI's win rate is at most halfWidth wide on each side.
+	 * @param maxRounds - the maximum number of rounds to play
+	 * @param halfWidth - the target half width of the 95% confidence interval; 0 to
+	 * always play maxRounds
+	 * <p>
+	 * @return totals - the merged counters of all sessions played
+	 */
+	public Totals simulate(long maxRounds, double halfWidth){
+		long maxSessions = Math.max(1, maxRounds / sessionLength);
+		long sessionsPerLeaf = Math.max(1, LEAF_ROUNDS / sessionLength);
+		long waveSessions = Math.max(MIN_SESSIONS, sessionsPerLeaf * WAVE_LEAVES);
+		Totals totals = new Totals();
+		long started = 0;
+		while (started < maxSessions){
+			long wave = Math.min(waveSessions, maxSessions - started);
+			totals.add(pool.invoke(new SessionTask(started, wave, sessionsPerLeaf)));
+			started += wave;
+			if (totals.sessions >= MIN_SESSIONS && totals.getHalfWidth() <= halfWidth){
+				break;
+			}
+		}
+		return totals;
+	}
+
+	/**
+	 * playSession
+	 * <p>
+	 * Plays one full session against a fresh AI and adds it to the given totals.
+	 * The AI and the opponent use the even and odd random streams of the session.
+	 */
+	private void playSession(long session, Totals totals){
+		GameHandler handler = new GameHandler(strategy.create(GameRandom.forStream(seed, 2 * session)));
+		ScriptedPlayer player = opponent.create(GameRandom.forStream(seed, 2 * session + 1));
+		for (int round = 0; round < sessionLength; round++){
+			GameGesture playerGesture = player.nextGesture();
+			handler.playGame(playerGesture);
+			player.observe(playerGesture, handler.getCompGesture());
+		}
+		handler.flushMetrics();//Counts the rounds since the last sampled one
+		double rate = (double) handler.getCompWins() / sessionLength;
+		totals.sessions++;
+		totals.rounds += sessionLength;
+		totals.compWins += handler.getCompWins();
+		totals.playerWins += handler.getPlayerWins();
+		totals.ties += handler.getTieGames();
+		totals.sumRate += rate;
+		totals.sumRateSquared += rate * rate;
+	}
+
+	/**
+	 * <b>SessionTask class</b>
+	 * <p>
+	 * Fork/join task that plays a number of sessions, splitting in halves until a
+	 * task holds at most one leaf worth of sessions.
+	 */
+	@SuppressWarnings("serial")//Never serialized
+	private class SessionTask extends RecursiveTask<Totals> {
+		private final long first;
+		private final long sessions;
+		private final long sessionsPerLeaf;
+
+		SessionTask(long first, long sessions, long sessionsPerLeaf){
+			this.first = first;
+			this.sessions = sessions;
+			this.sessionsPerLeaf = sessionsPerLeaf;
+		}
+
+		protected Totals compute(){
+			if (sessions <= sessionsPerLeaf){
+				Totals totals = new Totals();
+				for (long i = 0; i < sessions; i++){
+					playSession(first + i, totals);
+				}
+				return totals;
+			}
+			long half = sessions / 2;
+			SessionTask left = new SessionTask(first, half, sessionsPerLeaf);
+			SessionTask right = new SessionTask(first + half, sessions - half, sessionsPerLeaf);
+			left.fork();
+			Totals totals = right.compute();
+			totals.add(left.join());
+			return totals;
+		}
+	}
+
+	/**
+	 * parseStrategy
+	 * <p>
+	 * Turns a strategy name from the command line into a factory.
+	 * @param name - frequency, windowN, decayF, markovK, markovKc or ensemble
+	 * <p>
+	 * @return a factory for the named strategy
+	 */
+	public static StrategyFactory parseStrategy(String name){
+		String lower = name.toLowerCase();
+		if (lower.equals("frequency")){
+			return new StrategyFactory(){
+				public GameStrategy create(GameRandom random){
+					return new GameAI(random);
+				}
+			};
+		}
+		if (lower.startsWith("window") || lower.startsWith("decay")){
+			final GameMemory memory = lower.startsWith("window")
+					? GameMemory.window(Integer.parseInt(lower.substring("window".length())))
+					: GameMemory.decay(Double.parseDouble(lower.substring("decay".length())));
+			return new StrategyFactory(){
+				public GameStrategy create(GameRandom random){
+					return new GameAI(RuleSet.SPRLK, PreferenceTieBreak.FIXED_ORDER, memory, random);
+				}
+			};
+		}
+		if (lower.equals("ensemble")){
+			return new StrategyFactory(){
+				public GameStrategy create(GameRandom random){
+					return new EnsembleAI(random);
+				}
+			};
+		}
+		if (lower.startsWith("markov")){
+			final boolean includeComp = lower.endsWith("c");
+			String digits = lower.substring("markov".length(), lower.length() - (includeComp ? 1 : 0));
+			final int order = digits.isEmpty() ? 1 : Integer.parseInt(digits);
+			new MarkovAI(order, includeComp, new GameRandom(0));//Fails fast on bad orders
+			return new StrategyFactory(){
+				public GameStrategy create(GameRandom random){
+					return new MarkovAI(order, includeComp, random);
+				}
+			};
+		}
+		throw new IllegalArgumentException("Unknown strategy: " + name);
+	}
+
+	/**
+	 * main
+	 * <p>
+	 * Runs a simulation from the command line and prints the results.
+	 */
+	public static void main(String[] args){
+		Opponent opponent = Opponent.BIASED;
+		int sessionLength = 100;
+		long maxRounds = 100000000L;
+		double halfWidth = 0.001;
+		long seed = System.nanoTime();
+		String strategyName = "frequency";
+		if (args.length > 0){
+			opponent = Opponent.valueOf(args[0].toUpperCase());
+		}
+		if (args.length > 1){
+			sessionLength = Integer.parseInt(args[1]);
+		}
+		if (args.length > 2){
+			maxRounds = Long.parseLong(args[2]);
+		}
+		if (args.length > 3){
+			halfWidth = Double.parseDouble(args[3]);
+		}
+		if (args.length > 4){
+			seed = Long.parseLong(args[4]);
+		}
+		if (args.length > 5){
+			strategyName = args[5];
+		}
+
+		long start = System.nanoTime();
+		Totals totals = new GameSimulator(parseStrategy(strategyName), opponent, sessionLength, seed,
+				new ForkJoinPool()).simulate(maxRounds, halfWidth);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println("Strategy: " + strategyName);
+		System.out.println("Opponent: " + opponent);
+		System.out.println("Seed: " + seed);
+		System.out.println("Sessions: " + totals.getSessions() + " x " + sessionLength + " rounds");
+		System.out.println("Rounds Played: " + totals.getRounds());
+		System.out.println("Computer Wins: " + totals.getCompWins());
+		System.out.println("Player Wins: " + totals.getPlayerWins());
+		System.out.println("Ties: " + totals.getTies());
+		System.out.printf("AI Win Rate: %.4f +/- %.4f (95%%)%n", totals.getWinRate(), totals.getHalfWidth());
+		System.out.printf("Throughput: %.1f million rounds/sec%n", totals.getRounds() / seconds / 1e6);
+	}
+
+}//End of GameSimulator class
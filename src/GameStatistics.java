@@ -0,0 +1,516 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * <b>GameStatistics class</b>
+ * <p>
+ * Keeps the statistics of a game up to date one round at a time, so that reading
+ * them never has to recount anything.
+ * <p>
+ * Tracks the overall totals, how often each gesture was thrown and won for both the
+ * player and the computer, the current streak and the longest winning streak of
+ * each side, and the outcome rates over the last N rounds. The last N outcomes are
+ * kept in a primitive ring buffer together with running counts, so rolling rates
+ * cost nothing to read.
+ * <p>
+ * Rounds are recorded by the single thread that plays the game. Any number of other
+ * threads may take snapshots at the same time: the statistics are guarded by a
+ * sequence number that is odd while a round is being recorded, and a snapshot is
+ * simply retried if a round was recorded while it was being copied. The sequence
+ * turns odd through an atomic increment, which is a full fence, so no write of the
+ * round can become visible before it; it turns even again with an ordered store
+ * after the round's last write. Snapshots copy into a caller-owned Snapshot and
+ * allocate nothing. Turning them into text is left to StatsFormatter.
+ */
+public class GameStatistics {
+	/**
+	 * Rolling window length used when none is given
+	 */
+	public static final int DEFAULT_WINDOW = 100;
+
+	private static final int OPTIONS = 5;//number of possible gestures that one can throw
+	private static final AtomicLongFieldUpdater<GameStatistics> SEQUENCE =
+		AtomicLongFieldUpdater.newUpdater(GameStatistics.class, "sequence");
+	private volatile long sequence;//odd while a round is being recorded
+
+	private long rounds;
+	private long tieGames;
+	private long playerWins;
+	private long compWins;
+	private final long[] playerThrows;
+	private final long[] playerGestureWins;
+	private final long[] compThrows;
+	private final long[] compGestureWins;
+	private byte streakOutcome;//outcome of the current streak
+	private long streakLength;//rounds in the current streak
+	private long longestPlayerStreak;
+	private long longestCompStreak;
+	private final byte[] window;//ring buffer of the last outcomes
+	private int windowNext;//where the next outcome goes
+	private int windowFill;//outcomes held, up to window.length
+	private final int[] windowCounts;//outcomes in the window, by outcome code
+
+	/**
+	 * Constructs statistics with the default rolling window.
+	 */
+	public GameStatistics(){
+		this(DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Constructs statistics with a rolling window of the given number of rounds.
+	 * @param windowSize - the number of recent rounds that rolling rates cover
+	 */
+	public GameStatistics(int windowSize){
+		if (windowSize < 1){
+			throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+		}
+		playerThrows = new long[OPTIONS];
+		playerGestureWins = new long[OPTIONS];
+		compThrows = new long[OPTIONS];
+		compGestureWins = new long[OPTIONS];
+		window = new byte[windowSize];
+		windowCounts = new int[3];
+		streakOutcome = GameRules.TIE;
+		streakLength = 0;
+	}
+
+	/**
+	 * record
+	 * <p>
+	 * Adds a finished round. Only the game thread may call this.
+	 * @param playerGesture - the gesture that the player threw
+	 * @param compGesture - the gesture that the computer threw
+	 * @param outcome - the GameRules outcome code of the round
+	 */
+	public void record(GameGesture playerGesture, GameGesture compGesture, byte outcome){
+		long next = SEQUENCE.incrementAndGet(this);//Odd: a round is being recorded
+
+		rounds++;
+		if (outcome == GameRules.TIE){
+			tieGames++;
+		}
+		else if (outcome == GameRules.PLAYER_WIN){
+			playerWins++;
+		}
+		else {
+			compWins++;
+		}
+
+		//Per gesture counts
+		int player = playerGesture.ordinal();
+		int comp = compGesture.ordinal();
+		if (player < OPTIONS){
+			playerThrows[player]++;
+			if (outcome == GameRules.PLAYER_WIN){
+				playerGestureWins[player]++;
+			}
+		}
+		if (comp < OPTIONS){
+			compThrows[comp]++;
+			if (outcome == GameRules.COMP_WIN){
+				compGestureWins[comp]++;
+			}
+		}
+
+		//Streaks
+		if (outcome == streakOutcome && streakLength > 0){
+			streakLength++;
+		}
+		else {
+			streakOutcome = outcome;
+			streakLength = 1;
+		}
+		if (outcome == GameRules.PLAYER_WIN && streakLength > longestPlayerStreak){
+			longestPlayerStreak = streakLength;
+		}
+		else if (outcome == GameRules.COMP_WIN && streakLength > longestCompStreak){
+			longestCompStreak = streakLength;
+		}
+
+		//Rolling window
+		if (windowFill == window.length){
+			windowCounts[window[windowNext]]--;
+		}
+		else {
+			windowFill++;
+		}
+		window[windowNext] = outcome;
+		windowCounts[outcome]++;
+		windowNext++;
+		if (windowNext == window.length){
+			windowNext = 0;
+		}
+
+		SEQUENCE.lazySet(this, next + 1);//Even: the round is complete
+	}
+
+	/**
+	 * restoreTotals
+	 * <p>
+	 * Carries over the totals of earlier sessions, for example from a saved player
+	 * profile. Per-gesture counts, streaks and the rolling window start afresh,
+	 * unless readDetails restores them afterwards. Only the game thread may call this.
+	 * @param rounds - rounds played before
+	 * @param tieGames - rounds tied before
+	 * @param playerWins - rounds the player won before
+	 * @param compWins - rounds the computer won before
+	 */
+	public void restoreTotals(long rounds, long tieGames, long playerWins, long compWins){
+		long next = SEQUENCE.incrementAndGet(this);
+		this.rounds = rounds;
+		this.tieGames = tieGames;
+		this.playerWins = playerWins;
+		this.compWins = compWins;
+		SEQUENCE.lazySet(this, next + 1);
+	}
+
+	/**
+	 * writeDetails
+	 * <p>
+	 * Writes everything that restoreTotals does not carry over: the per-gesture
+	 * counts as ints, the current streak's outcome byte and length and the longest
+	 * streaks as ints, and the rolling window as its length, the number of outcomes
+	 * held, and those outcomes oldest first, four 2 bit codes to a byte. Takes at
+	 * most detailsSize bytes. Only the game thread may call this.
+	 * @param out - the buffer to write to
+	 */
+	public void writeDetails(ByteBuffer out){
+		for (int i = 0; i < OPTIONS; i++){
+			out.putInt((int) playerThrows[i]);
+			out.putInt((int) playerGestureWins[i]);
+			out.putInt((int) compThrows[i]);
+			out.putInt((int) compGestureWins[i]);
+		}
+		out.put(streakOutcome);
+		out.putInt((int) streakLength);
+		out.putInt((int) longestPlayerStreak);
+		out.putInt((int) longestCompStreak);
+		out.putInt(window.length);
+		out.putInt(windowFill);
+		int oldest = windowFill == window.length ? windowNext : 0;
+		int packed = 0;
+		for (int i = 0; i < windowFill; i++){
+			int at = oldest + i;
+			if (at >= window.length){
+				at -= window.length;
+			}
+			packed |= window[at] << (2 * (i & 3));
+			if ((i & 3) == 3 || i == windowFill - 1){
+				out.put((byte) packed);
+				packed = 0;
+			}
+		}
+	}
+
+	/**
+	 * readDetails
+	 * <p>
+	 * Replaces everything that restoreTotals does not carry over with details written
+	 * by writeDetails, checking them against the totals, so call restoreTotals first.
+	 * Details that cannot be read leave the statistics as they were. Only the game
+	 * thread may call this.
+	 * @param in - the buffer to read from
+	 * @throws IOException if the details are truncated, do not fit the totals, or
+	 * are for a rolling window of another length
+	 */
+	public void readDetails(ByteBuffer in) throws IOException {
+		long[] readPlayerThrows = new long[OPTIONS];
+		long[] readPlayerWins = new long[OPTIONS];
+		long[] readCompThrows = new long[OPTIONS];
+		long[] readCompWins = new long[OPTIONS];
+		byte[] outcomes;
+		byte readStreakOutcome;
+		long readStreakLength;
+		long readLongestPlayer;
+		long readLongestComp;
+		try {
+			long playerTotal = 0;
+			long compTotal = 0;
+			for (int i = 0; i < OPTIONS; i++){
+				readPlayerThrows[i] = readCount(in);
+				readPlayerWins[i] = readCount(in);
+				readCompThrows[i] = readCount(in);
+				readCompWins[i] = readCount(in);
+				if (readPlayerWins[i] > readPlayerThrows[i] || readCompWins[i] > readCompThrows[i]){
+					throw new IOException("Corrupt statistics: more wins than throws");
+				}
+				playerTotal += readPlayerThrows[i];
+				compTotal += readCompThrows[i];
+			}
+			readStreakOutcome = in.get();
+			readStreakLength = readCount(in);
+			readLongestPlayer = readCount(in);
+			readLongestComp = readCount(in);
+			if (playerTotal > rounds || compTotal > rounds || readStreakOutcome < GameRules.TIE
+					|| readStreakOutcome > GameRules.COMP_WIN || readStreakLength > rounds
+					|| readLongestPlayer > rounds || readLongestComp > rounds){
+				throw new IOException("Corrupt statistics: counts do not fit " + rounds + " rounds");
+			}
+			int length = in.getInt();
+			if (length != window.length){
+				throw new IOException("Statistics of a " + length + " round window, expected " + window.length);
+			}
+			int fill = in.getInt();
+			if (fill < 0 || fill > length || fill > rounds){
+				throw new IOException("Corrupt statistics: " + fill + " rounds in the window");
+			}
+			outcomes = new byte[fill];
+			int packed = 0;
+			for (int i = 0; i < fill; i++){
+				if ((i & 3) == 0){
+					packed = in.get();
+				}
+				outcomes[i] = (byte) ((packed >> (2 * (i & 3))) & 3);
+				if (outcomes[i] > GameRules.COMP_WIN){
+					throw new IOException("Corrupt statistics: bad outcome in the window");
+				}
+			}
+		}
+		catch (BufferUnderflowException e){
+			throw new IOException("Truncated statistics", e);
+		}
+
+		long next = SEQUENCE.incrementAndGet(this);
+		System.arraycopy(readPlayerThrows, 0, playerThrows, 0, OPTIONS);
+		System.arraycopy(readPlayerWins, 0, playerGestureWins, 0, OPTIONS);
+		System.arraycopy(readCompThrows, 0, compThrows, 0, OPTIONS);
+		System.arraycopy(readCompWins, 0, compGestureWins, 0, OPTIONS);
+		streakOutcome = readStreakOutcome;
+		streakLength = readStreakLength;
+		longestPlayerStreak = readLongestPlayer;
+		longestCompStreak = readLongestComp;
+		windowCounts[GameRules.TIE] = 0;
+		windowCounts[GameRules.PLAYER_WIN] = 0;
+		windowCounts[GameRules.COMP_WIN] = 0;
+		for (int i = 0; i < outcomes.length; i++){
+			window[i] = outcomes[i];
+			windowCounts[outcomes[i]]++;
+		}
+		windowFill = outcomes.length;
+		windowNext = outcomes.length == window.length ? 0 : outcomes.length;
+		SEQUENCE.lazySet(this, next + 1);
+	}
+
+	/**
+	 * detailsSize
+	 * <p>
+	 * Gives the most bytes that writeDetails takes for a rolling window of the given
+	 * length.
+	 * @param windowSize - the rolling window length
+	 */
+	public static int detailsSize(int windowSize){
+		return OPTIONS * 16 + 1 + 12 + 8 + (windowSize + 3) / 4;
+	}
+
+	private static long readCount(ByteBuffer in) throws IOException {
+		int count = in.getInt();
+		if (count < 0){
+			throw new IOException("Corrupt statistics: negative count " + count);
+		}
+		return count;
+	}
+
+	/**
+	 * snapshot
+	 * <p>
+	 * Copies the current statistics into a caller-owned snapshot. Safe to call from
+	 * any thread while rounds are being recorded, and allocates nothing.
+	 * @param into - the snapshot to fill in
+	 * <p>
+	 * @return into, for chaining
+	 */
+	public Snapshot snapshot(Snapshot into){
+		while (true){
+			long before = sequence;
+			if ((before & 1) != 0){//A round is being recorded
+				Thread.yield();
+				continue;
+			}
+			into.rounds = rounds;
+			into.tieGames = tieGames;
+			into.playerWins = playerWins;
+			into.compWins = compWins;
+			System.arraycopy(playerThrows, 0, into.playerThrows, 0, OPTIONS);
+			System.arraycopy(playerGestureWins, 0, into.playerGestureWins, 0, OPTIONS);
+			System.arraycopy(compThrows, 0, into.compThrows, 0, OPTIONS);
+			System.arraycopy(compGestureWins, 0, into.compGestureWins, 0, OPTIONS);
+			into.streakOutcome = streakOutcome;
+			into.streakLength = streakLength;
+			into.longestPlayerStreak = longestPlayerStreak;
+			into.longestCompStreak = longestCompStreak;
+			into.windowRounds = windowFill;
+			into.windowTies = windowCounts[GameRules.TIE];
+			into.windowPlayerWins = windowCounts[GameRules.PLAYER_WIN];
+			into.windowCompWins = windowCounts[GameRules.COMP_WIN];
+			into.fence = before;//Keeps the copies above from moving past the check below
+			if (sequence == before){
+				return into;
+			}
+		}
+	}
+
+	/**
+	 * getWindowSize
+	 * <p>
+	 * Gives the number of recent rounds that rolling rates cover.
+	 * @return the rolling window length
+	 */
+	public int getWindowSize(){
+		return window.length;
+	}
+
+	/**
+	 * <b>Snapshot class</b>
+	 * <p>
+	 * A reusable copy of the statistics at one moment. Rates are computed on demand
+	 * and are 0 rather than undefined while their denominator is 0.
+	 */
+	public static class Snapshot {
+		private long rounds;
+		private long tieGames;
+		private long playerWins;
+		private long compWins;
+		private final long[] playerThrows = new long[OPTIONS];
+		private final long[] playerGestureWins = new long[OPTIONS];
+		private final long[] compThrows = new long[OPTIONS];
+		private final long[] compGestureWins = new long[OPTIONS];
+		private byte streakOutcome;
+		private long streakLength;
+		private long longestPlayerStreak;
+		private long longestCompStreak;
+		private int windowRounds;
+		private int windowTies;
+		private int windowPlayerWins;
+		private int windowCompWins;
+		private volatile long fence;
+
+		public long getRounds(){
+			return rounds;
+		}
+
+		public long getTieGames(){
+			return tieGames;
+		}
+
+		public long getPlayerWins(){
+			return playerWins;
+		}
+
+		public long getCompWins(){
+			return compWins;
+		}
+
+		/**
+		 * getPlayerShareOfWins
+		 * <p>
+		 * Gives the player's share of all rounds that somebody won, in percent.
+		 */
+		public double getPlayerShareOfWins(){
+			return percent(playerWins, playerWins + compWins);
+		}
+
+		/**
+		 * getTieRate
+		 * <p>
+		 * Gives the share of all rounds that were tied, in percent.
+		 */
+		public double getTieRate(){
+			return percent(tieGames, rounds);
+		}
+
+		/**
+		 * getPlayerThrows
+		 * <p>
+		 * Gives how often the player threw a gesture.
+		 * @param gesture - a real gesture
+		 */
+		public long getPlayerThrows(GameGesture gesture){
+			return playerThrows[gesture.ordinal()];
+		}
+
+		/**
+		 * getCompThrows
+		 * <p>
+		 * Gives how often the computer threw a gesture.
+		 * @param gesture - a real gesture
+		 */
+		public long getCompThrows(GameGesture gesture){
+			return compThrows[gesture.ordinal()];
+		}
+
+		/**
+		 * getPlayerWinRate
+		 * <p>
+		 * Gives the share of the player's throws of a gesture that won, in percent.
+		 * @param gesture - a real gesture
+		 */
+		public double getPlayerWinRate(GameGesture gesture){
+			return percent(playerGestureWins[gesture.ordinal()], playerThrows[gesture.ordinal()]);
+		}
+
+		/**
+		 * getCompWinRate
+		 * <p>
+		 * Gives the share of the computer's throws of a gesture that won, in percent.
+		 * @param gesture - a real gesture
+		 */
+		public double getCompWinRate(GameGesture gesture){
+			return percent(compGestureWins[gesture.ordinal()], compThrows[gesture.ordinal()]);
+		}
+
+		/**
+		 * getStreakOutcome
+		 * <p>
+		 * Gives the outcome that the current streak consists of.
+		 * @return a GameRules outcome code; meaningless while no rounds were played
+		 */
+		public byte getStreakOutcome(){
+			return streakOutcome;
+		}
+
+		public long getStreakLength(){
+			return streakLength;
+		}
+
+		public long getLongestPlayerStreak(){
+			return longestPlayerStreak;
+		}
+
+		public long getLongestCompStreak(){
+			return longestCompStreak;
+		}
+
+		/**
+		 * getWindowRounds
+		 * <p>
+		 * Gives the number of rounds in the rolling window, which is less than the
+		 * window length early in a game.
+		 */
+		public int getWindowRounds(){
+			return windowRounds;
+		}
+
+		public double getWindowPlayerWinRate(){
+			return percent(windowPlayerWins, windowRounds);
+		}
+
+		public double getWindowCompWinRate(){
+			return percent(windowCompWins, windowRounds);
+		}
+
+		public double getWindowTieRate(){
+			return percent(windowTies, windowRounds);
+		}
+
+		private static double percent(long part, long whole){
+			if (whole == 0){
+				return 0;
+			}
+			return 100.0 * part / whole;
+		}
+	}
+
+}//End of GameStatistics class
@@ -0,0 +1,32 @@
+/**
+ * <b>GameStrategy interface</b>
+ * <p>
+ * A way for the computer to play SPRLK. GameHandler asks its strategy for the
+ * computer's gesture at the start of every round and tells it how the round went
+ * afterwards.
+ * <p>
+ * GameAI, the frequency based AI, is the default strategy. Implementations are not
+ * expected to be thread-safe; each GameHandler owns its own strategy.
+ */
+public interface GameStrategy {
+
+	/**
+	 * chooseGesture
+	 * <p>
+	 * Decides what gesture the computer is going to throw this round.
+	 * @param gamesPlayed - the number of games played so far
+	 * <p>
+	 * @return the gesture that the computer has selected
+	 */
+	GameGesture chooseGesture(int gamesPlayed);
+
+	/**
+	 * inputRound
+	 * <p>
+	 * Tells the strategy what was thrown in the round that just finished.
+	 * @param playerGesture - the gesture that the player threw
+	 * @param compGesture - the gesture that the computer threw
+	 */
+	void inputRound(GameGesture playerGesture, GameGesture compGesture);
+
+}//End of GameStrategy interface
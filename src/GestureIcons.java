@@ -0,0 +1,148 @@
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.io.File;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.swing.ImageIcon;
+
+/**
+ * <b>GestureIcons class</b>
+ * <p>
+ * Process-wide cache of the gesture images (scissor.jpg, paper.jpg, rock.jpg,
+ * lizard.jpg and spock.jpg).
+ * <p>
+ * The images are decoded once, the first time any icon is asked for, and the same
+ * ImageIcon instances are handed out from then on, so showing a round no longer
+ * reads and decodes JPEG files. Images are loaded from the classpath, so the game
+ * does not depend on the directory it is started from; a file in the working
+ * directory is only used if the classpath copy is missing.
+ * <p>
+ * Icons can also be asked for at a given size, in which case a scaled copy is made
+ * once per size and shared too. The shared icons must not be modified.
+ */
+public class GestureIcons {
+	private static final String[] FILES = {"scissor.jpg", "paper.jpg", "rock.jpg",
+		"lizard.jpg", "spock.jpg"};
+	private static final int BASE_DPI = 96;//screen resolution the images were drawn for
+	private static final ImageIcon NO_GESTURE = new ImageIcon();
+	private static final ConcurrentHashMap<Integer, ImageIcon[]> SCALED =
+			new ConcurrentHashMap<Integer, ImageIcon[]>();
+
+	private GestureIcons(){
+	}
+
+	/**
+	 * <b>Loaded class</b>
+	 * <p>
+	 * Holds the decoded images. Loaded by the JVM the first time an icon is needed.
+	 */
+	private static class Loaded {
+		static final ImageIcon[] ICONS = loadAll();
+	}
+
+	/**
+	 * getIcon
+	 * <p>
+	 * Gives the shared full size icon of a gesture.
+	 * @param gesture - the gesture to show
+	 * <p>
+	 * @return the gesture's icon, or an empty icon for NONE or a missing image
+	 */
+	public static ImageIcon getIcon(GameGesture gesture){
+		if (gesture == null || gesture == GameGesture.NONE){
+			return NO_GESTURE;
+		}
+		return Loaded.ICONS[gesture.ordinal()];
+	}
+
+	/**
+	 * getIcon
+	 * <p>
+	 * Gives the shared icon of a gesture scaled to fit a square of the given size.
+	 * The scaled copies for a size are all made the first time that size is asked for.
+	 * @param gesture - the gesture to show
+	 * @param size - the width and height to fit in, in pixels
+	 * <p>
+	 * @return the gesture's scaled icon, or an empty icon for NONE
+	 */
+	public static ImageIcon getIcon(GameGesture gesture, int size){
+		if (gesture == null || gesture == GameGesture.NONE){
+			return NO_GESTURE;
+		}
+		ImageIcon[] icons = SCALED.get(size);
+		if (icons == null){
+			icons = scaleAll(size);
+			ImageIcon[] raced = SCALED.putIfAbsent(size, icons);
+			if (raced != null){
+				icons = raced;
+			}
+		}
+		return icons[gesture.ordinal()];
+	}
+
+	/**
+	 * screenSize
+	 * <p>
+	 * Converts a size meant for a standard 96 DPI screen into pixels on this screen.
+	 * @param size - the size at 96 DPI
+	 * <p>
+	 * @return the size in pixels for the current screen resolution
+	 */
+	public static int screenSize(int size){
+		int dpi = BASE_DPI;
+		try {
+			dpi = Toolkit.getDefaultToolkit().getScreenResolution();
+		}
+		catch (RuntimeException headless){
+			//No screen, keeps the base resolution
+		}
+		return Math.max(1, size * dpi / BASE_DPI);
+	}
+
+	/**
+	 * preload
+	 * <p>
+	 * Decodes all images now rather than on first use, for example while the GUI is
+	 * being built.
+	 */
+	public static void preload(){
+		getIcon(GameGesture.SCISSORS);
+	}
+
+	private static ImageIcon[] loadAll(){
+		ImageIcon[] icons = new ImageIcon[FILES.length];
+		for (int i = 0; i < FILES.length; i++){
+			URL resource = GestureIcons.class.getResource("/" + FILES[i]);
+			if (resource != null){
+				icons[i] = new ImageIcon(resource);
+			}
+			else if (new File(FILES[i]).exists()){
+				icons[i] = new ImageIcon(FILES[i]);
+			}
+			else {
+				icons[i] = NO_GESTURE;
+			}
+		}
+		return icons;
+	}
+
+	private static ImageIcon[] scaleAll(int size){
+		ImageIcon[] icons = new ImageIcon[FILES.length];
+		for (int i = 0; i < FILES.length; i++){
+			ImageIcon original = Loaded.ICONS[i];
+			int width = original.getIconWidth();
+			int height = original.getIconHeight();
+			if (width <= 0 || height <= 0){
+				icons[i] = original;
+				continue;
+			}
+			double scale = Math.min((double) size / width, (double) size / height);
+			int scaledWidth = Math.max(1, (int) Math.round(width * scale));
+			int scaledHeight = Math.max(1, (int) Math.round(height * scale));
+			icons[i] = new ImageIcon(original.getImage().getScaledInstance(scaledWidth,
+					scaledHeight, Image.SCALE_SMOOTH));
+		}
+		return icons;
+	}
+
+}//End of GestureIcons class
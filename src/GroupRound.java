@@ -0,0 +1,284 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <b>GroupRound class</b>
+ * <p>
+ * One round in which many players throw at once and every player is scored against
+ * every other: a win for each player whose gesture theirs beats, a loss for each
+ * player whose gesture beats theirs, and a tie for each player who threw the same.
+ * <p>
+ * Comparing every pair of players would take time proportional to the square of the
+ * number of players. Instead the throws are bucketed into a histogram by gesture,
+ * and each bucket is scored against the win table once: every player who threw the
+ * same gesture gets the same result. Resolving a round of N players with G gestures
+ * therefore takes O(N + G^2) time, a single pass over the throws.
+ * <p>
+ * Throws may be submitted from any number of threads at once. Each player has their
+ * own slot, and a throw is a single compare-and-set on that slot, so submitting
+ * threads never wait for each other and a player cannot throw twice. Resolving
+ * closes every empty slot with the same compare-and-set, so a throw either lands
+ * before the round is resolved and counts, or is refused.
+ * <p>
+ * Usage: java GroupRound [players] [threads] [seed]
+ */
+public class GroupRound {
+	private static final int EMPTY = 0;//slot of a player who has not thrown
+	private static final int CLOSED = -1;//slot of a player who did not throw in time
+
+	private final RuleSet rules;
+	private final int OPTIONS;//number of possible gestures that one can throw
+	private final AtomicIntegerArray slots;//gesture number plus one, by player
+	private volatile Result result;
+
+	/**
+	 * Constructs an open round.
+	 * @param rules - the rules of the game
+	 * @param players - the number of players, numbered from 0
+	 */
+	public GroupRound(RuleSet rules, int players){
+		if (players < 1){
+			throw new IllegalArgumentException("A round needs at least one player: " + players);
+		}
+		this.rules = rules;
+		OPTIONS = rules.getSize();
+		slots = new AtomicIntegerArray(players);
+	}
+
+	/**
+	 * submit
+	 * <p>
+	 * Throws a player's gesture. Safe to call from any thread.
+	 * @param player - the player's number
+	 * @param gesture - the number of the gesture in the round's rules
+	 * <p>
+	 * @return true if the throw counts, false if the player already threw or the
+	 * round was resolved
+	 */
+	public boolean submit(int player, int gesture){
+		if (gesture < 0 || gesture >= OPTIONS){
+			throw new IllegalArgumentException("No gesture " + gesture + " in " + rules.getName());
+		}
+		return slots.compareAndSet(player, EMPTY, gesture + 1);
+	}
+
+	/**
+	 * getPlayers
+	 * <p>
+	 * Gives the number of players in the round.
+	 */
+	public int getPlayers(){
+		return slots.length();
+	}
+
+	/**
+	 * resolve
+	 * <p>
+	 * Ends the round: refuses any later throws and scores every player who threw.
+	 * Resolving again gives the same result.
+	 * @return the round's result
+	 */
+	public synchronized Result resolve(){
+		if (result != null){
+			return result;
+		}
+		int players = slots.length();
+		short[] gestures = new short[players];
+		long[] histogram = new long[OPTIONS];
+		for (int player = 0; player < players; player++){
+			int slot = slots.get(player);
+			if (slot == EMPTY && slots.compareAndSet(player, EMPTY, CLOSED)){
+				slot = CLOSED;
+			}
+			else if (slot == EMPTY){//A throw landed after the read
+				slot = slots.get(player);
+			}
+			if (slot > 0){
+				histogram[slot - 1]++;
+			}
+			gestures[player] = (short) (slot > 0 ? slot - 1 : CLOSED);
+		}
+		result = new Result(gestures, histogram);
+		return result;
+	}
+
+	/**
+	 * <b>Result class</b>
+	 * <p>
+	 * The outcome of a resolved round: how many players threw each gesture, and each
+	 * player's wins, losses and ties against the others.
+	 */
+	public class Result {
+		private final short[] gestures;//gesture by player, or -1 for no throw
+		private final long[] histogram;
+		private final long[] wins;//wins of one player with each gesture
+		private final long[] losses;
+		private final long[] ties;
+
+		private Result(short[] gestures, long[] histogram){
+			this.gestures = gestures;
+			this.histogram = histogram;
+			wins = new long[OPTIONS];
+			losses = new long[OPTIONS];
+			ties = new long[OPTIONS];
+			for (int gesture = 0; gesture < OPTIONS; gesture++){
+				if (histogram[gesture] == 0){
+					continue;
+				}
+				for (int other = 0; other < OPTIONS; other++){
+					if (other == gesture){
+						ties[gesture] = histogram[gesture] - 1;//not against oneself
+					}
+					else if (rules.beats(gesture, other)){
+						wins[gesture] += histogram[other];
+					}
+					else {
+						losses[gesture] += histogram[other];
+					}
+				}
+			}
+		}
+
+		/**
+		 * getThrowCount
+		 * <p>
+		 * Gives the number of players who threw a gesture.
+		 * @param gesture - the gesture number
+		 */
+		public long getThrowCount(int gesture){
+			return histogram[gesture];
+		}
+
+		/**
+		 * getThrowTotal
+		 * <p>
+		 * Gives the number of players who threw at all.
+		 */
+		public long getThrowTotal(){
+			long total = 0;
+			for (long count : histogram){
+				total += count;
+			}
+			return total;
+		}
+
+		/**
+		 * getGesture
+		 * <p>
+		 * Gives a player's throw.
+		 * @param player - the player's number
+		 * <p>
+		 * @return the gesture number, or -1 if the player did not throw
+		 */
+		public int getGesture(int player){
+			return gestures[player];
+		}
+
+		/**
+		 * getWins
+		 * <p>
+		 * Gives the number of other players that a player beat.
+		 * @param player - the player's number
+		 * <p>
+		 * @return the wins, 0 if the player did not throw
+		 */
+		public long getWins(int player){
+			int gesture = gestures[player];
+			return gesture < 0 ? 0 : wins[gesture];
+		}
+
+		/**
+		 * getLosses
+		 * <p>
+		 * Gives the number of other players that beat a player.
+		 * @param player - the player's number
+		 * <p>
+		 * @return the losses, 0 if the player did not throw
+		 */
+		public long getLosses(int player){
+			int gesture = gestures[player];
+			return gesture < 0 ? 0 : losses[gesture];
+		}
+
+		/**
+		 * getTies
+		 * <p>
+		 * Gives the number of other players who threw the same gesture as a player.
+		 * @param player - the player's number
+		 * <p>
+		 * @return the ties, 0 if the player did not throw
+		 */
+		public long getTies(int player){
+			int gesture = gestures[player];
+			return gesture < 0 ? 0 : ties[gesture];
+		}
+
+		/**
+		 * getNetWins
+		 * <p>
+		 * Gives the wins minus the losses of a player who threw a gesture, the same for
+		 * everyone who threw it.
+		 * @param gesture - the gesture number
+		 */
+		public long getNetWins(int gesture){
+			return wins[gesture] - losses[gesture];
+		}
+
+		/**
+		 * getBestGesture
+		 * <p>
+		 * Gives the thrown gesture with the most net wins, whose players did best.
+		 * @return the gesture number, or -1 if nobody threw
+		 */
+		public int getBestGesture(){
+			int best = -1;
+			for (int gesture = 0; gesture < OPTIONS; gesture++){
+				if (histogram[gesture] > 0 && (best < 0 || getNetWins(gesture) > getNetWins(best))){
+					best = gesture;
+				}
+			}
+			return best;
+		}
+	}
+
+	/**
+	 * main
+	 * <p>
+	 * Plays one SPRLK round of random throws submitted from several threads, then
+	 * prints the histogram and how long ingestion and resolution took.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		final int players = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		final int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		final long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+		final GroupRound round = new GroupRound(RuleSet.SPRLK, players);
+		final CountDownLatch done = new CountDownLatch(threads);
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++){
+			final int first = (int) ((long) players * t / threads);
+			final int last = (int) ((long) players * (t + 1) / threads);
+			final GameRandom random = GameRandom.forStream(seed, t);
+			new Thread(new Runnable(){
+				public void run(){
+					for (int player = first; player < last; player++){
+						round.submit(player, random.nextInt(RuleSet.SPRLK.getSize()));
+					}
+					done.countDown();
+				}
+			}, "GroupRound-" + t).start();
+		}
+		done.await();
+		long ingested = System.nanoTime();
+		Result result = round.resolve();
+		long resolved = System.nanoTime();
+		System.out.println("Players: " + players + ", threads: " + threads + ", seed: " + seed);
+		for (int gesture = 0; gesture < RuleSet.SPRLK.getSize(); gesture++){
+			System.out.println(String.format("%-9s %8d throws, %+d net wins each",
+					RuleSet.SPRLK.getGestureName(gesture), result.getThrowCount(gesture), result.getNetWins(gesture)));
+		}
+		System.out.println("Best gesture: " + RuleSet.SPRLK.getGestureName(result.getBestGesture()));
+		System.out.println(String.format("Ingested in %.2f ms, resolved in %.2f ms",
+				(ingested - start) / 1e6, (resolved - ingested) / 1e6));
+	}
+
+}//End of GroupRound class
@@ -0,0 +1,140 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <b>LatencyHistogram class</b>
+ * <p>
+ * A histogram of durations in nanoseconds that any number of threads may record
+ * into at once, without locks and without allocating.
+ * <p>
+ * Durations are counted in power of two buckets: bucket i holds the durations d
+ * with 2^(i-1) &lt;= d &lt; 2^i, and bucket 0 holds durations of 0. Recording is a
+ * leading zero count and two atomic additions. Percentiles are reported as the
+ * upper bound of the bucket they fall in, so they are accurate to within a factor
+ * of two, which is plenty to see whether a decision takes 50ns or 50us.
+ */
+public class LatencyHistogram {
+	private static final int BUCKETS = 64;
+	private final AtomicLongArray counts;
+	private final AtomicLong totalNanos;
+
+	/**
+	 * Constructs an empty histogram.
+	 */
+	public LatencyHistogram(){
+		counts = new AtomicLongArray(BUCKETS);
+		totalNanos = new AtomicLong();
+	}
+
+	/**
+	 * record
+	 * <p>
+	 * Counts one duration. Negative durations, which a misbehaving clock can
+	 * produce, are counted as 0.
+	 * @param nanos - the duration in nanoseconds
+	 */
+	public void record(long nanos){
+		if (nanos < 0){
+			nanos = 0;
+		}
+		counts.getAndIncrement(BUCKETS - Long.numberOfLeadingZeros(nanos));
+		totalNanos.getAndAdd(nanos);
+	}
+
+	/**
+	 * getCount
+	 * <p>
+	 * Gives the number of durations recorded.
+	 * @return count - the number of durations
+	 */
+	public long getCount(){
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++){
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * getMean
+	 * <p>
+	 * Gives the exact mean of the durations recorded.
+	 * @return the mean in nanoseconds, or 0 if nothing was recorded
+	 */
+	public double getMean(){
+		long count = getCount();
+		if (count == 0){
+			return 0;
+		}
+		return (double) totalNanos.get() / count;
+	}
+
+	/**
+	 * getPercentile
+	 * <p>
+	 * Gives an upper bound of the given percentile of the durations recorded.
+	 * @param percentile - the percentile wanted, from 0 to 100
+	 * <p>
+	 * @return the upper bound of the bucket holding the percentile in nanoseconds,
+	 * or 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile){
+		long[] copy = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++){
+			copy[i] = counts.get(i);
+			count += copy[i];
+		}
+		if (count == 0){
+			return 0;
+		}
+		long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++){
+			seen += copy[i];
+			if (seen >= rank && seen > 0){
+				return upperBound(i);
+			}
+		}
+		return upperBound(BUCKETS - 1);
+	}
+
+	/**
+	 * getBucketCounts
+	 * <p>
+	 * Copies the bucket counts, where bucket i counts durations below 2^i ns and at
+	 * or above 2^(i-1) ns.
+	 * @param into - an array of at least 64 elements to fill in
+	 * <p>
+	 * @return into, for chaining
+	 */
+	public long[] getBucketCounts(long[] into){
+		for (int i = 0; i < BUCKETS; i++){
+			into[i] = counts.get(i);
+		}
+		return into;
+	}
+
+	/**
+	 * reset
+	 * <p>
+	 * Forgets every duration. Only exact while no other thread is recording.
+	 */
+	public void reset(){
+		for (int i = 0; i < BUCKETS; i++){
+			counts.set(i, 0);
+		}
+		totalNanos.set(0);
+	}
+
+	private static long upperBound(int bucket){
+		if (bucket == 0){
+			return 0;
+		}
+		if (bucket == BUCKETS - 1){
+			return Long.MAX_VALUE;
+		}
+		return (1L << bucket) - 1;
+	}
+
+}//End of LatencyHistogram class
@@ -0,0 +1,396 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <b>League class</b>
+ * <p>
+ * Ranks computer strategies by playing them against each other. Every pair of
+ * entrants plays M matches of R rounds, and the results are turned into a table of
+ * scores and Elo ratings with 95% confidence intervals.
+ * <p>
+ * Every match is an independent task identified by its number, so the whole league
+ * is one range of match numbers that a fork/join pool splits in halves down to
+ * leaves of about LEAF_ROUNDS rounds. Idle workers steal the unplayed halves of busy
+ * ones, which balances matches of very different cost (an EnsembleAI is many times
+ * slower than a GameAI) without any tuning. Each match writes its result to its own
+ * array element, so workers never share counters, and both sides of match n get
+ * random streams 2n and 2n+1 of the league seed, so a league can be replayed
+ * exactly on any number of cores.
+ * <p>
+ * A match score is the share of its rounds an entrant won, counting ties as half.
+ * An entrant's score is the mean of its match scores, with a normal confidence
+ * interval over those matches. Because every entrant meets the same field, the
+ * score converts directly into a performance rating against the field's average:
+ * Elo = 1500 + 400 log10(score / (1 - score)); the interval ends are converted the
+ * same way.
+ * <p>
+ * Usage: java League [matches] [rounds] [seed] [threads]
+ */
+public class League {
+	private static final double Z_95 = 1.96;//two sided 95% normal quantile
+	private static final long LEAF_ROUNDS = 1 << 20;//rounds played by one leaf task
+	private static final double BASE_ELO = 1500;
+	private static final double MAX_SCORE = 0.999;//keeps ratings of unbeaten entrants finite
+
+	private final List<Entrant> entrants;
+	private final int matches;
+	private final int rounds;
+	private final long seed;
+	private final ForkJoinPool pool;
+	private final int[] pairFirst;//first entrant of each pair
+	private final int[] pairSecond;//second entrant of each pair
+	private final double[] matchScores;//score of the first entrant, by match number
+	private final long[] matchTies;//rounds tied, by match number
+
+	/**
+	 * <b>Entrant class</b>
+	 * <p>
+	 * A named strategy taking part in a league.
+	 */
+	public static class Entrant {
+		private final String name;
+		private final StrategyFactory factory;
+
+		/**
+		 * Constructs an entrant.
+		 * @param name - the name shown in the standings
+		 * @param factory - creates the entrant's strategy for each match
+		 */
+		public Entrant(String name, StrategyFactory factory){
+			this.name = name;
+			this.factory = factory;
+		}
+
+		public String getName(){
+			return name;
+		}
+
+		public StrategyFactory getFactory(){
+			return factory;
+		}
+	}
+
+	/**
+	 * Constructs a league.
+	 * @param entrants - the strategies taking part, at least two
+	 * @param matches - the number of matches each pair plays
+	 * @param rounds - the number of rounds in a match
+	 * @param seed - the master seed that every match's random sources derive from
+	 * @param pool - the fork/join pool to play matches on
+	 */
+	public League(List<Entrant> entrants, int matches, int rounds, long seed, ForkJoinPool pool){
+		if (entrants.size() < 2 || matches < 1 || rounds < 1){
+			throw new IllegalArgumentException("A league needs 2 entrants and at least one round");
+		}
+		this.entrants = new ArrayList<Entrant>(entrants);
+		this.matches = matches;
+		this.rounds = rounds;
+		this.seed = seed;
+		this.pool = pool;
+		int size = entrants.size();
+		int pairs = size * (size - 1) / 2;
+		long total = (long) pairs * matches;
+		if (total > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("Too many matches: " + total);
+		}
+		pairFirst = new int[pairs];
+		pairSecond = new int[pairs];
+		int pair = 0;
+		for (int first = 0; first < size; first++){
+			for (int second = first + 1; second < size; second++){
+				pairFirst[pair] = first;
+				pairSecond[pair] = second;
+				pair++;
+			}
+		}
+		matchScores = new double[(int) total];
+		matchTies = new long[(int) total];
+	}
+
+	/**
+	 * standardEntrants
+	 * <p>
+	 * Lists every strategy in the project, with their variants: GameAI with each
+	 * tie-breaking policy, MarkovAI of every order, EnsembleAI, and the scripted
+	 * players as baselines.
+	 * @return the entrants
+	 */
+	public static List<Entrant> standardEntrants(){
+		List<Entrant> list = new ArrayList<Entrant>();
+		for (final PreferenceTieBreak tieBreak : PreferenceTieBreak.values()){
+			list.add(new Entrant("GameAI/" + tieBreak.name().toLowerCase(), new StrategyFactory(){
+				public GameStrategy create(GameRandom random){
+					return new GameAI(tieBreak, random);
+				}
+			}));
+		}
+		for (int order = 1; order <= 6; order++){
+			list.add(new Entrant("Markov" + order, GameSimulator.parseStrategy("markov" + order)));
+		}
+		for (int order = 1; order <= 3; order++){
+			list.add(new Entrant("Markov" + order + "c", GameSimulator.parseStrategy("markov" + order + "c")));
+		}
+		list.add(new Entrant("Ensemble", GameSimulator.parseStrategy("ensemble")));
+		GameGesture[] gestures = {GameGesture.SCISSORS, GameGesture.PAPER,
+			GameGesture.ROCK, GameGesture.LIZARD, GameGesture.SPOCK};
+		for (final GameGesture gesture : gestures){
+			list.add(new Entrant("Constant/" + RuleSet.SPRLK.getGestureName(gesture.ordinal()), new StrategyFactory(){
+				public GameStrategy create(GameRandom random){
+					return new ScriptedStrategy(new ConstantPlayer(gesture));
+				}
+			}));
+		}
+		list.add(new Entrant("Cyclic", new StrategyFactory(){
+			public GameStrategy create(GameRandom random){
+				return new ScriptedStrategy(new CyclicPlayer());
+			}
+		}));
+		list.add(new Entrant("Exploiter", new StrategyFactory(){
+			public GameStrategy create(GameRandom random){
+				return new ScriptedStrategy(new ExploiterPlayer());
+			}
+		}));
+		list.add(new Entrant("Random", new StrategyFactory(){
+			public GameStrategy create(GameRandom random){
+				return new ScriptedStrategy(new BiasedRandomPlayer(GameGesture.ROCK, 0, random));
+			}
+		}));
+		double[] biases = {0.25, 0.5, 0.75};
+		for (final GameGesture gesture : gestures){
+			for (final double bias : biases){
+				list.add(new Entrant("Biased/" + RuleSet.SPRLK.getGestureName(gesture.ordinal()) + "/" + bias,
+						new StrategyFactory(){
+					public GameStrategy create(GameRandom random){
+						return new ScriptedStrategy(new BiasedRandomPlayer(gesture, bias, random));
+					}
+				}));
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * run
+	 * <p>
+	 * Plays every match of the league.
+	 * @return the standings
+	 */
+	public Standings run(){
+		long leafMatches = Math.max(1, LEAF_ROUNDS / rounds);
+		pool.invoke(new MatchTask(0, matchScores.length, (int) Math.min(leafMatches, Integer.MAX_VALUE)));
+		return new Standings();
+	}
+
+	/**
+	 * playMatch
+	 * <p>
+	 * Plays one match between the two entrants of its pair and records the first
+	 * entrant's result.
+	 * @param match - the match number
+	 */
+	private void playMatch(int match){
+		int pair = match / matches;
+		GameStrategy first = entrants.get(pairFirst[pair]).getFactory()
+				.create(GameRandom.forStream(seed, 2L * match));
+		GameStrategy second = entrants.get(pairSecond[pair]).getFactory()
+				.create(GameRandom.forStream(seed, 2L * match + 1));
+		long wins = 0;
+		long ties = 0;
+		for (int round = 0; round < rounds; round++){
+			GameGesture firstGesture = first.chooseGesture(round);
+			GameGesture secondGesture = second.chooseGesture(round);
+			byte outcome = GameRules.outcome(firstGesture, secondGesture);
+			if (outcome == GameRules.PLAYER_WIN){
+				wins++;
+			}
+			else if (outcome == GameRules.TIE){
+				ties++;
+			}
+			first.inputRound(secondGesture, firstGesture);
+			second.inputRound(firstGesture, secondGesture);
+		}
+		matchTies[match] = ties;
+		matchScores[match] = (wins + 0.5 * ties) / rounds;
+	}
+
+	/**
+	 * <b>MatchTask class</b>
+	 * <p>
+	 * Plays a range of match numbers, splitting it in half while it is larger than a
+	 * leaf.
+	 */
+	@SuppressWarnings("serial")//Never serialized
+	private class MatchTask extends RecursiveAction {
+		private final int from;
+		private final int to;
+		private final int leafMatches;
+
+		MatchTask(int from, int to, int leafMatches){
+			this.from = from;
+			this.to = to;
+			this.leafMatches = leafMatches;
+		}
+
+		protected void compute(){
+			if (to - from <= leafMatches){
+				for (int match = from; match < to; match++){
+					playMatch(match);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new MatchTask(from, middle, leafMatches), new MatchTask(middle, to, leafMatches));
+		}
+	}
+
+	/**
+	 * <b>Standings class</b>
+	 * <p>
+	 * The results of a league: each entrant's score and Elo rating with their 95%
+	 * confidence intervals, and the score of every pairing.
+	 */
+	public class Standings {
+		private final double[] scores;
+		private final double[] halfWidths;
+		private final double[] pairScores;//first entrant's mean score, by pair
+
+		private Standings(){
+			int size = entrants.size();
+			double[] sums = new double[size];
+			double[] squares = new double[size];
+			pairScores = new double[pairFirst.length];
+			for (int match = 0; match < matchScores.length; match++){
+				int pair = match / matches;
+				double score = matchScores[match];
+				sums[pairFirst[pair]] += score;
+				squares[pairFirst[pair]] += score * score;
+				sums[pairSecond[pair]] += 1 - score;
+				squares[pairSecond[pair]] += (1 - score) * (1 - score);
+				pairScores[pair] += score / matches;
+			}
+			long played = (long) (size - 1) * matches;//matches per entrant
+			scores = new double[size];
+			halfWidths = new double[size];
+			for (int i = 0; i < size; i++){
+				double mean = sums[i] / played;
+				scores[i] = mean;
+				if (played > 1){
+					double variance = (squares[i] - played * mean * mean) / (played - 1);
+					halfWidths[i] = Z_95 * Math.sqrt(Math.max(variance, 0) / played);
+				}
+			}
+		}
+
+		public double getScore(int entrant){
+			return scores[entrant];
+		}
+
+		public double getScoreHalfWidth(int entrant){
+			return halfWidths[entrant];
+		}
+
+		public double getElo(int entrant){
+			return elo(scores[entrant]);
+		}
+
+		/**
+		 * getPairScore
+		 * <p>
+		 * Gives the mean score of one entrant against another.
+		 * @param entrant - the entrant whose score is wanted
+		 * @param opponent - the other entrant
+		 */
+		public double getPairScore(int entrant, int opponent){
+			if (entrant == opponent){
+				return 0.5;
+			}
+			int first = Math.min(entrant, opponent);
+			int second = Math.max(entrant, opponent);
+			int size = entrants.size();
+			int pair = first * size - first * (first + 1) / 2 + (second - first - 1);
+			return entrant == first ? pairScores[pair] : 1 - pairScores[pair];
+		}
+
+		/**
+		 * getRoundsPlayed
+		 * <p>
+		 * Gives the total number of rounds played in the league.
+		 */
+		public long getRoundsPlayed(){
+			return (long) matchScores.length * rounds;
+		}
+
+		/**
+		 * getDecisiveShare
+		 * <p>
+		 * Gives the share of all rounds in the league that were not tied.
+		 */
+		public double getDecisiveShare(){
+			long ties = 0;
+			for (long tie : matchTies){
+				ties += tie;
+			}
+			return 1 - (double) ties / getRoundsPlayed();
+		}
+
+		/**
+		 * print
+		 * <p>
+		 * Prints the standings, best entrant first.
+		 * @param out - where to print
+		 */
+		public void print(PrintStream out){
+			Integer[] order = new Integer[scores.length];
+			for (int i = 0; i < order.length; i++){
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>(){
+				public int compare(Integer a, Integer b){
+					return Double.compare(scores[b], scores[a]);
+				}
+			});
+			out.println(String.format("%4s %-22s %8s %8s %7s %17s",
+					"Rank", "Entrant", "Score", "+/-", "Elo", "Elo 95% CI"));
+			for (int rank = 0; rank < order.length; rank++){
+				int i = order[rank];
+				out.println(String.format("%4d %-22s %8.4f %8.4f %7.0f %8.0f-%-8.0f", rank + 1,
+						entrants.get(i).getName(), scores[i], halfWidths[i], elo(scores[i]),
+						elo(scores[i] - halfWidths[i]), elo(scores[i] + halfWidths[i])));
+			}
+		}
+	}
+
+	private static double elo(double score){
+		double clamped = Math.min(MAX_SCORE, Math.max(1 - MAX_SCORE, score));
+		return BASE_ELO + 400 * Math.log10(clamped / (1 - clamped));
+	}
+
+	/**
+	 * main
+	 * <p>
+	 * Runs a league of the standard entrants and prints the standings.
+	 */
+	public static void main(String[] args){
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		List<Entrant> entrants = standardEntrants();
+		League league = new League(entrants, matches, rounds, seed, new ForkJoinPool(threads));
+		long start = System.nanoTime();
+		Standings standings = league.run();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println("Entrants: " + entrants.size() + ", matches per pairing: " + matches
+				+ ", rounds per match: " + rounds + ", seed: " + seed);
+		standings.print(System.out);
+		System.out.println(String.format("Played %d rounds in %.1f s (%.1f million rounds/sec on %d threads)",
+				standings.getRoundsPlayed(), seconds, standings.getRoundsPlayed() / seconds / 1e6, threads));
+		System.out.println(String.format("Decisive rounds: %.1f%%", 100 * standings.getDecisiveShare()));
+	}
+
+}//End of League class
@@ -0,0 +1,171 @@
+/**
+ * <b>LongLongMap class</b>
+ * <p>
+ * A hash map from long keys to long values that stores both in plain long arrays,
+ * with open addressing and linear probing. There is no boxing and no entry object
+ * per mapping, so a map of millions of packed game states takes 32 bytes per entry
+ * at most instead of the hundred or so that a HashMap&lt;Long, Long&gt; would.
+ * <p>
+ * The key 0 marks an empty slot and cannot be stored. Removing an entry shifts the
+ * entries probed after it back into the gap, so no tombstones are left behind.
+ */
+public class LongLongMap {
+	private static final int MAX_CAPACITY = 1 << 30;
+	private static final long EMPTY = 0;
+
+	private long[] keys;
+	private long[] values;
+	private int mask;
+	private int size;
+	private int resizeAt;//size at which the table doubles, at half full
+
+	/**
+	 * Constructs a map with room for the given number of entries before it grows.
+	 * @param expected - the number of entries expected
+	 */
+	public LongLongMap(int expected){
+		int capacity = 16;
+		while (capacity < MAX_CAPACITY && capacity / 2 < expected){
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * get
+	 * <p>
+	 * Looks up the value mapped to a key.
+	 * @param key - the key, not 0
+	 * @param missing - what to return if the key is not in the map
+	 * <p>
+	 * @return the key's value, or missing
+	 */
+	public long get(long key, long missing){
+		int slot = slot(key);
+		while (true){
+			long found = keys[slot];
+			if (found == key){
+				return values[slot];
+			}
+			if (found == EMPTY){
+				return missing;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * put
+	 * <p>
+	 * Maps a key to a value, replacing any earlier value.
+	 * @param key - the key, not 0
+	 * @param value - the value
+	 */
+	public void put(long key, long value){
+		if (key == EMPTY){
+			throw new IllegalArgumentException("The key 0 cannot be stored");
+		}
+		int slot = slot(key);
+		while (true){
+			long found = keys[slot];
+			if (found == key){
+				values[slot] = value;
+				return;
+			}
+			if (found == EMPTY){
+				keys[slot] = key;
+				values[slot] = value;
+				if (++size >= resizeAt){
+					grow();
+				}
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * remove
+	 * <p>
+	 * Removes a key and its value from the map.
+	 * @param key - the key, not 0
+	 * @param missing - what to return if the key is not in the map
+	 * <p>
+	 * @return the key's value, or missing
+	 */
+	public long remove(long key, long missing){
+		int slot = slot(key);
+		while (true){
+			long found = keys[slot];
+			if (found == key){
+				break;
+			}
+			if (found == EMPTY){
+				return missing;
+			}
+			slot = (slot + 1) & mask;
+		}
+		long value = values[slot];
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (keys[next] != EMPTY){
+			int home = slot(keys[next]);
+			if (((next - home) & mask) >= ((next - hole) & mask)){//The hole is on its probe path
+				keys[hole] = keys[next];
+				values[hole] = values[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[hole] = EMPTY;
+		size--;
+		return value;
+	}
+
+	/**
+	 * size
+	 * <p>
+	 * Gives the number of entries in the map.
+	 */
+	public int size(){
+		return size;
+	}
+
+	private int slot(long key){
+		//Finalizer of MurmurHash3, so that keys differing only in high bits spread out
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+
+	private void allocate(int capacity){
+		keys = new long[capacity];
+		values = new long[capacity];
+		mask = capacity - 1;
+		resizeAt = capacity / 2;
+	}
+
+	private void grow(){
+		if (keys.length == MAX_CAPACITY){
+			throw new IllegalStateException("LongLongMap is full: " + size + " entries");
+		}
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(keys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++){
+			long key = oldKeys[i];
+			if (key != EMPTY){
+				int slot = slot(key);
+				while (keys[slot] != EMPTY){
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+}//End of LongLongMap class
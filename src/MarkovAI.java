@@ -0,0 +1,147 @@
+/**
+ * <b>MarkovAI class</b>
+ * <p>
+ * A computer strategy that predicts the player's next gesture from what the player
+ * threw after the same recent history in the past, an order-k Markov (n-gram) model.
+ * <p>
+ * Where GameAI only counts how often each gesture was thrown, which an aware player
+ * can exploit after one round, this model conditions on the last k player gestures,
+ * or optionally on the last k rounds (player and computer gesture together). It then
+ * throws one of the two gestures that beat the predicted one, chosen at random.
+ * <p>
+ * The history is kept as a base-5 (or base-25 when computer gestures are included)
+ * number of k digits, and transition counts live in one flat int array indexed by
+ * history * 5 + next gesture. Nothing is allocated or boxed per round, every round
+ * costs the same whatever the session length, and the table size is fixed when the
+ * AI is built: at most MAX_CONTEXTS histories, which allows k up to 6 for player
+ * gestures alone and up to 3 with computer gestures included.
+ */
+public class MarkovAI implements GameStrategy {
+	/**
+	 * Largest number of distinct histories a MarkovAI will keep counts for
+	 */
+	public static final int MAX_CONTEXTS = 15625;//5^6, or 25^3
+
+	private static final GameGesture[] GESTURES = {GameGesture.SCISSORS, GameGesture.PAPER,
+		GameGesture.ROCK, GameGesture.LIZARD, GameGesture.SPOCK};
+	private final int OPTIONS = 5;//number of possible gestures that one can throw
+	private final int order;
+	private final boolean includeComp;
+	private final int symbols;//distinct values of one history digit
+	private final int oldestDigit;//value of the oldest digit's place, symbols^(order-1)
+	private final int[] transitions;//counts indexed by context * OPTIONS + next gesture
+	private final GameRandom random;
+	private int context;//the last order history digits as a base symbols number
+	private int historyLength;//digits in context so far, up to order
+
+	/**
+	 * Constructs an order-k Markov AI that conditions on player gestures only.
+	 * @param order - the number of past player gestures to condition on, 1 to 6
+	 */
+	public MarkovAI(int order){
+		this(order, false, new GameRandom());
+	}
+
+	/**
+	 * Constructs an order-k Markov AI.
+	 * @param order - the number of past rounds to condition on
+	 * @param includeComp - whether the history also holds the computer's gestures
+	 * @param random - the random source owned by this AI
+	 */
+	public MarkovAI(int order, boolean includeComp, GameRandom random){
+		this.order = order;
+		this.includeComp = includeComp;
+		this.random = random;
+		symbols = includeComp ? OPTIONS * OPTIONS : OPTIONS;
+		long contexts = 1;
+		for (int i = 0; i < order; i++){
+			contexts *= symbols;
+			if (contexts > MAX_CONTEXTS){
+				break;
+			}
+		}
+		if (order < 1 || contexts > MAX_CONTEXTS){
+			throw new IllegalArgumentException("Order " + order + " is not supported "
+					+ (includeComp ? "with" : "without") + " computer gestures");
+		}
+		oldestDigit = (int) (contexts / symbols);
+		transitions = new int[(int) contexts * OPTIONS];
+		context = 0;
+		historyLength = 0;
+	}
+
+	/**
+	 * predict
+	 * <p>
+	 * Predicts the player's next gesture from the current history.
+	 * @return the ordinal of the most likely next gesture, or -1 when the history is
+	 * too short or has never been seen before
+	 */
+	public int predict(){
+		if (historyLength < order){
+			return -1;
+		}
+		int row = context * OPTIONS;
+		int best = -1;
+		int bestCount = 0;
+		for (int gesture = 0; gesture < OPTIONS; gesture++){
+			int count = transitions[row + gesture];
+			if (count > bestCount){
+				best = gesture;
+				bestCount = count;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * chooseGesture
+	 * <p>
+	 * Throws one of the two counters of the predicted gesture, or a random gesture if
+	 * there is no prediction yet.
+	 */
+	public GameGesture chooseGesture(int gamesPlayed){
+		int predicted = predict();
+		if (predicted < 0){
+			return GESTURES[random.nextInt(OPTIONS)];
+		}
+		return GameRules.counter(predicted, random.nextInt(2));
+	}
+
+	/**
+	 * inputRound
+	 * <p>
+	 * Counts the player's gesture against the history that came before it, then
+	 * shifts the round into the history. Rounds where the player threw nothing are
+	 * ignored.
+	 */
+	public void inputRound(GameGesture playerGesture, GameGesture compGesture){
+		if (playerGesture == GameGesture.NONE){
+			return;
+		}
+		int player = playerGesture.ordinal();
+		if (historyLength == order){
+			int cell = context * OPTIONS + player;
+			transitions[cell]++;
+			if (transitions[cell] == Integer.MAX_VALUE){//Halves the row instead of overflowing
+				int row = context * OPTIONS;
+				for (int gesture = 0; gesture < OPTIONS; gesture++){
+					transitions[row + gesture] >>= 1;
+				}
+			}
+		}
+		else {
+			historyLength++;
+		}
+		int digit = player;
+		if (includeComp){
+			digit = player * OPTIONS + compGesture.ordinal();
+		}
+		context = (context % oldestDigit) * symbols + digit;
+	}
+
+	public int getOrder(){
+		return order;
+	}
+
+}//End of MarkovAI class
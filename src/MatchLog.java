@@ -0,0 +1,187 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * <b>MatchLog class</b>
+ * <p>
+ * Compact append-only record of every round of a session, so that nothing is lost
+ * when the game exits.
+ * <p>
+ * The file starts with an 8 byte header (the magic bytes "SPLG", a 2 byte version
+ * and 2 reserved bytes). After that, each round is a single byte packing both
+ * gestures as 1 + player * 6 + comp, using GameGesture ordinals. Every
+ * CHECKPOINT_INTERVAL rounds a checkpoint record is written: the byte 0xFF followed
+ * by the four GameHandler counters (games played, ties, player wins, computer wins)
+ * as 4 byte ints. A 0 byte marks the end of the data.
+ * <p>
+ * Writes go straight into a memory-mapped region of the file, which is extended a
+ * region at a time. The region is forced to disk every FLUSH_INTERVAL rounds and on
+ * close, rather than on every round. MatchLogReader reads the log back.
+ * <p>
+ * The file is never truncated: truncating a file that is still mapped fails on some
+ * platforms, and Java has no way to unmap a buffer. Instead the file keeps the size
+ * of the last region mapped, and the unwritten part of that region stays zero, which
+ * readers take as the END marker; on file systems with sparse files it takes no
+ * space. The mapping of a region that has been filled up is released by the garbage
+ * collector, but a region holds millions of rounds, so few are ever waiting.
+ * <p>
+ * Because the data always ends at an END marker, a log that is never closed, for
+ * example because the process exits, reads back the same as a closed one. Rounds
+ * written since the last flush are in the operating system's page cache and reach
+ * the disk without a force; they are only lost if the machine itself goes down.
+ * <p>
+ * A MatchLog is a RoundListener: added to a GameHandler's RoundDispatcher, it is
+ * written on the dispatcher's thread, off the round path. It is not thread-safe; it
+ * belongs to the thread that delivers its rounds, and should be closed after that
+ * dispatcher.
+ */
+public class MatchLog implements Closeable, RoundListener {
+	static final int MAGIC = 0x53504C47;//"SPLG"
+	static final short VERSION = 1;
+	static final int HEADER_SIZE = 8;
+	static final int CHECKPOINT = 0xFF;//marks a checkpoint record
+	static final int CHECKPOINT_SIZE = 17;//marker plus four ints
+	static final int END = 0;//marks the end of the data
+	static final int STRIDE = 6;//gesture ordinals per packed digit, including NONE
+
+	private static final int REGION_SIZE = 8 << 20;//bytes mapped at a time
+	private static final int FLUSH_INTERVAL = 1 << 16;//rounds between forced flushes
+	private static final int CHECKPOINT_INTERVAL = 1 << 16;//rounds between checkpoints
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private MappedByteBuffer region;
+	private long regionStart;//file position of the start of the mapped region
+	private int sinceFlush;
+	private int sinceCheckpoint;
+	private boolean closed;
+
+	/**
+	 * Opens a match log, creating it if needed. Rounds are appended after any data
+	 * already in the file.
+	 * @param path - the log file
+	 */
+	public MatchLog(File path) throws IOException {
+		file = new RandomAccessFile(path, "rw");
+		channel = file.getChannel();
+		long end;
+		if (channel.size() == 0){
+			regionStart = 0;
+			region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_SIZE);
+			region.putInt(MAGIC);
+			region.putShort(VERSION);
+			region.putShort((short) 0);
+			region.force();
+			end = HEADER_SIZE;
+		}
+		else {
+			end = MatchLogReader.findEnd(channel);
+		}
+		remap(end);
+		sinceFlush = 0;
+		sinceCheckpoint = 0;
+		closed = false;
+	}
+
+	/**
+	 * roundsPlayed
+	 * <p>
+	 * Appends a batch of rounds delivered by a RoundDispatcher.
+	 */
+	public void roundsPlayed(List<RoundResult> results){
+		for (int i = 0; i < results.size(); i++){
+			append(results.get(i));
+		}
+	}
+
+	/**
+	 * append
+	 * <p>
+	 * Appends a round, and a checkpoint of the counters after it when one is due.
+	 * @param result - the round
+	 */
+	public void append(RoundResult result){
+		if (region.remaining() < CHECKPOINT_SIZE + 1){
+			grow();
+		}
+		region.put(pack(result.getPlayerGesture(), result.getCompGesture()));
+		sinceCheckpoint++;
+		if (sinceCheckpoint == CHECKPOINT_INTERVAL){
+			region.put((byte) CHECKPOINT);
+			region.putInt(result.getRound());
+			region.putInt(result.getTieGames());
+			region.putInt(result.getPlayerWins());
+			region.putInt(result.getCompWins());
+			sinceCheckpoint = 0;
+		}
+		sinceFlush++;
+		if (sinceFlush == FLUSH_INTERVAL){
+			region.force();
+			sinceFlush = 0;
+		}
+	}
+
+	/**
+	 * pack
+	 * <p>
+	 * Packs the two gestures of a round into one log byte.
+	 * @param playerGesture - the player's gesture
+	 * @param compGesture - the computer's gesture
+	 * <p>
+	 * @return the packed round, never END or CHECKPOINT
+	 */
+	static byte pack(GameGesture playerGesture, GameGesture compGesture){
+		return (byte) (1 + playerGesture.ordinal() * STRIDE + compGesture.ordinal());
+	}
+
+	/**
+	 * flush
+	 * <p>
+	 * Forces everything appended so far to disk.
+	 */
+	public void flush(){
+		region.force();
+		sinceFlush = 0;
+	}
+
+	/**
+	 * close
+	 * <p>
+	 * Flushes the log and closes the file. The file is left at its mapped size.
+	 */
+	public void close() throws IOException {
+		if (closed){
+			return;
+		}
+		closed = true;
+		region.force();
+		region = null;
+		file.close();
+	}
+
+	/**
+	 * grow
+	 * <p>
+	 * Moves the mapping forward so that it starts at the current end of the data.
+	 */
+	private void grow(){
+		region.force();
+		try {
+			remap(regionStart + region.position());
+		}
+		catch (IOException e){
+			throw new IllegalStateException("Match log could not be extended", e);
+		}
+	}
+
+	private void remap(long position) throws IOException {
+		region = channel.map(FileChannel.MapMode.READ_WRITE, position, REGION_SIZE);
+		regionStart = position;
+	}
+
+}//End of MatchLog class
@@ -0,0 +1,217 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <b>MatchLogReader class</b>
+ * <p>
+ * Reads back a log written by MatchLog. Rounds can be streamed to a visitor,
+ * counted into a histogram of gesture pairs, or replayed into a GameHandler to
+ * rebuild its counters and its AI's state.
+ * <p>
+ * The file is memory-mapped in large chunks and read in place, one byte per round,
+ * so nothing is allocated per round and counting runs at memory speed.
+ */
+public class MatchLogReader {
+	private static final int CHUNK_SIZE = 1 << 30;//bytes mapped at a time
+	private static final int PAIRS = MatchLog.STRIDE * MatchLog.STRIDE;
+	private static final GameGesture[] GESTURES = GameGesture.values();
+	private final File path;
+
+	/**
+	 * <b>RoundVisitor interface</b>
+	 * <p>
+	 * Receives the records of a match log in order.
+	 */
+	public interface RoundVisitor {
+
+		/**
+		 * round
+		 * <p>
+		 * Called for every round in the log.
+		 * @param playerGesture - the gesture that the player threw
+		 * @param compGesture - the gesture that the computer threw
+		 */
+		void round(GameGesture playerGesture, GameGesture compGesture);
+
+		/**
+		 * checkpoint
+		 * <p>
+		 * Called for every checkpoint, with the counters the handler had after the
+		 * round before it.
+		 */
+		void checkpoint(int gamesPlayed, int tieGames, int playerWins, int compWins);
+	}
+
+	/**
+	 * Constructs a reader for a match log file.
+	 * @param path - the log file
+	 */
+	public MatchLogReader(File path){
+		this.path = path;
+	}
+
+	/**
+	 * stream
+	 * <p>
+	 * Passes every record of the log to the visitor, in order.
+	 * @param visitor - receives the rounds and checkpoints
+	 */
+	public void stream(RoundVisitor visitor) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			scan(file.getChannel(), visitor, null);
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * histogram
+	 * <p>
+	 * Counts how often each pair of gestures occurs in the log.
+	 * @return counts indexed by player ordinal * 6 + computer ordinal
+	 */
+	public long[] histogram() throws IOException {
+		long[] counts = new long[PAIRS];
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			scan(file.getChannel(), null, counts);
+		}
+		finally {
+			file.close();
+		}
+		return counts;
+	}
+
+	/**
+	 * restore
+	 * <p>
+	 * Replays every round of the log into a handler, rebuilding its counters and
+	 * its AI's state as they were when the log was written. The handler should be
+	 * fresh and use the same kind of strategy as the one that wrote the log.
+	 * @param handler - the handler to replay into
+	 */
+	public void restore(final GameHandler handler) throws IOException {
+		stream(new RoundVisitor(){
+			public void round(GameGesture playerGesture, GameGesture compGesture){
+				handler.replayRound(playerGesture, compGesture);
+			}
+
+			public void checkpoint(int gamesPlayed, int tieGames, int playerWins, int compWins){
+			}
+		});
+	}
+
+	/**
+	 * findEnd
+	 * <p>
+	 * Finds the file position just after the last record of an existing log.
+	 * @param channel - an open channel on the log
+	 * <p>
+	 * @return the position where the next record should go
+	 */
+	static long findEnd(FileChannel channel) throws IOException {
+		return scan(channel, null, null);
+	}
+
+	/**
+	 * scan
+	 * <p>
+	 * Walks the records of a log. Rounds go to the histogram if there is one, and
+	 * otherwise to the visitor if there is one.
+	 * @return the file position of the end of the data
+	 */
+	private static long scan(FileChannel channel, RoundVisitor visitor, long[] histogram)
+			throws IOException {
+		long size = channel.size();
+		checkHeader(channel, size);
+		long base = MatchLog.HEADER_SIZE;
+		while (base < size){
+			int length = (int) Math.min(CHUNK_SIZE, size - base);
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+			int i = 0;
+			while (i < length){
+				int code = map.get(i) & 0xFF;
+				if (code == MatchLog.END){
+					return base + i;
+				}
+				if (code == MatchLog.CHECKPOINT){
+					if (i + MatchLog.CHECKPOINT_SIZE > length){
+						if (base + length < size){
+							break;//Continues in the next mapping
+						}
+						throw new IOException("Truncated checkpoint at " + (base + i));
+					}
+					if (visitor != null && histogram == null){
+						visitor.checkpoint(map.getInt(i + 1), map.getInt(i + 5),
+								map.getInt(i + 9), map.getInt(i + 13));
+					}
+					i += MatchLog.CHECKPOINT_SIZE;
+					continue;
+				}
+				code--;
+				if (code >= PAIRS){
+					throw new IOException("Corrupt round record at " + (base + i));
+				}
+				if (histogram != null){
+					histogram[code]++;
+				}
+				else if (visitor != null){
+					visitor.round(GESTURES[code / MatchLog.STRIDE], GESTURES[code % MatchLog.STRIDE]);
+				}
+				i++;
+			}
+			base += i;
+		}
+		return size;
+	}
+
+	private static void checkHeader(FileChannel channel, long size) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(MatchLog.HEADER_SIZE);
+		if (size < MatchLog.HEADER_SIZE){
+			throw new IOException("Not a match log: too short");
+		}
+		channel.read(header, 0);
+		header.flip();
+		if (header.getInt() != MatchLog.MAGIC){
+			throw new IOException("Not a match log: bad magic");
+		}
+		short version = header.getShort();
+		if (version != MatchLog.VERSION){
+			throw new IOException("Unsupported match log version " + version);
+		}
+	}
+
+	/**
+	 * main
+	 * <p>
+	 * Prints a summary of a match log: java MatchLogReader file
+	 */
+	public static void main(String[] args) throws IOException {
+		long start = System.nanoTime();
+		long[] counts = new MatchLogReader(new File(args[0])).histogram();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long[] totals = new long[3];
+		long rounds = 0;
+		for (int player = 0; player < MatchLog.STRIDE; player++){
+			for (int comp = 0; comp < MatchLog.STRIDE; comp++){
+				long count = counts[player * MatchLog.STRIDE + comp];
+				if (count > 0){
+					totals[GameRules.outcome(player, comp)] += count;
+					rounds += count;
+				}
+			}
+		}
+		System.out.println("Rounds: " + rounds);
+		System.out.println("Player Wins: " + totals[GameRules.PLAYER_WIN]);
+		System.out.println("Computer Wins: " + totals[GameRules.COMP_WIN]);
+		System.out.println("Ties: " + totals[GameRules.TIE]);
+		System.out.printf("Read at %.1f million rounds/sec%n", rounds / seconds / 1e6);
+	}
+
+}//End of MatchLogReader class
@@ -0,0 +1,552 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * <b>MoveFileScorer class</b>
+ * <p>
+ * Scores how a computer strategy would have done against recorded human players.
+ * The input is a CSV file of moves in the order they were played, one per line:
+ * a numeric player id, a comma, and the gesture, either as its number (0 scissors,
+ * 1 paper, 2 rock, 3 lizard, 4 spock), by name or by the first two letters of its
+ * name. A first line that does not start with a digit is taken as a header and
+ * skipped. Every player gets a strategy of their own, which plays each of their
+ * moves as a round in turn.
+ * <p>
+ * Scoring is a pipeline. The calling thread memory-maps the file in large chunks
+ * and parses the moves in place, reading the mapped bytes directly with no String
+ * or line copy. Each move goes to one of several lanes, picked by a hash of the
+ * player id so a player always lands in the same lane, and each lane scores its
+ * players on a thread of its own. The totals of the lanes are aggregated at the end.
+ * <p>
+ * Moves travel to a lane in batches, and every lane owns a fixed number of them.
+ * The parser can only fill a batch that the lane has handed back, so a lane that
+ * falls behind makes the parser wait instead of letting moves pile up: as with
+ * the demand signalled through Flow.Subscription.request, each free batch is a
+ * credit for BATCH_SIZE more moves. Memory for moves in flight is therefore bounded
+ * by LANE_BATCHES batches per lane however large the file is; only the per-player
+ * strategies grow, with the number of distinct players.
+ * <p>
+ * Each player's strategy gets the random stream of the scorer's seed numbered by
+ * their id, so the scores do not depend on the number of lanes.
+ * <p>
+ * Usage: java MoveFileScorer file [strategy] [lanes] [seed], where strategy names
+ * are those of GameSimulator.
+ */
+public class MoveFileScorer {
+	private static final int CHUNK_SIZE = 1 << 30;//bytes mapped at a time
+	private static final int BATCH_SIZE = 1 << 12;//moves per batch
+	private static final int LANE_BATCHES = 4;//batches owned by each lane
+	private static final int MAX_ID_DIGITS = 18;//keeps ids below Long.MAX_VALUE
+	private static final long LANE_HASH = 0x9E3779B97F4A7C15L;
+	private static final int OPTIONS = 5;//number of possible gestures that one can throw
+	private static final GameGesture[] GESTURES = {GameGesture.SCISSORS, GameGesture.PAPER,
+		GameGesture.ROCK, GameGesture.LIZARD, GameGesture.SPOCK};
+	private static final String[] NAMES = {"scissors", "paper", "rock", "lizard", "spock"};//by number
+	private static final Batch END = new Batch();//sent to each lane after the last batch
+	private static final int MIN_REPORT_ROUNDS = 100;
+
+	private final StrategyFactory strategy;
+	private final long seed;
+	private final int laneCount;
+
+	/**
+	 * <b>Batch class</b>
+	 * <p>
+	 * Moves on their way from the parser to a lane.
+	 */
+	private static class Batch {
+		final long[] players = new long[BATCH_SIZE];
+		final byte[] gestures = new byte[BATCH_SIZE];
+		int count;
+	}
+
+	/**
+	 * Constructs a scorer.
+	 * @param strategy - creates the computer strategy of each player
+	 * @param seed - the master seed that every player's random source derives from
+	 * @param lanes - the number of threads scoring players
+	 */
+	public MoveFileScorer(StrategyFactory strategy, long seed, int lanes){
+		if (lanes < 1){
+			throw new IllegalArgumentException("Need at least one lane: " + lanes);
+		}
+		this.strategy = strategy;
+		this.seed = seed;
+		this.laneCount = lanes;
+	}
+
+	/**
+	 * score
+	 * <p>
+	 * Plays every move of a file against the strategy and aggregates the results.
+	 * @param path - the CSV file of moves
+	 * <p>
+	 * @return the score of every player
+	 * @throws IOException if the file cannot be read or a line is malformed
+	 */
+	public Result score(File path) throws IOException, InterruptedException {
+		Lane[] lanes = new Lane[laneCount];
+		Thread[] threads = new Thread[laneCount];
+		for (int i = 0; i < laneCount; i++){
+			lanes[i] = new Lane();
+			threads[i] = new Thread(lanes[i], "MoveFileScorer-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		try {
+			RandomAccessFile file = new RandomAccessFile(path, "r");
+			try {
+				new Parser(lanes).parse(file.getChannel());
+			}
+			finally {
+				file.close();
+			}
+		}
+		finally {
+			for (Lane lane : lanes){
+				lane.full.offer(END);//Always fits: the queue has room for every batch and END
+			}
+			joinUninterruptibly(threads);
+		}
+		for (Lane lane : lanes){
+			if (lane.failure != null){
+				throw new IllegalStateException("Scoring failed", lane.failure);
+			}
+		}
+		return new Result(lanes);
+	}
+
+	private static void joinUninterruptibly(Thread[] threads){
+		boolean interrupted = false;
+		for (Thread thread : threads){
+			while (thread.isAlive()){
+				try {
+					thread.join();
+				}
+				catch (InterruptedException e){
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * <b>Parser class</b>
+	 * <p>
+	 * Reads moves out of the mapped file and fills each lane's batches.
+	 */
+	private class Parser {
+		private final Lane[] lanes;
+		private final Batch[] filling;//batch being filled for each lane, or null
+		private boolean header;//whether the next line could still be a header
+
+		Parser(Lane[] lanes){
+			this.lanes = lanes;
+			filling = new Batch[lanes.length];
+			header = true;
+		}
+
+		/**
+		 * parse
+		 * <p>
+		 * Maps the file a chunk at a time and passes every line to parseLine. A line
+		 * that runs past the end of a chunk is parsed from the next mapping instead.
+		 */
+		void parse(FileChannel channel) throws IOException, InterruptedException {
+			long size = channel.size();
+			long base = 0;
+			while (base < size){
+				int length = (int) Math.min(CHUNK_SIZE, size - base);
+				boolean last = base + length == size;
+				MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+				int i = 0;
+				while (i < length){
+					int end = i;
+					while (end < length && map.get(end) != '\n'){
+						end++;
+					}
+					if (end == length && !last){
+						break;//Continues in the next mapping
+					}
+					parseLine(map, i, end, base);
+					i = end + 1;
+				}
+				if (i == 0){
+					throw new IOException("Line too long at " + base);
+				}
+				base += i;
+			}
+			for (int lane = 0; lane < lanes.length; lane++){
+				if (filling[lane] != null){
+					lanes[lane].full.put(filling[lane]);
+					filling[lane] = null;
+				}
+			}
+		}
+
+		/**
+		 * parseLine
+		 * <p>
+		 * Parses one line of the mapping, without its newline, and sends its move.
+		 */
+		private void parseLine(MappedByteBuffer map, int from, int to, long base)
+				throws IOException, InterruptedException {
+			if (to > from && map.get(to - 1) == '\r'){
+				to--;
+			}
+			if (from == to){
+				return;//Blank line
+			}
+			int i = from;
+			long player = 0;
+			byte digit;
+			while (i < to && (digit = map.get(i)) >= '0' && digit <= '9'){
+				player = player * 10 + (digit - '0');
+				i++;
+			}
+			if (header){
+				header = false;
+				if (i == from){
+					return;
+				}
+			}
+			if (i == from || i - from > MAX_ID_DIGITS || i == to || map.get(i) != ','){
+				throw new IOException("Bad player id at " + (base + from));
+			}
+			i++;
+			while (i < to && map.get(i) == ' '){
+				i++;
+			}
+			int gesture = parseGesture(map, i, to);
+			if (gesture < 0){
+				throw new IOException("Bad gesture at " + (base + i));
+			}
+			send(player, gesture);
+		}
+
+		/**
+		 * parseGesture
+		 * <p>
+		 * Recognizes a gesture number, or a gesture by its whole name or its first
+		 * two letters, in any case, as SPRLKConsole does. Trailing spaces are ignored.
+		 * @return the gesture number, or -1 if there is none
+		 */
+		private int parseGesture(MappedByteBuffer map, int from, int to){
+			while (to > from && map.get(to - 1) == ' '){
+				to--;
+			}
+			int length = to - from;
+			if (length == 1){
+				int gesture = map.get(from) - '0';
+				return gesture >= 0 && gesture < OPTIONS ? gesture : -1;
+			}
+			if (length < 2){
+				return -1;
+			}
+			int first = map.get(from) | 0x20;//Lower case
+			int second = map.get(from + 1) | 0x20;
+			for (int gesture = 0; gesture < OPTIONS; gesture++){
+				String name = NAMES[gesture];
+				if (first != name.charAt(0) || second != name.charAt(1)){
+					continue;
+				}
+				if (length == 2){
+					return gesture;
+				}
+				if (length != name.length()){
+					return -1;
+				}
+				for (int i = 2; i < length; i++){
+					if ((map.get(from + i) | 0x20) != name.charAt(i)){
+						return -1;
+					}
+				}
+				return gesture;
+			}
+			return -1;
+		}
+
+		/**
+		 * send
+		 * <p>
+		 * Adds a move to its lane's batch. Waits for the lane to hand back a batch
+		 * when it has none free.
+		 */
+		private void send(long player, int gesture) throws InterruptedException {
+			int lane = (int) (((player * LANE_HASH) >>> 33) % lanes.length);
+			Batch batch = filling[lane];
+			if (batch == null){
+				batch = lanes[lane].free.take();
+				filling[lane] = batch;
+			}
+			batch.players[batch.count] = player;
+			batch.gestures[batch.count] = (byte) gesture;
+			batch.count++;
+			if (batch.count == BATCH_SIZE){
+				lanes[lane].full.put(batch);
+				filling[lane] = null;
+			}
+		}
+	}
+
+	/**
+	 * <b>Lane class</b>
+	 * <p>
+	 * Scores the moves of the players hashed to it, on its own thread. Players are
+	 * found through a LongLongMap from id to their position in the lane's arrays.
+	 */
+	private class Lane implements Runnable {
+		final ArrayBlockingQueue<Batch> free;//batches the parser may fill
+		final ArrayBlockingQueue<Batch> full;//batches waiting to be scored
+		final LongLongMap positions;//player id plus one to position
+		final List<GameStrategy> strategies;
+		long[] ids;
+		long[] rounds;
+		long[] playerWins;
+		long[] compWins;
+		int players;
+		volatile Throwable failure;
+
+		Lane(){
+			free = new ArrayBlockingQueue<Batch>(LANE_BATCHES);
+			full = new ArrayBlockingQueue<Batch>(LANE_BATCHES + 1);
+			for (int i = 0; i < LANE_BATCHES; i++){
+				free.add(new Batch());
+			}
+			positions = new LongLongMap(1 << 10);
+			strategies = new ArrayList<GameStrategy>();
+			ids = new long[1 << 10];
+			rounds = new long[ids.length];
+			playerWins = new long[ids.length];
+			compWins = new long[ids.length];
+		}
+
+		public void run(){
+			while (true){
+				Batch batch;
+				try {
+					batch = full.take();
+				}
+				catch (InterruptedException e){
+					continue;//Only END stops a lane
+				}
+				if (batch == END){
+					return;
+				}
+				if (failure == null){//After a failure batches are only handed back
+					try {
+						play(batch);
+					}
+					catch (RuntimeException | Error e){
+						failure = e;
+					}
+				}
+				batch.count = 0;
+				free.add(batch);
+			}
+		}
+
+		/**
+		 * play
+		 * <p>
+		 * Plays every move of a batch as a round against its player's strategy.
+		 */
+		private void play(Batch batch){
+			for (int k = 0; k < batch.count; k++){
+				long player = batch.players[k];
+				int position = (int) positions.get(player + 1, -1);
+				if (position < 0){
+					position = addPlayer(player);
+				}
+				GameStrategy smarts = strategies.get(position);
+				GameGesture playerGesture = GESTURES[batch.gestures[k]];
+				GameGesture compGesture = smarts.chooseGesture((int) Math.min(rounds[position], Integer.MAX_VALUE));
+				byte outcome = GameRules.outcome(playerGesture, compGesture);
+				smarts.inputRound(playerGesture, compGesture);
+				rounds[position]++;
+				if (outcome == GameRules.PLAYER_WIN){
+					playerWins[position]++;
+				}
+				else if (outcome == GameRules.COMP_WIN){
+					compWins[position]++;
+				}
+			}
+		}
+
+		private int addPlayer(long player){
+			if (players == ids.length){
+				int capacity = ids.length * 2;
+				ids = Arrays.copyOf(ids, capacity);
+				rounds = Arrays.copyOf(rounds, capacity);
+				playerWins = Arrays.copyOf(playerWins, capacity);
+				compWins = Arrays.copyOf(compWins, capacity);
+			}
+			ids[players] = player;
+			strategies.add(strategy.create(GameRandom.forStream(seed, player)));
+			positions.put(player + 1, players);
+			return players++;
+		}
+	}
+
+	/**
+	 * <b>Result class</b>
+	 * <p>
+	 * The rounds, wins and ties of every player in a file, and their totals. Players
+	 * are numbered from 0 in no particular order.
+	 */
+	public static class Result {
+		private final long[] ids;
+		private final long[] rounds;
+		private final long[] playerWins;
+		private final long[] compWins;
+		private long totalRounds;
+		private long totalPlayerWins;
+		private long totalCompWins;
+
+		private Result(Lane[] lanes){
+			int players = 0;
+			for (Lane lane : lanes){
+				players += lane.players;
+			}
+			ids = new long[players];
+			rounds = new long[players];
+			playerWins = new long[players];
+			compWins = new long[players];
+			int at = 0;
+			for (Lane lane : lanes){
+				System.arraycopy(lane.ids, 0, ids, at, lane.players);
+				System.arraycopy(lane.rounds, 0, rounds, at, lane.players);
+				System.arraycopy(lane.playerWins, 0, playerWins, at, lane.players);
+				System.arraycopy(lane.compWins, 0, compWins, at, lane.players);
+				at += lane.players;
+			}
+			for (int i = 0; i < players; i++){
+				totalRounds += rounds[i];
+				totalPlayerWins += playerWins[i];
+				totalCompWins += compWins[i];
+			}
+		}
+
+		public int getPlayers(){
+			return ids.length;
+		}
+
+		public long getPlayerId(int player){
+			return ids[player];
+		}
+
+		public long getRounds(int player){
+			return rounds[player];
+		}
+
+		public long getPlayerWins(int player){
+			return playerWins[player];
+		}
+
+		public long getCompWins(int player){
+			return compWins[player];
+		}
+
+		public long getTieGames(int player){
+			return rounds[player] - playerWins[player] - compWins[player];
+		}
+
+		public long getRounds(){
+			return totalRounds;
+		}
+
+		public long getPlayerWins(){
+			return totalPlayerWins;
+		}
+
+		public long getCompWins(){
+			return totalCompWins;
+		}
+
+		public long getTieGames(){
+			return totalRounds - totalPlayerWins - totalCompWins;
+		}
+
+		/**
+		 * getNetRate
+		 * <p>
+		 * Gives the computer's wins minus its losses per round against a player.
+		 * @param player - the player's number
+		 */
+		public double getNetRate(int player){
+			return (double) (compWins[player] - playerWins[player]) / rounds[player];
+		}
+	}
+
+	/**
+	 * main
+	 * <p>
+	 * Scores a file and prints the totals, the throughput, and the players the
+	 * strategy beat by most and least among those with enough rounds.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1){
+			System.err.println("Usage: java MoveFileScorer file [strategy] [lanes] [seed]");
+			System.exit(2);
+		}
+		String name = args.length > 1 ? args[1] : "frequency";
+		int lanes = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+		File file = new File(args[0]);
+		long start = System.nanoTime();
+		final Result result = new MoveFileScorer(GameSimulator.parseStrategy(name), seed, lanes).score(file);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long rounds = Math.max(1, result.getRounds());
+		System.out.println("Strategy: " + name + ", players: " + result.getPlayers()
+				+ ", rounds: " + result.getRounds());
+		System.out.println(String.format("Computer Wins: %d (%.2f%%)",
+				result.getCompWins(), 100.0 * result.getCompWins() / rounds));
+		System.out.println(String.format("Player Wins: %d (%.2f%%)",
+				result.getPlayerWins(), 100.0 * result.getPlayerWins() / rounds));
+		System.out.println(String.format("Ties: %d (%.2f%%)",
+				result.getTieGames(), 100.0 * result.getTieGames() / rounds));
+		System.out.println(String.format("Scored %.1f MB in %.2f s (%.1f million rounds/sec on %d lanes)",
+				file.length() / 1e6, seconds, result.getRounds() / seconds / 1e6, lanes));
+
+		List<Integer> ranked = new ArrayList<Integer>();
+		for (int player = 0; player < result.getPlayers(); player++){
+			if (result.getRounds(player) >= MIN_REPORT_ROUNDS){
+				ranked.add(player);
+			}
+		}
+		if (ranked.isEmpty()){
+			return;
+		}
+		Collections.sort(ranked, new Comparator<Integer>(){
+			public int compare(Integer a, Integer b){
+				return Double.compare(result.getNetRate(b), result.getNetRate(a));
+			}
+		});
+		int shown = Math.min(5, ranked.size());
+		System.out.println("Most beaten players (computer net wins per round, " + MIN_REPORT_ROUNDS + "+ rounds):");
+		for (int i = 0; i < shown; i++){
+			int player = ranked.get(i);
+			System.out.println(String.format("  %d: %+.3f over %d rounds", result.getPlayerId(player),
+					result.getNetRate(player), result.getRounds(player)));
+		}
+		System.out.println("Least beaten players:");
+		for (int i = ranked.size() - shown; i < ranked.size(); i++){
+			int player = ranked.get(i);
+			System.out.println(String.format("  %d: %+.3f over %d rounds", result.getPlayerId(player),
+					result.getNetRate(player), result.getRounds(player)));
+		}
+	}
+
+}//End of MoveFileScorer class
@@ -0,0 +1,35 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <b>PersistentStrategy interface</b>
+ * <p>
+ * A GameStrategy whose learned state can be saved and restored, so that a returning
+ * player does not have to be learned again from nothing. ProfileStore keeps these
+ * states per player.
+ * <p>
+ * The state is written in a compact binary form that starts with its own version
+ * number, so that a newer implementation can still recognize an older snapshot.
+ */
+public interface PersistentStrategy extends GameStrategy {
+
+	/**
+	 * writeState
+	 * <p>
+	 * Writes the strategy's learned state at the buffer's position.
+	 * @param out - the buffer to write to, with enough room for the state
+	 */
+	void writeState(ByteBuffer out);
+
+	/**
+	 * readState
+	 * <p>
+	 * Replaces the strategy's learned state with one written by writeState, read
+	 * from the buffer's position.
+	 * @param in - the buffer to read from
+	 * @throws IOException if the state was written by an incompatible strategy or
+	 * version
+	 */
+	void readState(ByteBuffer in) throws IOException;
+
+}//End of PersistentStrategy interface
@@ -0,0 +1,23 @@
+	/**
+	 * <b>PreferenceTieBreak enum</b>
+	 * <p>
+	 * The ways that GameAI can choose the player's preferred gesture when two or 
+	 * more gestures are tied for the highest count.
+	 */
+	public enum PreferenceTieBreak {
+	
+		/**
+		 * First tied gesture in the order scissors, paper, rock, lizard, spock
+		 */
+		FIXED_ORDER, 
+
+		/**
+		 * Uniformly random tied gesture
+		 */
+		RANDOM, 
+
+		/**
+		 * Tied gesture that reached the highest count most recently
+		 */
+		MOST_RECENT
+	}//End of PreferenceTieBreak enum
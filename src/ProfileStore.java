@@ -0,0 +1,323 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <b>ProfileStore class</b>
+ * <p>
+ * Remembers returning players: for every player name it keeps a snapshot of the
+ * player's GameHandler counters and the learned state of its computer strategy, so a
+ * new game can pick up where the last one left off instead of relearning the player
+ * from nothing.
+ * <p>
+ * All profiles live in one file of fixed-size slots. The file starts with a 16 byte
+ * header (the magic bytes "SPPF", a 2 byte version, 2 reserved bytes, the slot size
+ * and the number of slots in use). Each slot holds the player's name (a length byte
+ * and up to MAX_NAME_BYTES bytes of UTF-8) and a snapshot (a 2 byte length and the
+ * snapshot bytes). The snapshot itself is versioned: a version byte, the four
+ * handler counters as ints, then the strategy's state as written by
+ * PersistentStrategy.writeState.
+ * <p>
+ * The file is memory-mapped, and an index from name to slot is built when the store
+ * is opened. Loading a profile is therefore a map lookup and a read of a few dozen
+ * bytes straight from the mapping, a matter of microseconds, with no file I/O on
+ * the session-creation path. Saving writes the slot in place; flush or close force
+ * it to disk. A ProfileStore may be shared between threads.
+ */
+public class ProfileStore implements Closeable {
+	/**
+	 * Longest player name, in UTF-8 bytes
+	 */
+	public static final int MAX_NAME_BYTES = 62;
+	/**
+	 * Slot size used when none is given, enough for SPRLK profiles
+	 */
+	public static final int DEFAULT_SLOT_SIZE = 192;
+
+	static final int MAGIC = 0x53505046;//"SPPF"
+	static final short VERSION = 1;
+	static final byte SNAPSHOT_VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final int COUNT_OFFSET = 12;//where the slot count is in the header
+	private static final int NAME_AREA = 1 + MAX_NAME_BYTES;//length byte and name
+	private static final int INITIAL_SLOTS = 64;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final int slotSize;
+	private final Map<String, Integer> index;
+	private final ByteBuffer scratch;//where snapshots are built before being copied in
+	private MappedByteBuffer map;
+	private int capacity;//slots that fit in the current mapping
+	private int count;//slots in use
+	private boolean closed;
+
+	/**
+	 * Opens a profile store with the default slot size, creating it if needed.
+	 * @param path - the store file
+	 */
+	public ProfileStore(File path) throws IOException {
+		this(path, DEFAULT_SLOT_SIZE);
+	}
+
+	/**
+	 * Opens a profile store, creating it if needed. An existing store keeps the slot
+	 * size it was created with.
+	 * @param path - the store file
+	 * @param slotSize - the bytes per profile of a newly created store, at most 65535
+	 */
+	public ProfileStore(File path, int slotSize) throws IOException {
+		if (slotSize < NAME_AREA + 2 + 32 || slotSize > 0xFFFF){//Reopening rejects a larger size
+			throw new IllegalArgumentException("Slot size must be " + (NAME_AREA + 2 + 32) + " to 65535: " + slotSize);
+		}
+		file = new RandomAccessFile(path, "rw");
+		channel = file.getChannel();
+		index = new HashMap<String, Integer>();
+		try {
+			if (channel.size() == 0){
+				this.slotSize = slotSize;
+				remap(INITIAL_SLOTS);
+				map.putInt(0, MAGIC);
+				map.putShort(4, VERSION);
+				map.putShort(6, (short) 0);
+				map.putInt(8, slotSize);
+				map.putInt(COUNT_OFFSET, 0);
+				count = 0;
+			}
+			else {
+				this.slotSize = readHeader();
+				remap((int) ((channel.size() - HEADER_SIZE) / this.slotSize));
+				count = map.getInt(COUNT_OFFSET);
+				if (count < 0 || count > capacity){
+					throw new IOException("Corrupt profile store: " + count + " profiles");
+				}
+				buildIndex();
+			}
+		}
+		catch (IOException e){
+			file.close();
+			throw e;
+		}
+		scratch = ByteBuffer.allocate(this.slotSize - NAME_AREA - 2);
+		closed = false;
+	}
+
+	/**
+	 * load
+	 * <p>
+	 * Restores a player's profile into a fresh handler: its counters and the state of
+	 * its computer strategy.
+	 * @param name - the player's name
+	 * @param handler - a handler that has not played yet, whose strategy is of the
+	 * same kind as the one that was saved
+	 * <p>
+	 * @return true if the player had a profile, false if the handler was left as is
+	 * @throws IOException if the saved profile cannot be read into this handler
+	 */
+	public synchronized boolean load(String name, GameHandler handler) throws IOException {
+		Integer slot = index.get(name);
+		if (slot == null){
+			return false;
+		}
+		ByteBuffer view = map.duplicate();
+		int start = slotStart(slot) + NAME_AREA;
+		int length = view.getShort(start) & 0xFFFF;
+		view.position(start + 2);
+		view.limit(start + 2 + length);
+		readSnapshot(view, handler);
+		return true;
+	}
+
+	/**
+	 * save
+	 * <p>
+	 * Saves a player's profile, replacing any earlier one. The profile is written to
+	 * the mapping at once and reaches the disk on flush or close.
+	 * @param name - the player's name
+	 * @param handler - the player's game, whose strategy must be a PersistentStrategy
+	 */
+	public synchronized void save(String name, GameHandler handler) throws IOException {
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		if (nameBytes.length == 0 || nameBytes.length > MAX_NAME_BYTES){
+			throw new IllegalArgumentException("Player names must be 1 to " + MAX_NAME_BYTES + " bytes: " + name);
+		}
+		scratch.clear();
+		try {
+			writeSnapshot(handler, scratch);
+		}
+		catch (java.nio.BufferOverflowException e){
+			throw new IllegalArgumentException("Profile does not fit in a " + slotSize + " byte slot", e);
+		}
+		scratch.flip();
+
+		Integer slot = index.get(name);
+		if (slot == null){
+			if (count == capacity){
+				remap(capacity * 2);
+			}
+			slot = count;
+			int start = slotStart(slot);
+			map.put(start, (byte) nameBytes.length);
+			for (int i = 0; i < nameBytes.length; i++){
+				map.put(start + 1 + i, nameBytes[i]);
+			}
+			count++;
+			index.put(name, slot);
+		}
+		int start = slotStart(slot) + NAME_AREA;
+		map.putShort(start, (short) scratch.remaining());
+		ByteBuffer view = map.duplicate();
+		view.position(start + 2);
+		view.put(scratch);
+		map.putInt(COUNT_OFFSET, count);
+	}
+
+	/**
+	 * contains
+	 * <p>
+	 * Tells whether a player has a saved profile.
+	 * @param name - the player's name
+	 */
+	public synchronized boolean contains(String name){
+		return index.containsKey(name);
+	}
+
+	/**
+	 * size
+	 * <p>
+	 * Gives the number of saved profiles.
+	 */
+	public synchronized int size(){
+		return count;
+	}
+
+	/**
+	 * writeSnapshot
+	 * <p>
+	 * Writes a handler's counters and strategy state in the versioned snapshot form.
+	 * @param handler - the game to save
+	 * @param out - the buffer to write to
+	 */
+	static void writeSnapshot(GameHandler handler, ByteBuffer out){
+		GameStrategy strategy = handler.getStrategy();
+		if (!(strategy instanceof PersistentStrategy)){
+			throw new IllegalArgumentException(strategy.getClass().getName() + " cannot be saved");
+		}
+		out.put(SNAPSHOT_VERSION);
+		out.putInt(handler.getGamesPlayed());
+		out.putInt(handler.getTieGames());
+		out.putInt(handler.getPlayerWins());
+		out.putInt(handler.getCompWins());
+		((PersistentStrategy) strategy).writeState(out);
+	}
+
+	/**
+	 * readSnapshot
+	 * <p>
+	 * Restores a snapshot written by writeSnapshot into a fresh handler.
+	 * @param in - the buffer to read from
+	 * @param handler - the game to restore into
+	 */
+	static void readSnapshot(ByteBuffer in, GameHandler handler) throws IOException {
+		GameStrategy strategy = handler.getStrategy();
+		if (!(strategy instanceof PersistentStrategy)){
+			throw new IllegalArgumentException(strategy.getClass().getName() + " cannot be restored");
+		}
+		try {
+			byte version = in.get();
+			if (version != SNAPSHOT_VERSION){
+				throw new IOException("Unsupported profile version " + version);
+			}
+			int gamesPlayed = in.getInt();
+			int tieGames = in.getInt();
+			int playerWins = in.getInt();
+			int compWins = in.getInt();
+			((PersistentStrategy) strategy).readState(in);
+			handler.restoreTotals(gamesPlayed, tieGames, playerWins, compWins);
+		}
+		catch (java.nio.BufferUnderflowException e){
+			throw new IOException("Truncated profile", e);
+		}
+		catch (IllegalArgumentException e){
+			throw new IOException("Corrupt profile: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * flush
+	 * <p>
+	 * Forces every saved profile to disk.
+	 */
+	public synchronized void flush(){
+		map.force();
+	}
+
+	/**
+	 * close
+	 * <p>
+	 * Flushes the store and closes its file.
+	 */
+	public synchronized void close() throws IOException {
+		if (closed){
+			return;
+		}
+		closed = true;
+		map.force();
+		map = null;
+		file.close();
+	}
+
+	private int slotStart(int slot){
+		return HEADER_SIZE + slot * slotSize;
+	}
+
+	private void remap(int slots) throws IOException {
+		map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * slotSize);
+		capacity = slots;
+	}
+
+	private int readHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		if (channel.size() < HEADER_SIZE){
+			throw new IOException("Not a profile store: too short");
+		}
+		channel.read(header, 0);
+		header.flip();
+		if (header.getInt() != MAGIC){
+			throw new IOException("Not a profile store: bad magic");
+		}
+		short version = header.getShort();
+		if (version != VERSION){
+			throw new IOException("Unsupported profile store version " + version);
+		}
+		header.getShort();
+		int size = header.getInt();
+		if (size < NAME_AREA + 2 || size > 0xFFFF){
+			throw new IOException("Corrupt profile store: slot size " + size);
+		}
+		return size;
+	}
+
+	private void buildIndex() throws IOException {
+		byte[] nameBytes = new byte[MAX_NAME_BYTES];
+		for (int slot = 0; slot < count; slot++){
+			int start = slotStart(slot);
+			int length = map.get(start);
+			if (length < 1 || length > MAX_NAME_BYTES){
+				throw new IOException("Corrupt profile store: bad name in slot " + slot);
+			}
+			for (int i = 0; i < length; i++){
+				nameBytes[i] = map.get(start + 1 + i);
+			}
+			index.put(new String(nameBytes, 0, length, StandardCharsets.UTF_8), slot);
+		}
+	}
+
+}//End of ProfileStore class
@@ -0,0 +1,171 @@
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <b>RoundDispatcher class</b>
+ * <p>
+ * Delivers RoundResults from the thread that plays rounds to any number of
+ * RoundListeners, such as the GUI, a MatchLog and a GameMetrics.Recorder.
+ * <p>
+ * Publishing a result only puts it on a bounded queue, so the round path costs the
+ * same however many listeners there are and however slow they are. A dispatcher
+ * thread takes everything waiting on the queue in one drainTo, into a list that is
+ * reused for every batch, and hands the whole batch to each listener in turn. When
+ * rounds come faster than listeners keep up, the batches simply get larger, up to
+ * the queue's capacity; only then does publishing wait for the listeners, so no
+ * result is ever dropped.
+ */
+public class RoundDispatcher implements Closeable {
+	private static final int DEFAULT_CAPACITY = 1 << 13;
+	private static final RoundResult STOP = new RoundResult(0, GameGesture.NONE, GameGesture.NONE,
+			GameRules.TIE, 0, 0, 0);//queued by close, after the last real result
+
+	private final ArrayBlockingQueue<RoundResult> queue;
+	private final CopyOnWriteArrayList<RoundListener> listeners;
+	private final Thread thread;
+	private volatile boolean closed;
+
+	/**
+	 * Constructs a dispatcher with room for DEFAULT_CAPACITY undelivered results,
+	 * and starts its thread.
+	 */
+	public RoundDispatcher(){
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a dispatcher and starts its thread.
+	 * @param capacity - the most results waiting to be delivered before publishing
+	 * waits
+	 */
+	public RoundDispatcher(int capacity){
+		queue = new ArrayBlockingQueue<RoundResult>(capacity);
+		listeners = new CopyOnWriteArrayList<RoundListener>();
+		thread = new Thread(new Runnable(){
+			public void run(){
+				dispatch();
+			}
+		}, "SPRLK round dispatcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * addListener
+	 * <p>
+	 * Starts delivering results to a listener, from the next batch on.
+	 * @param listener - the listener to add
+	 */
+	public void addListener(RoundListener listener){
+		listeners.add(listener);
+	}
+
+	/**
+	 * removeListener
+	 * <p>
+	 * Stops delivering results to a listener.
+	 * @param listener - the listener to remove
+	 */
+	public void removeListener(RoundListener listener){
+		listeners.remove(listener);
+	}
+
+	/**
+	 * publish
+	 * <p>
+	 * Queues a result for the listeners. Waits only if the queue is full. Results
+	 * must not be published once close has been called.
+	 * @param result - the result of a round
+	 */
+	public void publish(RoundResult result){
+		if (closed){
+			throw new IllegalStateException("RoundDispatcher is closed");
+		}
+		if (!queue.offer(result)){//Listeners are behind, so wait for them
+			putUninterruptibly(result);
+		}
+	}
+
+	/**
+	 * close
+	 * <p>
+	 * Delivers every result already published, then stops the dispatcher thread.
+	 */
+	public void close(){
+		if (closed){
+			return;
+		}
+		closed = true;
+		putUninterruptibly(STOP);
+		boolean interrupted = false;
+		while (thread.isAlive()){
+			try {
+				thread.join();
+			}
+			catch (InterruptedException e){
+				interrupted = true;
+			}
+		}
+		if (interrupted){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void putUninterruptibly(RoundResult result){
+		boolean interrupted = false;
+		while (true){
+			try {
+				queue.put(result);
+				break;
+			}
+			catch (InterruptedException e){
+				interrupted = true;
+			}
+		}
+		if (interrupted){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * dispatch
+	 * <p>
+	 * The dispatcher thread's loop: waits for a result, drains everything behind it
+	 * into the batch, and delivers the batch.
+	 */
+	private void dispatch(){
+		List<RoundResult> batch = new ArrayList<RoundResult>(queue.remainingCapacity());
+		List<RoundResult> view = Collections.unmodifiableList(batch);
+		boolean stopping = false;
+		while (!stopping){
+			try {
+				batch.add(queue.take());
+			}
+			catch (InterruptedException e){
+				continue;//Only close stops the dispatcher
+			}
+			queue.drainTo(batch);
+			if (batch.get(batch.size() - 1) == STOP){//Nothing can be published after it
+				batch.remove(batch.size() - 1);
+				stopping = true;
+			}
+			if (!batch.isEmpty()){
+				for (RoundListener listener : listeners){
+					try {
+						listener.roundsPlayed(view);
+					}
+					catch (RuntimeException e){//One faulty listener does not starve the others
+						Thread current = Thread.currentThread();
+						current.getUncaughtExceptionHandler().uncaughtException(current, e);
+					}
+				}
+			}
+			batch.clear();
+		}
+	}
+
+}//End of RoundDispatcher class
@@ -0,0 +1,21 @@
+import java.util.List;
+
+/**
+ * <b>RoundListener interface</b>
+ * <p>
+ * Receives the results of rounds as they are played, through a RoundDispatcher.
+ * Results come in batches, oldest first, on the dispatcher's own thread, so a
+ * listener never runs on the thread that plays the rounds.
+ */
+public interface RoundListener {
+
+	/**
+	 * roundsPlayed
+	 * <p>
+	 * Handles the rounds played since the last batch.
+	 * @param results - the rounds, oldest first; the list is only valid during the
+	 * call and must not be kept, though the results in it may be
+	 */
+	void roundsPlayed(List<RoundResult> results);
+
+}//End of RoundListener interface
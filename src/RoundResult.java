@@ -0,0 +1,112 @@
+/**
+ * <b>RoundResult class</b>
+ * <p>
+ * An immutable record of one finished round: both gestures, the outcome, and the
+ * game's counters just after the round. A GameHandler with a RoundDispatcher
+ * publishes one for every round it plays, so any number of listeners on other
+ * threads can see the game without ever reading the handler's mutable fields.
+ */
+public final class RoundResult {
+	private static final String[] STATUS = {"Tie Round", "Player Won", "Computer Won"};//by outcome code
+
+	private final int round;
+	private final GameGesture playerGesture;
+	private final GameGesture compGesture;
+	private final byte outcome;
+	private final int tieGames;
+	private final int playerWins;
+	private final int compWins;
+
+	/**
+	 * Constructs a round result.
+	 * @param round - the number of rounds played, counting this one
+	 * @param playerGesture - the gesture the player threw
+	 * @param compGesture - the gesture the computer threw
+	 * @param outcome - the GameRules outcome code
+	 * @param tieGames - the tied rounds so far, counting this one
+	 * @param playerWins - the rounds won by the player so far
+	 * @param compWins - the rounds won by the computer so far
+	 */
+	public RoundResult(int round, GameGesture playerGesture, GameGesture compGesture, byte outcome,
+			int tieGames, int playerWins, int compWins){
+		this.round = round;
+		this.playerGesture = playerGesture;
+		this.compGesture = compGesture;
+		this.outcome = outcome;
+		this.tieGames = tieGames;
+		this.playerWins = playerWins;
+		this.compWins = compWins;
+	}
+
+	/**
+	 * getRound
+	 * <p>
+	 * Gives the number of rounds played, counting this one.
+	 * @return round - the round number, from 1
+	 */
+	public int getRound(){
+		return round;
+	}
+
+	public GameGesture getPlayerGesture(){
+		return playerGesture;
+	}
+
+	public GameGesture getCompGesture(){
+		return compGesture;
+	}
+
+	/**
+	 * getOutcome
+	 * <p>
+	 * Gives who won the round.
+	 * @return outcome - GameRules.TIE, PLAYER_WIN or COMP_WIN
+	 */
+	public byte getOutcome(){
+		return outcome;
+	}
+
+	/**
+	 * getStatus
+	 * <p>
+	 * Describes the outcome the way GameHandler.getGameStatus does.
+	 * @return Tie Round, Player Won or Computer Won
+	 */
+	public String getStatus(){
+		return STATUS[outcome];
+	}
+
+	/**
+	 * getGestureName
+	 * <p>
+	 * Names one side's gesture the way GameHandler.getGesture does.
+	 * @param wantPlayer - whether the player's gesture is wanted, rather than the
+	 * computer's
+	 * <p>
+	 * @return the gesture's name, or None
+	 */
+	public String getGestureName(boolean wantPlayer){
+		GameGesture gesture = wantPlayer ? playerGesture : compGesture;
+		if (gesture == null || gesture == GameGesture.NONE){
+			return "None";
+		}
+		return RuleSet.SPRLK.getGestureName(gesture.ordinal());
+	}
+
+	public int getTieGames(){
+		return tieGames;
+	}
+
+	public int getPlayerWins(){
+		return playerWins;
+	}
+
+	public int getCompWins(){
+		return compWins;
+	}
+
+	public String toString(){
+		return "Round " + round + ": " + getGestureName(true) + " vs " + getGestureName(false) + " - " + getStatus();
+	}
+
+}//End of RoundResult class
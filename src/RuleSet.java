@@ -0,0 +1,384 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <b>RuleSet class</b>
+ * <p>
+ * The rules of a Scissors, Paper, Rock style game with any number of gestures: who
+ * beats whom, kept as data rather than code. Scissors, Paper, Rock, Lizard, Spock
+ * is the 5 gesture rule set SPRLK; larger balanced variants such as RPS-7, RPS-15
+ * or RPS-101 are built with balanced or loaded from a rules file.
+ * <p>
+ * Gestures are numbered from 0. For every gesture the rule set keeps two bitsets,
+ * the gestures it beats and the gestures that beat it, so "does a beat b" is one
+ * word lookup and a shift. The gestures that beat each gesture are also listed in
+ * order of how far back around the rules diagram they sit, so a counter move is
+ * one array lookup. Every pair of different gestures must have exactly one winner.
+ * <p>
+ * A rules file is plain text. Blank lines and lines starting with # are ignored.
+ * <pre>
+ * name RPS-7
+ * gestures Rock Fire Scissors Sponge Paper Air Water
+ * rule next
+ * </pre>
+ * "rule next" makes every gesture beat the (N-1)/2 gestures that follow it around
+ * the list, and "rule odd" makes it beat the gestures an odd number of places after
+ * it, the SPRLK diagram ordering. Instead of a rule line, the wins may be listed one
+ * gesture per line, as in "Rock beats Scissors Lizard". A RuleSet never changes
+ * after it is built and may be shared between threads.
+ */
+public class RuleSet {
+	/**
+	 * The rules of Scissors, Paper, Rock, Lizard, Spock, numbered like GameGesture
+	 */
+	public static final RuleSet SPRLK = balanced("Scissors, Paper, Rock, Lizard, Spock",
+			new String[]{"Scissors", "Paper", "Rock", "Lizard", "Spock"}, false);
+
+	private final String name;
+	private final String[] gestureNames;
+	private final int size;//number of gestures
+	private final int words;//longs per bitset row
+	private final long[] wins;//row g: the gestures that g beats
+	private final long[] losses;//row g: the gestures that beat g
+	private final int[] beaterStart;//where the beaters of g start in beaters
+	private final int[] beaters;//beaters of every gesture, nearest first
+
+	/**
+	 * Constructs a rule set from a win matrix, checking that every pair of different
+	 * gestures has exactly one winner.
+	 * @param name - the name of the game
+	 * @param gestureNames - the gesture names, by gesture number
+	 * @param beats - beats[a][b] is true when gesture a beats gesture b
+	 */
+	public RuleSet(String name, String[] gestureNames, boolean[][] beats){
+		size = gestureNames.length;
+		if (size < 2 || beats.length != size){
+			throw new IllegalArgumentException("A rule set needs at least 2 gestures and a matching win matrix");
+		}
+		this.name = name;
+		this.gestureNames = gestureNames.clone();
+		words = (size + 63) >>> 6;
+		wins = new long[size * words];
+		losses = new long[size * words];
+		for (int a = 0; a < size; a++){
+			for (int b = 0; b < size; b++){
+				if (a == b ? beats[a][b] : beats[a][b] == beats[b][a]){
+					throw new IllegalArgumentException("Gestures " + gestureNames[a] + " and "
+							+ gestureNames[b] + " must have exactly one winner");
+				}
+				if (beats[a][b]){
+					wins[a * words + (b >>> 6)] |= 1L << b;
+					losses[b * words + (a >>> 6)] |= 1L << a;
+				}
+			}
+		}
+		beaterStart = new int[size + 1];
+		List<Integer> order = new ArrayList<Integer>();
+		for (int gesture = 0; gesture < size; gesture++){
+			beaterStart[gesture] = order.size();
+			for (int distance = 1; distance < size; distance++){
+				int candidate = (gesture - distance + size) % size;
+				if (beats[candidate][gesture]){
+					order.add(candidate);
+				}
+			}
+		}
+		beaterStart[size] = order.size();
+		beaters = new int[order.size()];
+		for (int i = 0; i < beaters.length; i++){
+			beaters[i] = order.get(i);
+		}
+	}
+
+	/**
+	 * balanced
+	 * <p>
+	 * Builds a balanced rule set with N gestures named "1" to "N", where every
+	 * gesture beats exactly half of the others.
+	 * @param size - the number of gestures, odd and at least 3
+	 * <p>
+	 * @return the rule set, named RPS-N
+	 */
+	public static RuleSet balanced(int size){
+		String[] names = new String[size];
+		for (int i = 0; i < size; i++){
+			names[i] = Integer.toString(i + 1);
+		}
+		return balanced("RPS-" + size, names, true);
+	}
+
+	/**
+	 * balanced
+	 * <p>
+	 * Builds a balanced rule set over the given gestures.
+	 * @param name - the name of the game
+	 * @param gestureNames - the gesture names in diagram order; an odd number, at
+	 * least 3
+	 * @param next - true if every gesture beats the (N-1)/2 gestures after it, false
+	 * if it beats the gestures an odd number of places after it
+	 * <p>
+	 * @return the rule set
+	 */
+	public static RuleSet balanced(String name, String[] gestureNames, boolean next){
+		int size = gestureNames.length;
+		if (size < 3 || size % 2 == 0){
+			throw new IllegalArgumentException("A balanced rule set needs an odd number of gestures: " + size);
+		}
+		boolean[][] beats = new boolean[size][size];
+		for (int a = 0; a < size; a++){
+			for (int b = 0; b < size; b++){
+				int distance = (b - a + size) % size;
+				if (next){
+					beats[a][b] = distance >= 1 && distance <= size / 2;
+				}
+				else {
+					beats[a][b] = distance % 2 == 1;
+				}
+			}
+		}
+		return new RuleSet(name, gestureNames, beats);
+	}
+
+	/**
+	 * load
+	 * <p>
+	 * Reads a rule set from a rules file.
+	 * @param in - the text of the rules file
+	 * <p>
+	 * @return the rule set
+	 * @throws IOException if the text cannot be read or is not a valid rule set
+	 */
+	public static RuleSet load(Reader in) throws IOException {
+		BufferedReader reader = new BufferedReader(in);
+		String name = "Custom";
+		String[] names = null;
+		String rule = null;
+		Map<String, Integer> numbers = new HashMap<String, Integer>();
+		List<String[]> winLines = new ArrayList<String[]>();
+		String line;
+		int lineNumber = 0;
+		while ((line = reader.readLine()) != null){
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")){
+				continue;
+			}
+			String[] fields = line.split("\\s+");
+			if (fields[0].equals("name")){
+				name = line.substring(4).trim();
+			}
+			else if (fields[0].equals("gestures")){
+				names = new String[fields.length - 1];
+				for (int i = 1; i < fields.length; i++){
+					names[i - 1] = fields[i];
+					if (numbers.put(fields[i], i - 1) != null){
+						throw new IOException("Line " + lineNumber + ": gesture " + fields[i] + " listed twice");
+					}
+				}
+			}
+			else if (fields[0].equals("rule") && fields.length == 2){
+				rule = fields[1];
+			}
+			else if (fields.length >= 3 && fields[1].equals("beats")){
+				winLines.add(fields);
+			}
+			else {
+				throw new IOException("Line " + lineNumber + ": cannot understand \"" + line + "\"");
+			}
+		}
+		if (names == null){
+			throw new IOException("Rules file has no gestures line");
+		}
+		try {
+			if (rule != null){
+				if (!winLines.isEmpty() || !(rule.equals("next") || rule.equals("odd"))){
+					throw new IOException("Rules file must use either rule next, rule odd or beats lines");
+				}
+				return balanced(name, names, rule.equals("next"));
+			}
+			boolean[][] beats = new boolean[names.length][names.length];
+			for (String[] fields : winLines){
+				int winner = number(numbers, fields[0]);
+				for (int i = 2; i < fields.length; i++){
+					beats[winner][number(numbers, fields[i])] = true;
+				}
+			}
+			return new RuleSet(name, names, beats);
+		}
+		catch (IllegalArgumentException e){
+			throw new IOException("Invalid rule set: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * loadResource
+	 * <p>
+	 * Reads a rule set from a rules file on the classpath, such as "rps7.rules".
+	 * @param resource - the resource name
+	 * <p>
+	 * @return the rule set
+	 * @throws IOException if the resource is missing or not a valid rule set
+	 */
+	public static RuleSet loadResource(String resource) throws IOException {
+		InputStream in = RuleSet.class.getResourceAsStream("/" + resource);
+		if (in == null){
+			throw new IOException("Rules file " + resource + " not found on the classpath");
+		}
+		try {
+			return load(new InputStreamReader(in, StandardCharsets.UTF_8));
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static int number(Map<String, Integer> numbers, String gesture) throws IOException {
+		Integer number = numbers.get(gesture);
+		if (number == null){
+			throw new IOException("Unknown gesture " + gesture);
+		}
+		return number;
+	}
+
+	/**
+	 * beats
+	 * <p>
+	 * Tells whether one gesture beats another.
+	 * @param winner - the gesture that might win
+	 * @param loser - the gesture that might lose
+	 * <p>
+	 * @return true if winner beats loser
+	 */
+	public boolean beats(int winner, int loser){
+		return ((wins[winner * words + (loser >>> 6)] >>> loser) & 1) != 0;
+	}
+
+	/**
+	 * outcome
+	 * <p>
+	 * Gives the outcome of a round between two gestures.
+	 * @param player - the player's gesture
+	 * @param comp - the computer's gesture
+	 * <p>
+	 * @return one of GameRules.TIE, GameRules.PLAYER_WIN or GameRules.COMP_WIN
+	 */
+	public byte outcome(int player, int comp){
+		if (player == comp){
+			return GameRules.TIE;
+		}
+		return beats(player, comp) ? GameRules.PLAYER_WIN : GameRules.COMP_WIN;
+	}
+
+	/**
+	 * getBeaterCount
+	 * <p>
+	 * Gives how many gestures beat a gesture.
+	 * @param gesture - the gesture to beat
+	 */
+	public int getBeaterCount(int gesture){
+		return beaterStart[gesture + 1] - beaterStart[gesture];
+	}
+
+	/**
+	 * getBeater
+	 * <p>
+	 * Gives one of the gestures that beat a gesture. Choice 0 is the nearest one
+	 * going back around the rules diagram; in SPRLK it is the gesture physically
+	 * next to the beaten one.
+	 * @param gesture - the gesture to beat
+	 * @param choice - which beater, from 0 to getBeaterCount(gesture) - 1
+	 * <p>
+	 * @return a gesture that beats the given gesture
+	 */
+	public int getBeater(int gesture, int choice){
+		return beaters[beaterStart[gesture] + choice];
+	}
+
+	/**
+	 * hasSameWins
+	 * <p>
+	 * Tells whether two rule sets have the same gestures beating the same gestures,
+	 * whatever the gestures and the games are called.
+	 * @param other - the rules to compare with
+	 * <p>
+	 * @return true if every gesture beats the same gestures under both rules
+	 */
+	public boolean hasSameWins(RuleSet other){
+		return size == other.size && Arrays.equals(wins, other.wins);
+	}
+
+	/**
+	 * getWinWord
+	 * <p>
+	 * Gives 64 bits of the set of gestures that a gesture beats: bit i of word w is
+	 * set when the gesture beats gesture 64 * w + i.
+	 * @param gesture - the winning gesture
+	 * @param word - which 64 gestures, from 0
+	 */
+	public long getWinWord(int gesture, int word){
+		return wins[gesture * words + word];
+	}
+
+	/**
+	 * getLossWord
+	 * <p>
+	 * Gives 64 bits of the set of gestures that beat a gesture: bit i of word w is
+	 * set when gesture 64 * w + i beats it.
+	 * @param gesture - the beaten gesture
+	 * @param word - which 64 gestures, from 0
+	 */
+	public long getLossWord(int gesture, int word){
+		return losses[gesture * words + word];
+	}
+
+	/**
+	 * getWordCount
+	 * <p>
+	 * Gives the number of 64 bit words in each gesture's bitsets.
+	 */
+	public int getWordCount(){
+		return words;
+	}
+
+	/**
+	 * getSize
+	 * <p>
+	 * Gives the number of gestures.
+	 */
+	public int getSize(){
+		return size;
+	}
+
+	/**
+	 * getGestureName
+	 * <p>
+	 * Gives the name of a gesture.
+	 * @param gesture - the gesture number
+	 */
+	public String getGestureName(int gesture){
+		return gestureNames[gesture];
+	}
+
+	/**
+	 * getName
+	 * <p>
+	 * Gives the name of the game these rules are for.
+	 */
+	public String getName(){
+		return name;
+	}
+
+	public String toString(){
+		return name + " (" + size + " gestures)";
+	}
+
+}//End of RuleSet class
@@ -0,0 +1,263 @@
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <b>SPRLKConsole class</b>
+ * <p>
+ * Plays Scissors, Paper, Rock, Lizard, Spock over standard input and output, with no
+ * GUI. Nothing from AWT or Swing is loaded, so it starts in a fraction of the time
+ * the windowed game takes, and it can be played by hand or fed a stream of moves
+ * through a pipe.
+ * <p>
+ * Input is a sequence of gestures separated by spaces, commas or new lines. A
+ * gesture is its name or the first two letters of it (sc, pa, ro, li, sp), in any
+ * case, or its number 1 to 5. The words stats, help and quit are also understood.
+ * Every round prints one line with both gestures and the result, and the game
+ * statistics are printed when the input ends or on quit.
+ * <p>
+ * Input is read and parsed as raw bytes in large blocks, and the line for every
+ * possible round is encoded once at startup, so a round costs no allocation. Output
+ * is buffered and only flushed when all the input so far has been handled, which
+ * keeps piped input at full speed while an interactive player still sees every
+ * answer straight away.
+ * <p>
+ * Usage: java SPRLKConsole [--quiet] [--seed N] [--strategy name], where --quiet
+ * prints only the final statistics and the strategy names are those of
+ * GameSimulator (frequency, windowN, decayF, markovK, markovKc or ensemble).
+ */
+public class SPRLKConsole {
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_WORD = 16;//longer words are only ever unknown
+	private static final int OPTIONS = 5;//number of possible gestures that one can throw
+	private static final GameGesture[] GESTURES = GameGesture.values();
+	private static final String HELP = "Throw a gesture: scissors, paper, rock, lizard or spock "
+			+ "(or sc, pa, ro, li, sp, or 1 to 5). Other commands: stats, help, quit.\n";
+
+	private final GameHandler handler;
+	private final InputStream in;
+	private final OutputStream out;
+	private final boolean quiet;
+	private final byte[][] roundLines;//line printed for each pair of gesture ordinals
+	private final byte[] outBuffer;
+	private int outLength;
+	private final byte[] word;
+	private int wordLength;
+	private boolean quit;
+
+	/**
+	 * Constructs a console game.
+	 * @param handler - the game to play
+	 * @param in - where the moves come from
+	 * @param out - where the results go
+	 * @param quiet - whether to leave out the line for each round
+	 */
+	public SPRLKConsole(GameHandler handler, InputStream in, OutputStream out, boolean quiet){
+		this.handler = handler;
+		this.in = in;
+		this.out = out;
+		this.quiet = quiet;
+		roundLines = new byte[OPTIONS * OPTIONS][];
+		for (int player = 0; player < OPTIONS; player++){
+			for (int comp = 0; comp < OPTIONS; comp++){
+				byte outcome = GameRules.outcome(player, comp);
+				String result = outcome == GameRules.TIE ? "Tie Round"
+						: outcome == GameRules.PLAYER_WIN ? "Player Won" : "Computer Won";
+				String line = "Player: " + RuleSet.SPRLK.getGestureName(player) + ", Computer: "
+						+ RuleSet.SPRLK.getGestureName(comp) + " - " + result + "\n";
+				roundLines[player * OPTIONS + comp] = line.getBytes(StandardCharsets.US_ASCII);
+			}
+		}
+		outBuffer = new byte[BUFFER_SIZE];
+		word = new byte[MAX_WORD];
+	}
+
+	/**
+	 * main
+	 * <p>
+	 * Plays a game between standard input and standard output.
+	 */
+	public static void main(String[] args) throws IOException {
+		boolean quiet = false;
+		long seed = 0;
+		boolean seeded = false;
+		String strategy = "frequency";
+		for (int i = 0; i < args.length; i++){
+			if (args[i].equals("--quiet")){
+				quiet = true;
+			}
+			else if (args[i].equals("--seed") && i + 1 < args.length){
+				seed = Long.parseLong(args[++i]);
+				seeded = true;
+			}
+			else if (args[i].equals("--strategy") && i + 1 < args.length){
+				strategy = args[++i];
+			}
+			else {
+				System.err.println("Usage: java SPRLKConsole [--quiet] [--seed N] [--strategy name]");
+				System.exit(2);
+			}
+		}
+		GameRandom random = seeded ? new GameRandom(seed) : new GameRandom();
+		GameStrategy smarts;
+		if (strategy.equals("frequency")){//Skips loading the simulator for the default
+			smarts = new GameAI(random);
+		}
+		else {
+			smarts = GameSimulator.parseStrategy(strategy).create(random);
+		}
+		SPRLKConsole console = new SPRLKConsole(new GameHandler(smarts),
+				System.in, new FileOutputStream(FileDescriptor.out), quiet);
+		console.run();
+	}
+
+	/**
+	 * run
+	 * <p>
+	 * Plays rounds until the input ends or the player quits, then prints the game
+	 * statistics.
+	 */
+	public void run() throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		while (!quit){
+			if (outLength > 0 && in.available() == 0){//About to wait, so show everything so far
+				flush();
+			}
+			int read = in.read(buffer);
+			if (read < 0){
+				break;
+			}
+			for (int i = 0; i < read && !quit; i++){
+				byte b = buffer[i];
+				if (b == ' ' || b == ',' || b == '\n' || b == '\r' || b == '\t'){
+					endWord();
+				}
+				else {
+					if (wordLength < MAX_WORD){
+						word[wordLength] = b;
+					}
+					wordLength++;
+				}
+			}
+		}
+		endWord();
+		handler.flushMetrics();
+		write(handler.getStats());
+		write("\n");
+		flush();
+	}
+
+	/**
+	 * endWord
+	 * <p>
+	 * Acts on the word just read, if there is one.
+	 */
+	private void endWord() throws IOException {
+		if (wordLength == 0 || quit){
+			wordLength = 0;
+			return;
+		}
+		int gesture = parseGesture();
+		if (gesture >= 0){
+			handler.playGame(GESTURES[gesture]);
+			if (!quiet){
+				write(roundLines[gesture * OPTIONS + handler.getCompGesture().ordinal()]);
+			}
+		}
+		else {
+			String command = new String(word, 0, Math.min(wordLength, MAX_WORD), StandardCharsets.US_ASCII).toLowerCase();
+			if (command.equals("quit") || command.equals("exit")){
+				quit = true;
+			}
+			else if (command.equals("stats")){
+				write(handler.getStats());
+				write("\n");
+			}
+			else if (command.equals("help")){
+				write(HELP);
+			}
+			else {
+				write("Unknown gesture: " + command + " (type help)\n");
+			}
+		}
+		wordLength = 0;
+	}
+
+	/**
+	 * parseGesture
+	 * <p>
+	 * Recognizes a gesture by its number, its first two letters or its whole name.
+	 * @return the gesture ordinal, or -1 if the word is not a gesture
+	 */
+	private int parseGesture(){
+		if (wordLength == 1){
+			int digit = word[0] - '1';
+			return digit >= 0 && digit < OPTIONS ? digit : -1;
+		}
+		if (wordLength > MAX_WORD){
+			return -1;
+		}
+		int first = word[0] | 0x20;//Lower case for letters
+		int second = word[1] | 0x20;
+		int gesture;
+		if (first == 's' && second == 'c'){
+			gesture = 0;
+		}
+		else if (first == 'p' && second == 'a'){
+			gesture = 1;
+		}
+		else if (first == 'r' && second == 'o'){
+			gesture = 2;
+		}
+		else if (first == 'l' && second == 'i'){
+			gesture = 3;
+		}
+		else if (first == 's' && second == 'p'){
+			gesture = 4;
+		}
+		else {
+			return -1;
+		}
+		if (wordLength == 2){
+			return gesture;
+		}
+		String name = RuleSet.SPRLK.getGestureName(gesture);
+		if (wordLength != name.length()){
+			return -1;
+		}
+		for (int i = 2; i < wordLength; i++){
+			if ((word[i] | 0x20) != Character.toLowerCase(name.charAt(i))){
+				return -1;
+			}
+		}
+		return gesture;
+	}
+
+	private void write(byte[] bytes) throws IOException {
+		if (outLength + bytes.length > outBuffer.length){
+			flush();
+		}
+		if (bytes.length > outBuffer.length){
+			out.write(bytes);
+			return;
+		}
+		System.arraycopy(bytes, 0, outBuffer, outLength, bytes.length);
+		outLength += bytes.length;
+	}
+
+	private void write(String text) throws IOException {
+		write(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void flush() throws IOException {
+		if (outLength > 0){
+			out.write(outBuffer, 0, outLength);
+			outLength = 0;
+		}
+		out.flush();
+	}
+
+}//End of SPRLKConsole class
@@ -4,15 +4,19 @@ import javax.swing.JFrame;
  * <b>SPRLKGame Class</b>
  * <p>
  * Creates a Scissors, Paper, Rock, Lizard, Spock game with a visual GUI.
+ * <p>
+ * The game's metrics are published over JMX as GameMetrics.OBJECT_NAME, so they 
+ * can be watched with jconsole while the game runs.
  * @author James Wen - jrw2175
  */
 
 public class SPRLKGame {
 	public static void main(String[] args){
+		GameMetrics.registerMBean();
 		JFrame SPRLKFrame = new JFrame("Scissors, Paper, Rock, Lizard, Spock");
 		SPRLKFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		SPRLKFrame.getContentPane().add(new GamePanel());
 		SPRLKFrame.pack();
 		SPRLKFrame.setVisible(true);
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,28 @@
+/**
+ * <b>ScriptedPlayer interface</b>
+ * <p>
+ * A non-human player that throws gestures according to a fixed script, used to
+ * exercise GameAI without going through the GUI.
+ * <p>
+ * Implementations are not thread-safe; each simulated session gets its own player.
+ */
+public interface ScriptedPlayer {
+
+	/**
+	 * nextGesture
+	 * <p>
+	 * Decides what gesture the scripted player throws next.
+	 * @return the gesture to throw
+	 */
+	GameGesture nextGesture();
+
+	/**
+	 * observe
+	 * <p>
+	 * Tells the scripted player how the last round went.
+	 * @param playerGesture - the gesture that this player threw
+	 * @param compGesture - the gesture that the computer threw
+	 */
+	void observe(GameGesture playerGesture, GameGesture compGesture);
+
+}//End of ScriptedPlayer interface
@@ -0,0 +1,33 @@
+/**
+ * <b>ScriptedStrategy class</b>
+ * <p>
+ * Lets a ScriptedPlayer take part wherever a GameStrategy is expected, for example
+ * in a League against the computer strategies. The scripted player throws its
+ * gestures as the strategy's own, and sees the other side as the computer.
+ */
+public class ScriptedStrategy implements GameStrategy {
+	private final ScriptedPlayer player;
+
+	/**
+	 * Constructs a strategy that plays as the given scripted player.
+	 * @param player - the scripted player to adapt
+	 */
+	public ScriptedStrategy(ScriptedPlayer player){
+		this.player = player;
+	}
+
+	public GameGesture chooseGesture(int gamesPlayed){
+		return player.nextGesture();
+	}
+
+	/**
+	 * inputRound
+	 * <p>
+	 * Passes the round on with the sides swapped: the scripted player's own gesture
+	 * is the strategy's gesture, and its opponent is the other side.
+	 */
+	public void inputRound(GameGesture playerGesture, GameGesture compGesture){
+		player.observe(compGesture, playerGesture);
+	}
+
+}//End of ScriptedStrategy class
@@ -0,0 +1,214 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <b>SessionEngine class</b>
+ * <p>
+ * Hosts many concurrent games in one JVM. Creates, looks up and retires GameSessions
+ * (a GameHandler and its GameAI) by session id, and keeps global totals over every
+ * round played.
+ * <p>
+ * Each session runs its work serially on a shared fork/join pool (see GameSession),
+ * so the number of threads does not grow with the number of players. The project
+ * targets Java 7, which has no virtual threads; per-session queues give the same
+ * one-interaction-at-a-time model without a thread per player. Sessions live in a
+ * concurrent map and global totals are kept in StripedCounters, so no lock is
+ * shared between sessions.
+ * <p>
+ * Each session's AI gets its own GameRandom derived from the engine seed and the
+ * session id, so sessions never share a random generator and a session's play can
+ * be replayed from the seed.
+ */
+public class SessionEngine {
+	private final ConcurrentHashMap<Long, GameSession> sessions;
+	private final AtomicLong nextId;
+	private final long seed;
+	private final ExecutorService executor;
+	private final StripedCounter roundsPlayed;
+	private final StripedCounter tieGames;
+	private final StripedCounter playerWins;
+	private final StripedCounter compWins;
+	private final StripedCounter sessionsCreated;
+	private final StripedCounter sessionsRetired;
+
+	/**
+	 * Constructs an engine running on a pool sized for the available processors.
+	 */
+	public SessionEngine(){
+		this(new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+				ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true), new GameRandom().nextLong());
+	}
+
+	/**
+	 * Constructs an engine that runs session work on the given executor.
+	 * @param executor - the executor shared by all sessions
+	 * @param seed - the master seed that every session's random source derives from
+	 */
+	public SessionEngine(ExecutorService executor, long seed){
+		this.executor = executor;
+		this.seed = seed;
+		sessions = new ConcurrentHashMap<Long, GameSession>();
+		nextId = new AtomicLong(1);
+		roundsPlayed = new StripedCounter();
+		tieGames = new StripedCounter();
+		playerWins = new StripedCounter();
+		compWins = new StripedCounter();
+		sessionsCreated = new StripedCounter();
+		sessionsRetired = new StripedCounter();
+	}
+
+	/**
+	 * createSession
+	 * <p>
+	 * Starts a new session with a fresh GameAI seeded from the engine seed.
+	 * @return id - the id of the new session
+	 */
+	public long createSession(){
+		return createSession(PreferenceTieBreak.FIXED_ORDER);
+	}
+
+	/**
+	 * createSession
+	 * <p>
+	 * Starts a new session with a fresh GameAI that uses the given tie-breaking
+	 * policy.
+	 * @param tieBreak - the AI's preference tie-breaking policy
+	 * <p>
+	 * @return id - the id of the new session
+	 */
+	public long createSession(PreferenceTieBreak tieBreak){
+		return createSession(tieBreak, GameMemory.UNLIMITED);
+	}
+
+	/**
+	 * createSession
+	 * <p>
+	 * Starts a new session with a fresh GameAI that uses the given tie-breaking
+	 * policy and memory. Long-lived sessions should use a window or decay, so the AI
+	 * keeps up with a player who changes style.
+	 * @param tieBreak - the AI's preference tie-breaking policy
+	 * @param memory - which of the player's past gestures the AI counts
+	 * <p>
+	 * @return id - the id of the new session
+	 */
+	public long createSession(PreferenceTieBreak tieBreak, GameMemory memory){
+		long id = nextId.getAndIncrement();
+		GameAI smarts = new GameAI(RuleSet.SPRLK, tieBreak, memory, GameRandom.forStream(seed, id));
+		sessions.put(id, new GameSession(id, new GameHandler(smarts), executor, this));
+		sessionsCreated.increment();
+		return id;
+	}
+
+	/**
+	 * getSession
+	 * <p>
+	 * Looks up a live session.
+	 * @param id - the session id
+	 * <p>
+	 * @return the session, or null if there is no live session with that id
+	 */
+	public GameSession getSession(long id){
+		return sessions.get(id);
+	}
+
+	/**
+	 * play
+	 * <p>
+	 * Queues a round in the given session.
+	 * @param id - the session id
+	 * @param playerGesture - the gesture chosen by the player
+	 * <p>
+	 * @return a future holding the round's GameRules outcome code
+	 */
+	public Future<Byte> play(long id, GameGesture playerGesture){
+		GameSession session = sessions.get(id);
+		if (session == null){
+			throw new IllegalArgumentException("No live session with id " + id);
+		}
+		return session.play(playerGesture);
+	}
+
+	/**
+	 * retireSession
+	 * <p>
+	 * Removes a session from the engine. Work already queued in it still runs.
+	 * @param id - the session id
+	 * <p>
+	 * @return the retired session, or null if there was no live session with that id
+	 */
+	public GameSession retireSession(long id){
+		GameSession session = sessions.remove(id);
+		if (session != null){
+			session.retire();
+			sessionsRetired.increment();
+		}
+		return session;
+	}
+
+	/**
+	 * recordRound
+	 * <p>
+	 * Adds a finished round to the global totals. Called from session work.
+	 */
+	void recordRound(byte outcome){
+		roundsPlayed.increment();
+		if (outcome == GameRules.TIE){
+			tieGames.increment();
+		}
+		else if (outcome == GameRules.PLAYER_WIN){
+			playerWins.increment();
+		}
+		else {
+			compWins.increment();
+		}
+	}
+
+	public int getActiveSessions(){
+		return sessions.size();
+	}
+
+	public long getSessionsCreated(){
+		return sessionsCreated.sum();
+	}
+
+	public long getSessionsRetired(){
+		return sessionsRetired.sum();
+	}
+
+	public long getRoundsPlayed(){
+		return roundsPlayed.sum();
+	}
+
+	public long getTieGames(){
+		return tieGames.sum();
+	}
+
+	public long getPlayerWins(){
+		return playerWins.sum();
+	}
+
+	public long getCompWins(){
+		return compWins.sum();
+	}
+
+	/**
+	 * shutdown
+	 * <p>
+	 * Retires every session and waits for queued work to finish.
+	 * @param timeout - how long to wait, in milliseconds
+	 * <p>
+	 * @return true if all work finished within the timeout
+	 */
+	public boolean shutdown(long timeout) throws InterruptedException {
+		for (Long id : sessions.keySet()){
+			retireSession(id);
+		}
+		executor.shutdown();
+		return executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+	}
+
+}//End of SessionEngine class
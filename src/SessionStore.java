@@ -0,0 +1,472 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <b>SessionStore class</b>
+ * <p>
+ * Keeps millions of dormant game sessions resident without keeping their objects.
+ * A live session is a GameHandler with its GameAI, GameStatistics and recorders,
+ * about 500 bytes of heap in a dozen or more objects; a dormant one here is a
+ * single fixed-size slot of off-heap memory holding the ProfileStore snapshot of
+ * its counters and strategy state followed by the rest of its GameStatistics, and
+ * an entry of at most 32 bytes in a LongLongMap from the player id to the slot. The
+ * garbage collector sees a few direct buffers and two long arrays, however many
+ * sessions there are.
+ * <p>
+ * checkout hydrates a player's session into a live GameHandler, made by the
+ * store's StrategyFactory, and checkin writes it back to its slot and lets the
+ * objects go, so only active players have live objects. A session checked out again
+ * has the per-gesture counts, streaks and rolling window it was checked in with, as
+ * well as its counters and strategy state. A hydrated strategy gets a
+ * random stream numbered by the player id and the games played so far. Checking
+ * out a session that is already checked out gives the same handler. Slots are
+ * carved from direct buffers of SLOTS_PER_BLOCK slots each, and the slots of
+ * removed sessions go on a free list for reuse.
+ * <p>
+ * Each slot holds the player id, a 2 byte length (0 for a free slot), the snapshot
+ * and the statistics as written by GameStatistics.writeDetails. write saves the
+ * store to a file of a 16 byte header (the magic bytes "SPSS", a 2 byte version, 2
+ * reserved bytes, the slot size and the number of slots) followed by the slots
+ * exactly as they are in memory, so a snapshot is a bulk copy of the blocks; read
+ * loads one back the same way and rebuilds the index.
+ * Sessions that are checked out are written as they were when last checked in.
+ * A SessionStore may be shared between threads, but a checked out handler belongs
+ * to its caller until checkin.
+ * <p>
+ * Usage: java SessionStore [players] [rounds] [seed]
+ */
+public class SessionStore {
+	/**
+	 * Slot size used when none is given, enough for SPRLK GameAI sessions with
+	 * unlimited or decaying memory and the default rolling window
+	 */
+	public static final int DEFAULT_SLOT_SIZE = 224;
+
+	static final int MAGIC = 0x53505353;//"SPSS"
+	static final short VERSION = 2;
+	private static final int HEADER_SIZE = 16;
+	private static final int SLOTS_PER_BLOCK = 1 << 14;
+	private static final int ID_SIZE = 8;
+	private static final int SLOT_HEADER = ID_SIZE + 2;//id and snapshot length
+
+	private final StrategyFactory strategy;
+	private final long seed;
+	private final int slotSize;
+	private final List<ByteBuffer> blocks;
+	private final LongLongMap index;//player id plus one to slot
+	private final Map<Long, GameHandler> active;
+	private final ByteBuffer scratch;//where snapshots are built before being copied in
+	private int slots;//slots ever used, free or not
+	private int[] free;//stack of free slots
+	private int freeCount;
+
+	/**
+	 * Constructs an empty store with the default slot size.
+	 * @param strategy - creates the computer strategy of each hydrated session, which
+	 * must be a PersistentStrategy
+	 * @param seed - the master seed that every session's random source derives from
+	 */
+	public SessionStore(StrategyFactory strategy, long seed){
+		this(strategy, seed, DEFAULT_SLOT_SIZE);
+	}
+
+	/**
+	 * Constructs an empty store.
+	 * @param strategy - creates the computer strategy of each hydrated session, which
+	 * must be a PersistentStrategy
+	 * @param seed - the master seed that every session's random source derives from
+	 * @param slotSize - the bytes per session
+	 */
+	public SessionStore(StrategyFactory strategy, long seed, int slotSize){
+		if (slotSize < SLOT_HEADER + 32 || slotSize > 0xFFFF){
+			throw new IllegalArgumentException("Slot size must be " + (SLOT_HEADER + 32) + " to 65535: " + slotSize);
+		}
+		this.strategy = strategy;
+		this.seed = seed;
+		this.slotSize = slotSize;
+		blocks = new ArrayList<ByteBuffer>();
+		index = new LongLongMap(SLOTS_PER_BLOCK);
+		active = new HashMap<Long, GameHandler>();
+		scratch = ByteBuffer.allocate(slotSize - SLOT_HEADER);
+		free = new int[16];
+	}
+
+	/**
+	 * checkout
+	 * <p>
+	 * Gives a player's live session, hydrating it from its slot if it is dormant, or
+	 * starting a new one if the player has none.
+	 * @param id - the player's id, 0 or more
+	 * <p>
+	 * @return the session's handler
+	 * @throws IOException if the stored session cannot be read into a new handler
+	 */
+	public synchronized GameHandler checkout(long id) throws IOException {
+		checkId(id);
+		GameHandler handler = active.get(id);
+		if (handler != null){
+			return handler;
+		}
+		int slot = (int) index.get(id + 1, -1);
+		if (slot < 0){
+			handler = new GameHandler(strategy.create(randomFor(id, 0)));
+		}
+		else {
+			ByteBuffer view = blockOf(slot).duplicate();
+			int start = offsetOf(slot);
+			view.position(start + SLOT_HEADER);
+			view.limit(start + SLOT_HEADER + (view.getShort(start + ID_SIZE) & 0xFFFF));
+			int gamesPlayed = view.getInt(start + SLOT_HEADER + 1);//After the snapshot version
+			handler = new GameHandler(strategy.create(randomFor(id, gamesPlayed)));
+			ProfileStore.readSnapshot(view, handler);
+			handler.getStatistics().readDetails(view);
+		}
+		active.put(id, handler);
+		return handler;
+	}
+
+	/**
+	 * checkin
+	 * <p>
+	 * Writes a checked out session back to its slot and drops its live objects. The
+	 * handler must not be used afterwards.
+	 * @param id - the player's id
+	 */
+	public synchronized void checkin(long id){
+		GameHandler handler = active.get(id);
+		if (handler == null){
+			throw new IllegalArgumentException("Session " + id + " is not checked out");
+		}
+		handler.flushMetrics();
+		store(id, handler);
+		active.remove(id);
+	}
+
+	/**
+	 * store
+	 * <p>
+	 * Writes a session's snapshot to the player's slot, taking a slot if the player
+	 * has none.
+	 */
+	private void store(long id, GameHandler handler){
+		scratch.clear();
+		try {
+			ProfileStore.writeSnapshot(handler, scratch);
+			handler.getStatistics().writeDetails(scratch);
+		}
+		catch (java.nio.BufferOverflowException e){
+			throw new IllegalArgumentException("Session does not fit in a " + slotSize + " byte slot", e);
+		}
+		scratch.flip();
+		int slot = (int) index.get(id + 1, -1);
+		if (slot < 0){
+			slot = takeSlot();
+			index.put(id + 1, slot);
+		}
+		ByteBuffer block = blockOf(slot);
+		int start = offsetOf(slot);
+		block.putLong(start, id);
+		block.putShort(start + ID_SIZE, (short) scratch.remaining());
+		ByteBuffer view = block.duplicate();
+		view.position(start + SLOT_HEADER);
+		view.put(scratch);
+	}
+
+	/**
+	 * remove
+	 * <p>
+	 * Forgets a player's session, live or dormant, and frees its slot.
+	 * @param id - the player's id
+	 * <p>
+	 * @return true if the player had a session
+	 */
+	public synchronized boolean remove(long id){
+		checkId(id);
+		boolean live = active.remove(id) != null;
+		int slot = (int) index.remove(id + 1, -1);
+		if (slot < 0){
+			return live;
+		}
+		blockOf(slot).putShort(offsetOf(slot) + ID_SIZE, (short) 0);
+		if (freeCount == free.length){
+			free = Arrays.copyOf(free, free.length * 2);
+		}
+		free[freeCount++] = slot;
+		return true;
+	}
+
+	/**
+	 * contains
+	 * <p>
+	 * Tells whether a player has a session, live or dormant.
+	 * @param id - the player's id
+	 */
+	public synchronized boolean contains(long id){
+		return active.containsKey(id) || index.get(id + 1, -1) >= 0;
+	}
+
+	/**
+	 * size
+	 * <p>
+	 * Gives the number of sessions with a slot, which is every session that has
+	 * been checked in at least once.
+	 */
+	public synchronized int size(){
+		return index.size();
+	}
+
+	/**
+	 * getActiveSessions
+	 * <p>
+	 * Gives the number of sessions checked out.
+	 */
+	public synchronized int getActiveSessions(){
+		return active.size();
+	}
+
+	/**
+	 * getOffHeapBytes
+	 * <p>
+	 * Gives the direct memory taken by the slots.
+	 */
+	public synchronized long getOffHeapBytes(){
+		return (long) blocks.size() * SLOTS_PER_BLOCK * slotSize;
+	}
+
+	public int getSlotSize(){
+		return slotSize;
+	}
+
+	/**
+	 * write
+	 * <p>
+	 * Saves every stored session to a file, replacing its contents.
+	 * @param path - the file to write
+	 */
+	public synchronized void write(File path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "rw");
+		try {
+			FileChannel channel = file.getChannel();
+			channel.truncate(0);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putShort(VERSION);
+			header.putShort((short) 0);
+			header.putInt(slotSize);
+			header.putInt(slots);
+			header.flip();
+			writeFully(channel, header);
+			for (int block = 0; block < blocks.size(); block++){
+				int used = Math.min(SLOTS_PER_BLOCK, slots - block * SLOTS_PER_BLOCK);
+				ByteBuffer view = blocks.get(block).duplicate();
+				view.clear();
+				view.limit(used * slotSize);
+				writeFully(channel, view);
+			}
+			channel.force(false);
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * read
+	 * <p>
+	 * Loads a store saved by write. Every session in it starts dormant.
+	 * @param path - the file to read
+	 * @param strategy - creates the computer strategy of each hydrated session, of the
+	 * same kind as the one that wrote the sessions
+	 * @param seed - the master seed that every session's random source derives from
+	 * <p>
+	 * @return the loaded store
+	 * @throws IOException if the file cannot be read or is not a valid store
+	 */
+	public static SessionStore read(File path, StrategyFactory strategy, long seed) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header, "header");
+			header.flip();
+			if (header.getInt() != MAGIC){
+				throw new IOException("Not a session store: bad magic");
+			}
+			short version = header.getShort();
+			if (version != VERSION){
+				throw new IOException("Unsupported session store version " + version);
+			}
+			header.getShort();
+			int slotSize = header.getInt();
+			int slots = header.getInt();
+			if (slotSize < SLOT_HEADER + 32 || slotSize > 0xFFFF || slots < 0
+					|| channel.size() != HEADER_SIZE + (long) slots * slotSize){
+				throw new IOException("Corrupt session store: " + slots + " slots of " + slotSize + " bytes");
+			}
+			SessionStore store = new SessionStore(strategy, seed, slotSize);
+			while (store.slots < slots){
+				int used = Math.min(SLOTS_PER_BLOCK, slots - store.slots);
+				ByteBuffer block = store.addBlock();
+				block.limit(used * slotSize);
+				readFully(channel, block, "slots");
+				block.clear();
+				for (int i = 0; i < used; i++){
+					store.loadSlot(store.slots++);
+				}
+			}
+			return store;
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * loadSlot
+	 * <p>
+	 * Indexes a slot that was just read from a file, or frees it if it is empty.
+	 */
+	private void loadSlot(int slot) throws IOException {
+		ByteBuffer block = blockOf(slot);
+		int start = offsetOf(slot);
+		long id = block.getLong(start);
+		int length = block.getShort(start + ID_SIZE) & 0xFFFF;
+		if (length == 0){
+			if (freeCount == free.length){
+				free = Arrays.copyOf(free, free.length * 2);
+			}
+			free[freeCount++] = slot;
+			return;
+		}
+		if (id < 0 || id == Long.MAX_VALUE || length < 5 || length > slotSize - SLOT_HEADER
+				|| index.get(id + 1, -1) >= 0){
+			throw new IOException("Corrupt session store: bad slot " + slot);
+		}
+		index.put(id + 1, slot);
+	}
+
+	/**
+	 * randomFor
+	 * <p>
+	 * Gives the random source of a session hydrated after the given number of games.
+	 * The generator's state is not stored, so each hydration starts a stream of its
+	 * own rather than repeating the choices made after the previous one.
+	 */
+	private GameRandom randomFor(long id, int gamesPlayed){
+		return GameRandom.forStream(GameRandom.forStream(seed, id).nextLong(), gamesPlayed);
+	}
+
+	private int takeSlot(){
+		if (freeCount > 0){
+			return free[--freeCount];
+		}
+		if (slots == blocks.size() * SLOTS_PER_BLOCK){
+			addBlock();
+		}
+		return slots++;
+	}
+
+	private ByteBuffer addBlock(){
+		ByteBuffer block = ByteBuffer.allocateDirect(SLOTS_PER_BLOCK * slotSize);
+		blocks.add(block);
+		return block;
+	}
+
+	private ByteBuffer blockOf(int slot){
+		return blocks.get(slot / SLOTS_PER_BLOCK);
+	}
+
+	private int offsetOf(int slot){
+		return (slot % SLOTS_PER_BLOCK) * slotSize;
+	}
+
+	private static void checkId(long id){
+		if (id < 0 || id == Long.MAX_VALUE){
+			throw new IllegalArgumentException("Player ids must be 0 to Long.MAX_VALUE - 1: " + id);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, String what) throws IOException {
+		while (buffer.hasRemaining()){
+			if (channel.read(buffer) < 0){
+				throw new IOException("Truncated session store " + what);
+			}
+		}
+	}
+
+	/**
+	 * main
+	 * <p>
+	 * Plays a few rounds for each of many players, checking every session out and
+	 * back in, then saves and reloads the store, and prints the memory per dormant
+	 * session against that of a live handler.
+	 */
+	public static void main(String[] args) throws IOException {
+		int players = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+		GameGesture[] gestures = {GameGesture.SCISSORS, GameGesture.PAPER, GameGesture.ROCK,
+			GameGesture.LIZARD, GameGesture.SPOCK};
+		StrategyFactory strategy = GameSimulator.parseStrategy("frequency");
+		SessionStore store = new SessionStore(strategy, seed);
+		GameRandom random = new GameRandom(seed);
+		long start = System.nanoTime();
+		for (int pass = 0; pass < 2; pass++){
+			for (int player = 0; player < players; player++){
+				GameHandler handler = store.checkout(player);
+				for (int round = 0; round < rounds; round++){
+					handler.playGame(gestures[random.nextInt(gestures.length)]);
+				}
+				store.checkin(player);
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%d sessions, %d checkouts in %.2f s (%.2f us each with %d rounds)",
+				store.size(), 2L * players, seconds, seconds * 1e6 / (2L * players), rounds));
+		System.out.println(String.format("Off heap: %.1f MB, %.0f bytes per session",
+				store.getOffHeapBytes() / 1e6, (double) store.getOffHeapBytes() / store.size()));
+
+		File file = File.createTempFile("sprlk-sessions", ".dat");
+		try {
+			start = System.nanoTime();
+			store.write(file);
+			double written = (System.nanoTime() - start) / 1e9;
+			start = System.nanoTime();
+			SessionStore loaded = read(file, strategy, seed);
+			double read = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("Snapshot of %.1f MB written in %.2f s, read in %.2f s (%d sessions)",
+					file.length() / 1e6, written, read, loaded.size()));
+		}
+		finally {
+			file.delete();
+		}
+
+		int sample = Math.min(players, 10000);
+		GameHandler[] live = new GameHandler[sample];
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		long before = runtime.totalMemory() - runtime.freeMemory();
+		for (int player = 0; player < sample; player++){
+			live[player] = store.checkout(player);
+		}
+		System.gc();
+		long after = runtime.totalMemory() - runtime.freeMemory();
+		System.out.println(String.format("Live handler: about %d bytes of heap each (%d checked out)",
+				(after - before) / sample, store.getActiveSessions()));
+	}
+
+}//End of SessionStore class
@@ -0,0 +1,204 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import javax.swing.*;
+
+/**
+ * <b>StatsChartPanel Class</b>
+ * <p>
+ * A live chart of a game's statistics: the player's win rate, the tie rate and the
+ * computer's win rate over the rolling window of GameStatistics, as lines that
+ * scroll from right to left, and how often each side has thrown each gesture, as
+ * bars.
+ * <p>
+ * refresh takes a snapshot of the statistics and, if rounds were played since the
+ * last one, adds the rolling rates as a new sample to fixed-size float ring buffers.
+ * The lines are drawn into a cached back buffer: a new sample scrolls the image one
+ * step to the left with copyArea and draws just the newest step, and the whole
+ * image is only drawn from the ring buffers when it is first created. Painting the
+ * panel copies that image and draws ten bars, so it costs the same whether the
+ * session has lasted a hundred rounds or a hundred million.
+ * <p>
+ * The owner decides how often refresh is called; GamePanel calls it once per frame,
+ * so a sample covers every round played during that frame.
+ * <p>
+ * Must only be used on the EDT; the statistics may be recorded on any one thread.
+ */
+@SuppressWarnings("serial")//Never serialized
+public class StatsChartPanel extends JPanel
+{
+	private static final int HISTORY = 150;//samples shown
+	private static final int STEP = 3;//pixels between samples
+	private static final int CHART_WIDTH = HISTORY * STEP;
+	private static final int CHART_HEIGHT = 100;
+	private static final int BAR_WIDTH = 18;
+	private static final int MARGIN = 8;
+	private static final int OPTIONS = 5;//number of possible gestures that one can throw
+	private static final GameGesture[] GESTURES = {GameGesture.SCISSORS, GameGesture.PAPER,
+		GameGesture.ROCK, GameGesture.LIZARD, GameGesture.SPOCK};
+	private static final Color PLAYER_COLOR = new Color(0, 130, 0);
+	private static final Color TIE_COLOR = Color.darkGray;
+	private static final Color COMP_COLOR = new Color(200, 0, 0);
+	private static final Color CHART_BACKGROUND = Color.white;
+	private static final Color GRID_COLOR = new Color(225, 225, 225);
+
+	private final GameStatistics statistics;
+	private final GameStatistics.Snapshot snapshot;
+	private final float[] playerRates;//ring buffers of percentages, oldest at next once full
+	private final float[] tieRates;
+	private final float[] compRates;
+	private int next;//where the next sample goes
+	private int filled;//samples held, up to HISTORY
+	private long sampledRounds;//rounds played when the newest sample was taken
+	private BufferedImage chart;//the lines, kept between paints
+	private Graphics2D chartGraphics;
+	private final String[] gestureLabels;
+
+	/**
+	 * Constructs a chart of the given statistics. Nothing is sampled until refresh
+	 * is called.
+	 * @param statistics - the statistics to chart
+	 */
+	public StatsChartPanel(GameStatistics statistics){
+		this.statistics = statistics;
+		snapshot = new GameStatistics.Snapshot();
+		playerRates = new float[HISTORY];
+		tieRates = new float[HISTORY];
+		compRates = new float[HISTORY];
+		sampledRounds = -1;
+		gestureLabels = new String[OPTIONS];
+		for (int i = 0; i < OPTIONS; i++){
+			gestureLabels[i] = RuleSet.SPRLK.getGestureName(i).substring(0, 2);
+		}
+		setPreferredSize(new Dimension(CHART_WIDTH + 2 * OPTIONS * (BAR_WIDTH + 2) + 5 * MARGIN,
+				CHART_HEIGHT + 4 * MARGIN));
+	}
+
+	/**
+	 * refresh
+	 * <p>
+	 * Samples the statistics, and adds the rolling rates to the chart if any rounds
+	 * were played since the last sample.
+	 */
+	public void refresh(){
+		statistics.snapshot(snapshot);
+		if (snapshot.getRounds() == sampledRounds){
+			return;
+		}
+		sampledRounds = snapshot.getRounds();
+		playerRates[next] = (float) snapshot.getWindowPlayerWinRate();
+		tieRates[next] = (float) snapshot.getWindowTieRate();
+		compRates[next] = (float) snapshot.getWindowCompWinRate();
+		next = (next + 1) % HISTORY;
+		if (filled < HISTORY){
+			filled++;
+		}
+		if (chart != null){//Scrolls the lines one step and draws only the newest one
+			chartGraphics.copyArea(STEP, 0, CHART_WIDTH - STEP, CHART_HEIGHT, -STEP, 0);
+			drawStep(CHART_WIDTH - STEP, filled - 1);
+		}
+		repaint();
+	}
+
+	/**
+	 * paintComponent
+	 * <p>
+	 * Copies the cached lines to the screen and draws the gesture bars and legend.
+	 */
+	protected void paintComponent(Graphics page){
+		super.paintComponent(page);
+		if (chart == null){
+			createChart();
+		}
+		page.drawImage(chart, MARGIN, MARGIN, null);
+		page.setColor(Color.black);
+		page.drawRect(MARGIN - 1, MARGIN - 1, CHART_WIDTH + 1, CHART_HEIGHT + 1);
+		int legendY = CHART_HEIGHT + 3 * MARGIN;
+		page.setColor(PLAYER_COLOR);
+		page.drawString("Player wins", MARGIN, legendY);
+		page.setColor(TIE_COLOR);
+		page.drawString("Ties", MARGIN + 90, legendY);
+		page.setColor(COMP_COLOR);
+		page.drawString("Computer wins (last " + statistics.getWindowSize() + " rounds)", MARGIN + 140, legendY);
+
+		int barsX = CHART_WIDTH + 3 * MARGIN;
+		drawBars(page, barsX, "Player", PLAYER_COLOR, true);
+		drawBars(page, barsX + OPTIONS * (BAR_WIDTH + 2) + MARGIN, "Computer", COMP_COLOR, false);
+	}
+
+	/**
+	 * createChart
+	 * <p>
+	 * Creates the back buffer and draws every sample held into it. Only happens on
+	 * the first paint.
+	 */
+	private void createChart(){
+		chart = new BufferedImage(CHART_WIDTH, CHART_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		chartGraphics = chart.createGraphics();
+		chartGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		for (int step = 0; step < HISTORY; step++){
+			drawStep(step * STEP, step - (HISTORY - filled));
+		}
+	}
+
+	/**
+	 * drawStep
+	 * <p>
+	 * Draws one step of the chart: its background and grid, and the lines from the
+	 * previous sample to the given one.
+	 * @param x - the left edge of the step in the back buffer
+	 * @param sample - which sample the step ends at, 0 being the oldest held; a
+	 * negative sample leaves the step empty
+	 */
+	private void drawStep(int x, int sample){
+		chartGraphics.setColor(CHART_BACKGROUND);
+		chartGraphics.fillRect(x, 0, STEP, CHART_HEIGHT);
+		chartGraphics.setColor(GRID_COLOR);
+		for (int quarter = 1; quarter < 4; quarter++){
+			int y = CHART_HEIGHT * quarter / 4;
+			chartGraphics.drawLine(x, y, x + STEP - 1, y);
+		}
+		if (sample < 0){
+			return;
+		}
+		int index = (next - filled + sample + HISTORY) % HISTORY;
+		int previous = sample == 0 ? index : (index - 1 + HISTORY) % HISTORY;
+		drawSegment(x, playerRates[previous], playerRates[index], PLAYER_COLOR);
+		drawSegment(x, tieRates[previous], tieRates[index], TIE_COLOR);
+		drawSegment(x, compRates[previous], compRates[index], COMP_COLOR);
+	}
+
+	private void drawSegment(int x, float from, float to, Color color){
+		chartGraphics.setColor(color);
+		chartGraphics.drawLine(x - 1, rateY(from), x + STEP - 1, rateY(to));
+	}
+
+	private static int rateY(float rate){
+		return Math.round((CHART_HEIGHT - 1) * (100 - rate) / 100);
+	}
+
+	/**
+	 * drawBars
+	 * <p>
+	 * Draws one side's share of throws of each gesture as bars.
+	 */
+	private void drawBars(Graphics page, int x, String title, Color color, boolean player){
+		long total = 0;
+		for (GameGesture gesture : GESTURES){
+			total += player ? snapshot.getPlayerThrows(gesture) : snapshot.getCompThrows(gesture);
+		}
+		page.setColor(Color.black);
+		page.drawString(title, x, MARGIN + 10);
+		int bottom = MARGIN + CHART_HEIGHT;
+		int tallest = CHART_HEIGHT - 16;
+		for (int i = 0; i < OPTIONS; i++){
+			long throwsOf = player ? snapshot.getPlayerThrows(GESTURES[i]) : snapshot.getCompThrows(GESTURES[i]);
+			int height = total == 0 ? 0 : (int) (tallest * throwsOf / total);
+			int barX = x + i * (BAR_WIDTH + 2);
+			page.setColor(color);
+			page.fillRect(barX, bottom - height, BAR_WIDTH, height);
+			page.setColor(Color.black);
+			page.drawString(gestureLabels[i], barX, bottom + 2 * MARGIN);
+		}
+	}
+
+}//End of StatsChartPanel class
@@ -0,0 +1,95 @@
+import java.text.DecimalFormat;
+
+/**
+ * <b>StatsFormatter class</b>
+ * <p>
+ * Turns a GameStatistics snapshot into the text shown to the player. This is the
+ * only place where statistics become strings, so code that only needs numbers
+ * (dashboards, metrics) never pays for formatting.
+ * <p>
+ * Percentages are formatted to at most 2 decimal places. A formatter reuses one
+ * DecimalFormat and is not thread-safe; each thread should have its own.
+ */
+public class StatsFormatter {
+	private static final GameGesture[] GESTURES = {GameGesture.SCISSORS, GameGesture.PAPER,
+		GameGesture.ROCK, GameGesture.LIZARD, GameGesture.SPOCK};
+	private static final String[] NAMES = {"Scissors", "Paper", "Rock", "Lizard", "Spock"};
+	private final DecimalFormat df;
+
+	/**
+	 * Constructs a formatter.
+	 */
+	public StatsFormatter(){
+		df = new DecimalFormat("#.##");
+	}
+
+	/**
+	 * formatSummary
+	 * <p>
+	 * Appends the game totals, in the format of GameHandler.getStats.
+	 * @param stats - the statistics to format
+	 * @param out - where the text is appended
+	 * <p>
+	 * @return out, for chaining
+	 */
+	public StringBuilder formatSummary(GameStatistics.Snapshot stats, StringBuilder out){
+		out.append("Game Statistics:\n\n");
+		out.append("Games Played: ").append(stats.getRounds()).append('\n');
+		out.append("Games Computer Won: ").append(stats.getCompWins()).append('\n');
+		out.append("Games Player Won: ").append(stats.getPlayerWins()).append('\n');
+		out.append("Games Tied: ").append(stats.getTieGames()).append('\n');
+		out.append("Percentage of Player Wins: (Out of Total Wins): ");
+		percent(stats.getPlayerShareOfWins(), out).append('\n');
+		out.append("Percentage of Ties: ");
+		return percent(stats.getTieRate(), out);
+	}
+
+	/**
+	 * formatDetails
+	 * <p>
+	 * Appends per-gesture win rates, streaks and rolling window rates.
+	 * @param stats - the statistics to format
+	 * @param out - where the text is appended
+	 * <p>
+	 * @return out, for chaining
+	 */
+	public StringBuilder formatDetails(GameStatistics.Snapshot stats, StringBuilder out){
+		out.append("Win Rate by Gesture (Player / Computer):\n");
+		for (int i = 0; i < GESTURES.length; i++){
+			out.append("  ").append(NAMES[i]).append(": ");
+			percent(stats.getPlayerWinRate(GESTURES[i]), out).append(" of ");
+			out.append(stats.getPlayerThrows(GESTURES[i])).append(" / ");
+			percent(stats.getCompWinRate(GESTURES[i]), out).append(" of ");
+			out.append(stats.getCompThrows(GESTURES[i])).append('\n');
+		}
+		out.append("Current Streak: ");
+		if (stats.getRounds() == 0){
+			out.append("None");
+		}
+		else {
+			out.append(stats.getStreakLength()).append(' ').append(outcomeName(stats.getStreakOutcome()));
+		}
+		out.append('\n');
+		out.append("Longest Player Streak: ").append(stats.getLongestPlayerStreak()).append('\n');
+		out.append("Longest Computer Streak: ").append(stats.getLongestCompStreak()).append('\n');
+		out.append("Last ").append(stats.getWindowRounds()).append(" Rounds: Player ");
+		percent(stats.getWindowPlayerWinRate(), out).append(", Computer ");
+		percent(stats.getWindowCompWinRate(), out).append(", Ties ");
+		return percent(stats.getWindowTieRate(), out);
+	}
+
+	private StringBuilder percent(double value, StringBuilder out){
+		return out.append(df.format(value)).append('%');
+	}
+
+	private static String outcomeName(byte outcome){
+		if (outcome == GameRules.PLAYER_WIN){
+			return "Player Wins";
+		}
+		if (outcome == GameRules.COMP_WIN){
+			return "Computer Wins";
+		}
+		return "Ties";
+	}
+
+}//End of StatsFormatter class
@@ -0,0 +1,18 @@
+/**
+ * <b>StrategyFactory interface</b>
+ * <p>
+ * Creates fresh computer strategies, for example one per simulated session.
+ */
+public interface StrategyFactory {
+
+	/**
+	 * create
+	 * <p>
+	 * Creates a new strategy with no history.
+	 * @param random - the random source that the strategy should own
+	 * <p>
+	 * @return a new strategy
+	 */
+	GameStrategy create(GameRandom random);
+
+}//End of StrategyFactory interface
@@ -0,0 +1,83 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <b>StripedCounter class</b>
+ * <p>
+ * A counter that many threads can add to at once without fighting over one memory
+ * location. Additions go to one of several cells chosen by the calling thread, and
+ * reads add all of the cells together, in the manner of java.util.concurrent's
+ * LongAdder (which is not available on the Java 7 platform this project targets).
+ * <p>
+ * Cells are spaced a cache line pair apart so that neighbouring cells are never
+ * written through the same cache line.
+ */
+public class StripedCounter {
+	private static final int PADDING = 16;//longs between cells, 128 bytes
+	private final AtomicLongArray cells;
+	private final int mask;
+
+	/**
+	 * Constructs a counter with enough cells for the available processors.
+	 */
+	public StripedCounter(){
+		int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+		cells = new AtomicLongArray(stripes * PADDING);
+		mask = stripes - 1;
+	}
+
+	/**
+	 * add
+	 * <p>
+	 * Adds the given amount to the counter.
+	 * @param amount - the amount to add
+	 */
+	public void add(long amount){
+		cells.getAndAdd(cellIndex(), amount);
+	}
+
+	/**
+	 * increment
+	 * <p>
+	 * Adds one to the counter.
+	 */
+	public void increment(){
+		cells.getAndIncrement(cellIndex());
+	}
+
+	/**
+	 * sum
+	 * <p>
+	 * Gives the current total. Additions made while summing may or may not be seen.
+	 * @return total - the sum of all cells
+	 */
+	public long sum(){
+		long total = 0;
+		for (int i = 0; i < cells.length(); i += PADDING){
+			total += cells.get(i);
+		}
+		return total;
+	}
+
+	/**
+	 * reset
+	 * <p>
+	 * Sets every cell back to 0. Only meaningful while no other thread is adding.
+	 */
+	public void reset(){
+		for (int i = 0; i < cells.length(); i += PADDING){
+			cells.set(i, 0);
+		}
+	}
+
+	/**
+	 * cellIndex
+	 * <p>
+	 * Spreads thread ids over the cells with a multiplicative hash.
+	 */
+	private int cellIndex(){
+		long id = Thread.currentThread().getId();
+		int hash = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+		return (hash & mask) * PADDING;
+	}
+
+}//End of StripedCounter class